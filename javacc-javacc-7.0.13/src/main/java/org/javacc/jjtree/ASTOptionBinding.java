@@ -62,7 +62,10 @@ public class ASTOptionBinding extends JJTreeNode {
 
   String translateImage(Token t)
   {
-    if (suppressed) {
+    // Recycled tokens would be overwritten while the nodes still refer to
+    // them, so RECYCLE_TOKENS is dropped when TRACK_TOKENS is on.  This can
+    // only be decided once all the options have been read.
+    if (suppressed || (name.equalsIgnoreCase("RECYCLE_TOKENS") && JJTreeOptions.getTrackTokens())) {
       return whiteOut(t);
     } else {
       return t.image;
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Hashtable;
 
 
+import org.javacc.parser.JavaCCErrors;
 import org.javacc.parser.Options;
 import org.javacc.parser.JavaCCGlobals;
 
@@ -164,6 +165,9 @@ public class JJTree {
         parser.javacc_input();
 
         ASTGrammar root = (ASTGrammar)parser.jjtree.rootNode();
+        if (JJTreeOptions.getTrackTokens() && JJTreeOptions.getRecycleTokens()) {
+          JavaCCErrors.warning("Option RECYCLE_TOKENS is ignored because of TRACK_TOKENS.");
+        }
         if (Boolean.getBoolean("jjtree-dump")) {
           root.dump(" ");
         }
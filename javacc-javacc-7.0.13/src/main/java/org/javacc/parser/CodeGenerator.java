@@ -374,8 +374,10 @@ public class CodeGenerator {
     if (Options.getUserCharStream()) {
       return "CharStream";
     } else {
-      return Options.getJavaUnicodeEscape() ? "JavaCharStream"
-                                            : "SimpleCharStream";
+      if (Options.getJavaUnicodeEscape()) {
+        return "JavaCharStream";
+      }
+      return Options.getNioCharStream() ? "NioCharStream" : "SimpleCharStream";
     }
   }
   @SuppressWarnings("unchecked")
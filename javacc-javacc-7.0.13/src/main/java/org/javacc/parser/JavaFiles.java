@@ -343,6 +343,54 @@ public class JavaFiles extends JavaCCGlobals implements JavaCCParserConstants
 
 
 
+  // NIO_CHAR_STREAM is only honoured with the classic Java templates, so there is no modern variant.
+  public static void gen_NioCharStream() {
+    try {
+      final File file = new File(Options.getOutputDirectory(), "NioCharStream.java");
+      final OutputFile outputFile = new OutputFile(file, charStreamVersion, new String[] {Options.USEROPTION__STATIC, Options.USEROPTION__SUPPORT_CLASS_VISIBILITY_PUBLIC, Options.USEROPTION__KEEP_LINE_COLUMN});
+
+      if (!outputFile.needToWrite)
+      {
+        return;
+      }
+
+      final PrintWriter ostr = outputFile.getPrintWriter();
+
+      if (cu_to_insertion_point_1.size() != 0 &&
+          ((Token)cu_to_insertion_point_1.get(0)).kind == PACKAGE
+      ) {
+        for (int i = 1; i < cu_to_insertion_point_1.size(); i++) {
+          if (((Token)cu_to_insertion_point_1.get(i)).kind == SEMICOLON) {
+            cline = ((Token)(cu_to_insertion_point_1.get(0))).beginLine;
+            ccol = ((Token)(cu_to_insertion_point_1.get(0))).beginColumn;
+            for (int j = 0; j <= i; j++) {
+              printToken((Token)(cu_to_insertion_point_1.get(j)), ostr);
+            }
+            ostr.println("");
+            ostr.println("");
+            break;
+          }
+        }
+      }
+      String prefix = (Options.getStatic() ? "static " : "");
+      Map options = new HashMap(Options.getOptions());
+      options.put("PREFIX", prefix);
+
+      OutputFileGenerator generator = new OutputFileGenerator(
+    		  "/templates/NioCharStream.template", options);
+
+      generator.generate(ostr);
+
+      ostr.close();
+    } catch (IOException e) {
+      System.err.println("Failed to create NioCharStream " + e);
+      JavaCCErrors.semantic_error("Could not open file NioCharStream.java for writing.");
+      throw new Error();
+    }
+  }
+
+
+
   public static void gen_CharStream(JavaResourceTemplateLocations locations) {
     try {
       final File file = new File(Options.getOutputDirectory(), "CharStream.java");
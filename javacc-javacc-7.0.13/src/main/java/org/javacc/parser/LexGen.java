@@ -641,6 +641,8 @@ public class LexGen extends CodeGenerator implements JavaCCParserConstants
     {
       if (Options.getJavaUnicodeEscape())
         charStreamName = "JavaCharStream";
+      else if (Options.getNioCharStream())
+        charStreamName = "NioCharStream";
       else
         charStreamName = "SimpleCharStream";
     }
@@ -837,12 +839,36 @@ public class LexGen extends CodeGenerator implements JavaCCParserConstants
   {
     final double tokenVersion = JavaFiles.getVersion("Token.java");
     final boolean hasBinaryNewToken = tokenVersion > 4.09;
+    final boolean recycleTokens = Options.getRecycleTokens();
+    // With OFFSET_TOKENS the token keeps its offsets in the NioCharStream
+    // instead of an image and line/column numbers.
+    final boolean offsetTokens = Options.getOffsetTokens();
+    final boolean lineCol = keepLineCol && !offsetTokens;
+
+    if (recycleTokens)
+    {
+      genCodeLine("/** Tokens the parser has moved past, one free list per kind linked through next. */");
+      genCodeLine(staticString + "private final Token[] jjtokenPool = new Token[" + maxOrdinal + "];");
+      genCodeLine("");
+      genCodeLine("/** Give back a token nobody refers to any more, to be reused for the next token of its kind. */");
+      genCodeLine("public " + staticString + "void releaseToken(Token t)");
+      genCodeLine("{");
+      genCodeLine("   t.next = jjtokenPool[t.kind];");
+      genCodeLine("   jjtokenPool[t.kind] = t;");
+      genCodeLine("}");
+      genCodeLine("");
+    }
 
     genCodeLine(staticString + "protected Token jjFillToken()");
     genCodeLine("{");
-    genCodeLine("   final Token t;");
+    genCodeLine(recycleTokens ? "   Token t;" : "   final Token t;");
     genCodeLine("   final String curTokenImage;");
-    if (keepLineCol)
+    if (offsetTokens)
+    {
+      genCodeLine("   final int beginOffset;");
+      genCodeLine("   final int endOffset;");
+    }
+    if (lineCol)
     {
       genCodeLine("   final int beginLine;");
       genCodeLine("   final int endLine;");
@@ -859,7 +885,11 @@ public class LexGen extends CodeGenerator implements JavaCCParserConstants
       genCodeLine("      else");
       genCodeLine("         curTokenImage = image.toString();");
 
-      if (keepLineCol)
+      if (offsetTokens)
+      {
+        genCodeLine("      beginOffset = endOffset = input_stream.getEndOffset();");
+      }
+      if (lineCol)
       {
         genCodeLine("      beginLine = endLine = input_stream.getEndLine();");
         genCodeLine("      beginColumn = endColumn = input_stream.getEndColumn();");
@@ -868,10 +898,19 @@ public class LexGen extends CodeGenerator implements JavaCCParserConstants
       genCodeLine("   }");
       genCodeLine("   else");
       genCodeLine("   {");
-      genCodeLine("      String im = jjstrLiteralImages[jjmatchedKind];");
-      genCodeLine("      curTokenImage = (im == null) ? input_stream.GetImage() : im;");
+      if (offsetTokens)
+      {
+        genCodeLine("      curTokenImage = jjstrLiteralImages[jjmatchedKind];");
+        genCodeLine("      beginOffset = input_stream.getBeginOffset();");
+        genCodeLine("      endOffset = input_stream.getEndOffset();");
+      }
+      else
+      {
+        genCodeLine("      String im = jjstrLiteralImages[jjmatchedKind];");
+        genCodeLine("      curTokenImage = (im == null) ? input_stream.GetImage() : im;");
+      }
 
-      if (keepLineCol)
+      if (lineCol)
       {
         genCodeLine("      beginLine = input_stream.getBeginLine();");
         genCodeLine("      beginColumn = input_stream.getBeginColumn();");
@@ -881,6 +920,12 @@ public class LexGen extends CodeGenerator implements JavaCCParserConstants
 
       genCodeLine("   }");
     }
+    else if (offsetTokens)
+    {
+      genCodeLine("   curTokenImage = jjstrLiteralImages[jjmatchedKind];");
+      genCodeLine("   beginOffset = input_stream.getBeginOffset();");
+      genCodeLine("   endOffset = input_stream.getEndOffset();");
+    }
     else
     {
       genCodeLine("   String im = jjstrLiteralImages[jjmatchedKind];");
@@ -894,20 +939,44 @@ public class LexGen extends CodeGenerator implements JavaCCParserConstants
       }
     }
 
+    if (recycleTokens)
+    {
+      genCodeLine("   if ((t = jjtokenPool[jjmatchedKind]) != null)");
+      genCodeLine("   {");
+      genCodeLine("      jjtokenPool[jjmatchedKind] = t.next;");
+      genCodeLine("      t.kind = jjmatchedKind;");
+      genCodeLine("      t.image = curTokenImage;");
+      genCodeLine("      t.next = t.specialToken = null;");
+      genCodeLine("   }");
+      genCodeLine("   else");
+      genCodeLine("   {");
+    }
+
+    final String indent = recycleTokens ? "      " : "   ";
     if (Options.getTokenFactory().length() > 0) {
-      genCodeLine("   t = " + Options.getTokenFactory() + ".newToken(jjmatchedKind, curTokenImage);");
+      genCodeLine(indent + "t = " + Options.getTokenFactory() + ".newToken(jjmatchedKind, curTokenImage);");
     } else if (hasBinaryNewToken)
     {
-      genCodeLine("   t = Token.newToken(jjmatchedKind, curTokenImage);");
+      genCodeLine(indent + "t = Token.newToken(jjmatchedKind, curTokenImage);");
     }
     else
     {
-      genCodeLine("   t = Token.newToken(jjmatchedKind);");
-      genCodeLine("   t.kind = jjmatchedKind;");
-      genCodeLine("   t.image = curTokenImage;");
+      genCodeLine(indent + "t = Token.newToken(jjmatchedKind);");
+      genCodeLine(indent + "t.kind = jjmatchedKind;");
+      genCodeLine(indent + "t.image = curTokenImage;");
     }
 
-    if (keepLineCol) {
+    if (recycleTokens) {
+      genCodeLine("   }");
+    }
+
+    if (offsetTokens) {
+      genCodeLine("");
+      genCodeLine("   t.source = input_stream;");
+      genCodeLine("   t.beginOffset = beginOffset;");
+      genCodeLine("   t.endOffset = endOffset;");
+    }
+    if (lineCol) {
       genCodeLine("");
       genCodeLine("   t.beginLine = beginLine;");
       genCodeLine("   t.endLine = endLine;");
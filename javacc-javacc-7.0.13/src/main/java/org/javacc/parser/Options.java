@@ -88,12 +88,15 @@ public class Options {
 	public static final String USEROPTION__OTHER_AMBIGUITY_CHECK = "OTHER_AMBIGUITY_CHECK";
 	public static final String USEROPTION__CHOICE_AMBIGUITY_CHECK = "CHOICE_AMBIGUITY_CHECK";
 	public static final String USEROPTION__CACHE_TOKENS = "CACHE_TOKENS";
+	public static final String USEROPTION__RECYCLE_TOKENS = "RECYCLE_TOKENS";
 	public static final String USEROPTION__COMMON_TOKEN_ACTION = "COMMON_TOKEN_ACTION";
 	public static final String USEROPTION__FORCE_LA_CHECK = "FORCE_LA_CHECK";
 	public static final String USEROPTION__SANITY_CHECK = "SANITY_CHECK";
 	public static final String USEROPTION__BUILD_TOKEN_MANAGER = "BUILD_TOKEN_MANAGER";
 	public static final String USEROPTION__BUILD_PARSER = "BUILD_PARSER";
 	public static final String USEROPTION__USER_CHAR_STREAM = "USER_CHAR_STREAM";
+	public static final String USEROPTION__NIO_CHAR_STREAM = "NIO_CHAR_STREAM";
+	public static final String USEROPTION__OFFSET_TOKENS = "OFFSET_TOKENS";
 	public static final String USEROPTION__USER_TOKEN_MANAGER = "USER_TOKEN_MANAGER";
 	public static final String USEROPTION__JDK_VERSION = "JDK_VERSION";
 	public static final String USEROPTION__SUPPORT_CLASS_VISIBILITY_PUBLIC = "SUPPORT_CLASS_VISIBILITY_PUBLIC";
@@ -103,6 +106,7 @@ public class Options {
 	public static final String USEROPTION__GENERATE_CHAINED_EXCEPTION = "GENERATE_CHAINED_EXCEPTION";
 	public static final String USEROPTION__OUTPUT_DIRECTORY = "OUTPUT_DIRECTORY";
 	public static final String USEROPTION__KEEP_LINE_COLUMN = "KEEP_LINE_COLUMN";
+	public static final String USEROPTION__LAZY_LINE_COLUMN = "LAZY_LINE_COLUMN";
 	public static final String USEROPTION__GRAMMAR_ENCODING = "GRAMMAR_ENCODING";
 	public static final String USEROPTION__TOKEN_FACTORY = "TOKEN_FACTORY";
 	public static final String USEROPTION__TOKEN_EXTENDS = "TOKEN_EXTENDS";
@@ -175,6 +179,8 @@ public class Options {
 		temp.add(new OptionInfo(USEROPTION__IGNORE_CASE, OptionType.BOOLEAN, Boolean.FALSE));
 		temp.add(new OptionInfo(USEROPTION__USER_TOKEN_MANAGER, OptionType.BOOLEAN, Boolean.FALSE));
 		temp.add(new OptionInfo(USEROPTION__USER_CHAR_STREAM, OptionType.BOOLEAN, Boolean.FALSE));
+		temp.add(new OptionInfo(USEROPTION__NIO_CHAR_STREAM, OptionType.BOOLEAN, Boolean.FALSE));
+		temp.add(new OptionInfo(USEROPTION__OFFSET_TOKENS, OptionType.BOOLEAN, Boolean.FALSE));
 
 		temp.add(new OptionInfo(USEROPTION__BUILD_PARSER, OptionType.BOOLEAN, Boolean.TRUE));
 		temp.add(new OptionInfo(USEROPTION__BUILD_TOKEN_MANAGER, OptionType.BOOLEAN, Boolean.TRUE));
@@ -184,7 +190,9 @@ public class Options {
 		temp.add(new OptionInfo(USEROPTION__FORCE_LA_CHECK, OptionType.BOOLEAN, Boolean.FALSE));
 		temp.add(new OptionInfo(USEROPTION__COMMON_TOKEN_ACTION, OptionType.BOOLEAN, Boolean.FALSE));
 		temp.add(new OptionInfo(USEROPTION__CACHE_TOKENS, OptionType.BOOLEAN, Boolean.FALSE));
+		temp.add(new OptionInfo(USEROPTION__RECYCLE_TOKENS, OptionType.BOOLEAN, Boolean.FALSE));
 		temp.add(new OptionInfo(USEROPTION__KEEP_LINE_COLUMN, OptionType.BOOLEAN, Boolean.TRUE));
+		temp.add(new OptionInfo(USEROPTION__LAZY_LINE_COLUMN, OptionType.BOOLEAN, Boolean.FALSE));
 
 		temp.add(new OptionInfo(USEROPTION__GENERATE_CHAINED_EXCEPTION, OptionType.BOOLEAN, Boolean.FALSE));
 		temp.add(new OptionInfo(USEROPTION__GENERATE_GENERICS, OptionType.BOOLEAN, Boolean.FALSE));
@@ -569,6 +577,75 @@ public class Options {
 			optionValues.put(USEROPTION__DEBUG_PARSER, Boolean.TRUE);
 		}
 
+		// NioCharStream only stands in for SimpleCharStream: it does no Unicode
+		// escape processing and has no modern (GWT) or C++ template.
+		if (getNioCharStream()) {
+			String reason = null;
+			if (getUserCharStream()) {
+				reason = "USER_CHAR_STREAM";
+			} else if (getJavaUnicodeEscape()) {
+				reason = "JAVA_UNICODE_ESCAPE";
+			} else if (!getOutputLanguage().equals(OUTPUT_LANGUAGE__JAVA)
+					|| getJavaTemplateType().equals(JAVA_TEMPLATE_TYPE_MODERN)) {
+				reason = "the selected output language or template";
+			}
+			if (reason != null) {
+				JavaCCErrors.warning("Option NIO_CHAR_STREAM is ignored because of " + reason + ".");
+				optionValues.put(USEROPTION__NIO_CHAR_STREAM, Boolean.FALSE);
+			}
+		}
+
+		// Offsets are only meaningful in a stream that keeps the whole input,
+		// which NioCharStream does.
+		if (getOffsetTokens()) {
+			String reason = null;
+			if (getUserTokenManager()) {
+				reason = "USER_TOKEN_MANAGER";
+			} else if (!getNioCharStream()) {
+				reason = "NIO_CHAR_STREAM=false";
+			}
+			if (reason != null) {
+				JavaCCErrors.warning("Option OFFSET_TOKENS is ignored because of " + reason + ".");
+				optionValues.put(USEROPTION__OFFSET_TOKENS, Boolean.FALSE);
+			}
+		}
+
+		// Only the classic Java SimpleCharStream and JavaCharStream have a lazy
+		// mode; NioCharStream computes positions on demand anyway.
+		if (getLazyLineColumn()) {
+			String reason = null;
+			if (!getKeepLineColumn()) {
+				reason = "KEEP_LINE_COLUMN=false";
+			} else if (getUserCharStream()) {
+				reason = "USER_CHAR_STREAM";
+			} else if (!getOutputLanguage().equals(OUTPUT_LANGUAGE__JAVA)
+					|| getJavaTemplateType().equals(JAVA_TEMPLATE_TYPE_MODERN)) {
+				reason = "the selected output language or template";
+			}
+			if (reason != null) {
+				JavaCCErrors.warning("Option LAZY_LINE_COLUMN is ignored because of " + reason + ".");
+				optionValues.put(USEROPTION__LAZY_LINE_COLUMN, Boolean.FALSE);
+			}
+		}
+
+		// Recycled tokens go back to the generated token manager's pool, so the
+		// parser has to own both the token manager and the Token instances.
+		if (getRecycleTokens()) {
+			String reason = null;
+			if (getUserTokenManager()) {
+				reason = "USER_TOKEN_MANAGER";
+			} else if (getTokenFactory().length() > 0) {
+				reason = "TOKEN_FACTORY";
+			} else if (!getOutputLanguage().equals(OUTPUT_LANGUAGE__JAVA)
+					|| getJavaTemplateType().equals(JAVA_TEMPLATE_TYPE_MODERN)) {
+				reason = "the selected output language or template";
+			}
+			if (reason != null) {
+				JavaCCErrors.warning("Option RECYCLE_TOKENS is ignored because of " + reason + ".");
+				optionValues.put(USEROPTION__RECYCLE_TOKENS, Boolean.FALSE);
+			}
+		}
+
 		// Now set the "GENERATE" options from the supplied (or default) JDK
 		// version.
 
@@ -706,6 +783,24 @@ public class Options {
 		return booleanValue(USEROPTION__USER_CHAR_STREAM);
 	}
 
+	/**
+	 * Find the NIO charstream value.
+	 *
+	 * @return The requested NIO charstream value.
+	 */
+	public static boolean getNioCharStream() {
+		return booleanValue(USEROPTION__NIO_CHAR_STREAM);
+	}
+
+	/**
+	 * Find the offset tokens value.
+	 *
+	 * @return The requested offset tokens value.
+	 */
+	public static boolean getOffsetTokens() {
+		return booleanValue(USEROPTION__OFFSET_TOKENS);
+	}
+
 	/**
 	 * Find the build parser value.
 	 *
@@ -770,6 +865,15 @@ public class Options {
 		return booleanValue(USEROPTION__CACHE_TOKENS);
 	}
 
+	/**
+	 * Find the recycle tokens value.
+	 *
+	 * @return The requested recycle tokens value.
+	 */
+	public static boolean getRecycleTokens() {
+		return booleanValue(USEROPTION__RECYCLE_TOKENS);
+	}
+
 	/**
 	 * Find the keep line column value.
 	 *
@@ -779,6 +883,15 @@ public class Options {
 		return booleanValue(USEROPTION__KEEP_LINE_COLUMN);
 	}
 
+	/**
+	 * Find the lazy line column value.
+	 *
+	 * @return The requested lazy line column value.
+	 */
+	public static boolean getLazyLineColumn() {
+		return booleanValue(USEROPTION__LAZY_LINE_COLUMN);
+	}
+
 	/**
 	 * Find the JDK version.
 	 *
@@ -77,6 +77,8 @@ public class OtherFilesGen extends JavaCCGlobals implements JavaCCParserConstant
     	if (Options.isGenerateBoilerplateCode()) {
 	      if (Options.getJavaUnicodeEscape()) {
 	        JavaFiles.gen_JavaCharStream(templateLoc);
+	      } else if (Options.getNioCharStream()) {
+	        JavaFiles.gen_NioCharStream();
 	      } else {
 	        JavaFiles.gen_SimpleCharStream(templateLoc);
 	      }
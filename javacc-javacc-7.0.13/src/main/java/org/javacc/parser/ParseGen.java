@@ -30,6 +30,7 @@
  */
 package org.javacc.parser;
 
+import static org.javacc.parser.JavaCCGlobals.bnfproductions;
 import static org.javacc.parser.JavaCCGlobals.cu_from_insertion_point_2;
 import static org.javacc.parser.JavaCCGlobals.cu_name;
 import static org.javacc.parser.JavaCCGlobals.cu_to_insertion_point_1;
@@ -41,6 +42,7 @@ import static org.javacc.parser.JavaCCGlobals.jjtreeGenerated;
 import static org.javacc.parser.JavaCCGlobals.lookaheadNeeded;
 import static org.javacc.parser.JavaCCGlobals.maskVals;
 import static org.javacc.parser.JavaCCGlobals.maskindex;
+import static org.javacc.parser.JavaCCGlobals.rexprlist;
 import static org.javacc.parser.JavaCCGlobals.staticOpt;
 import static org.javacc.parser.JavaCCGlobals.tokenCount;
 import static org.javacc.parser.JavaCCGlobals.toolName;
@@ -109,6 +111,10 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 
 			new ParseEngine().build(this);
 
+			if (Options.getRecycleTokens()) {
+				checkRecycleTokens();
+			}
+
 			if (Options.getStatic()) {
 				genCodeLine("  static private " + Options.getBooleanType()
 						+ " jj_initialized_once = false;");
@@ -120,11 +126,7 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 				genCodeLine("  /** Generated Token Manager. */");
 				genCodeLine("  " + staticOpt() + "public " + cu_name + "TokenManager token_source;");
 				if (!Options.getUserCharStream()) {
-					if (Options.getJavaUnicodeEscape()) {
-						genCodeLine("  " + staticOpt() + "JavaCharStream jj_input_stream;");
-					} else {
-						genCodeLine("  " + staticOpt() + "SimpleCharStream jj_input_stream;");
-					}
+					genCodeLine("  " + staticOpt() + getCharStreamName() + " jj_input_stream;");
 				}
 			}
 			genCodeLine("  /** Current token. */");
@@ -285,24 +287,13 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 							genCodeLine("	 jj_initialized_once = true;");
 						}
 
-						if (Options.getJavaUnicodeEscape()) {
-							if (!Options.getGenerateChainedException()) {
-								genCodeLine("	 try { jj_input_stream = new JavaCharStream(stream, encoding, 1, 1); } "
-										+ "catch(java.io.UnsupportedEncodingException e) {"
-										+ " throw new RuntimeException(e.getMessage()); }");
-							} else {
-								genCodeLine("	 try { jj_input_stream = new JavaCharStream(stream, encoding, 1, 1); } "
-										+ "catch(java.io.UnsupportedEncodingException e) { throw new RuntimeException(e); }");
-							}
+						if (!Options.getGenerateChainedException()) {
+							genCodeLine("	 try { jj_input_stream = new " + getCharStreamName() + "(stream, encoding, 1, 1); } "
+									+ "catch(java.io.UnsupportedEncodingException e) { "
+									+ "throw new RuntimeException(e.getMessage()); }");
 						} else {
-							if (!Options.getGenerateChainedException()) {
-								genCodeLine("	 try { jj_input_stream = new SimpleCharStream(stream, encoding, 1, 1); } "
-										+ "catch(java.io.UnsupportedEncodingException e) { "
-										+ "throw new RuntimeException(e.getMessage()); }");
-							} else {
-								genCodeLine("	 try { jj_input_stream = new SimpleCharStream(stream, encoding, 1, 1); } "
-										+ "catch(java.io.UnsupportedEncodingException e) { throw new RuntimeException(e); }");
-							}
+							genCodeLine("	 try { jj_input_stream = new " + getCharStreamName() + "(stream, encoding, 1, 1); } "
+									+ "catch(java.io.UnsupportedEncodingException e) { throw new RuntimeException(e); }");
 						}
 						if (Options.getTokenManagerUsesParser() && !Options.getStatic()) {
 							genCodeLine("	 token_source = new " + cu_name
@@ -388,125 +379,124 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 							: "java.io.StringReader";
 
 
-					genCodeLine("  /** Constructor. */");
-					genCodeLine("  public " + cu_name + "(" + readerInterfaceName + " stream) {");
-					if (Options.getStatic()) {
-						genCodeLine("	 if (jj_initialized_once) {");
-						genCodeLine("	   System.out.println(\"ERROR: Second call to constructor of static parser. \");");
-						genCodeLine("	   System.out.println(\"	   You must either use ReInit() or "
-								+ "set the JavaCC option STATIC to false\");");
-						genCodeLine("	   System.out.println(\"	   during parser generation.\");");
-						genCodeLine("	   throw new "+(Options.isLegacyExceptionHandling() ? "Error" : "RuntimeException")+"();");
-						genCodeLine("	 }");
-						genCodeLine("	 jj_initialized_once = true;");
-					}
-					if (Options.getJavaUnicodeEscape()) {
-						genCodeLine("	 jj_input_stream = new JavaCharStream(stream, 1, 1);");
-					} else {
-						genCodeLine("	 jj_input_stream = new SimpleCharStream(stream, 1, 1);");
-					}
-					if (Options.getTokenManagerUsesParser() && !Options.getStatic()) {
-						genCodeLine("	 token_source = new " + cu_name
-								+ "TokenManager(this, jj_input_stream);");
-					} else {
-						genCodeLine("	 token_source = new " + cu_name
-								+ "TokenManager(jj_input_stream);");
+					// With NIO_CHAR_STREAM the same constructor and ReInit also take a CharBuffer
+					final List<String> streamTypes = new ArrayList<String>();
+					streamTypes.add(readerInterfaceName);
+					if (Options.getNioCharStream()) {
+						streamTypes.add("java.nio.CharBuffer");
 					}
-					genCodeLine("	 token = new Token();");
-					if (Options.getCacheTokens()) {
-						genCodeLine("	 token.next = jj_nt = token_source.getNextToken();");
-					} else {
-						genCodeLine("	 jj_ntk = -1;");
-					}
-					if (Options.getDepthLimit() > 0) {
-						genCodeLine("    jj_depth = -1;");
-					}
-					if (Options.getErrorReporting()) {
-						genCodeLine("	 jj_gen = 0;");
-						if (maskindex > 0) {
-							genCodeLine("	 for (int i = 0; i < " + maskindex
-									+ "; i++) jj_la1[i] = -1;");
-						}
-						if (jj2index != 0) {
-							genCodeLine("	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();");
+					for (String streamType : streamTypes) {
+						if (!streamType.equals(readerInterfaceName)) {
+							genCodeLine("");
 						}
-					}
-					genCodeLine("  }");
-					genCodeLine("");
-
-					// Add-in a string based constructor because its convenient (modern only to prevent regressions)
-					if (isJavaModernMode) {
 						genCodeLine("  /** Constructor. */");
-						genCodeLine("  public " + cu_name
-								+ "(String dsl) throws ParseException, "+Options.getTokenMgrErrorClass() +" {");
-						genCodeLine("	   this(new " + stringReaderClass + "(dsl));");
+						genCodeLine("  public " + cu_name + "(" + streamType + " stream) {");
+						if (Options.getStatic()) {
+							genCodeLine("	 if (jj_initialized_once) {");
+							genCodeLine("	   System.out.println(\"ERROR: Second call to constructor of static parser. \");");
+							genCodeLine("	   System.out.println(\"	   You must either use ReInit() or "
+									+ "set the JavaCC option STATIC to false\");");
+							genCodeLine("	   System.out.println(\"	   during parser generation.\");");
+							genCodeLine("	   throw new "+(Options.isLegacyExceptionHandling() ? "Error" : "RuntimeException")+"();");
+							genCodeLine("	 }");
+							genCodeLine("	 jj_initialized_once = true;");
+						}
+						genCodeLine("	 jj_input_stream = new " + getCharStreamName() + "(stream, 1, 1);");
+						if (Options.getTokenManagerUsesParser() && !Options.getStatic()) {
+							genCodeLine("	 token_source = new " + cu_name
+									+ "TokenManager(this, jj_input_stream);");
+						} else {
+							genCodeLine("	 token_source = new " + cu_name
+									+ "TokenManager(jj_input_stream);");
+						}
+						genCodeLine("	 token = new Token();");
+						if (Options.getCacheTokens()) {
+							genCodeLine("	 token.next = jj_nt = token_source.getNextToken();");
+						} else {
+							genCodeLine("	 jj_ntk = -1;");
+						}
+						if (Options.getDepthLimit() > 0) {
+							genCodeLine("    jj_depth = -1;");
+						}
+						if (Options.getErrorReporting()) {
+							genCodeLine("	 jj_gen = 0;");
+							if (maskindex > 0) {
+								genCodeLine("	 for (int i = 0; i < " + maskindex
+										+ "; i++) jj_la1[i] = -1;");
+							}
+							if (jj2index != 0) {
+								genCodeLine("	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();");
+							}
+						}
 						genCodeLine("  }");
 						genCodeLine("");
 
-						genCodeLine("  public void ReInit(String s) {");
-						genCodeLine("	  ReInit(new " + stringReaderClass + "(s));");
-						genCodeLine("  }");
+						// Add-in a string based constructor because its convenient (modern only to prevent regressions)
+						if (isJavaModernMode && streamType.equals(readerInterfaceName)) {
+							genCodeLine("  /** Constructor. */");
+							genCodeLine("  public " + cu_name
+									+ "(String dsl) throws ParseException, "+Options.getTokenMgrErrorClass() +" {");
+							genCodeLine("	   this(new " + stringReaderClass + "(dsl));");
+							genCodeLine("  }");
+							genCodeLine("");
 
-					}
+							genCodeLine("  public void ReInit(String s) {");
+							genCodeLine("	  ReInit(new " + stringReaderClass + "(s));");
+							genCodeLine("  }");
 
+						}
 
-					genCodeLine("  /** Reinitialise. */");
-					genCodeLine("  " + staticOpt() + "public void ReInit(" + readerInterfaceName
-							+ " stream) {");
-					if (Options.getJavaUnicodeEscape()) {
-						genCodeLine("	if (jj_input_stream == null) {");
-						genCodeLine("	   jj_input_stream = new JavaCharStream(stream, 1, 1);");
-						genCodeLine("	} else {");
-						genCodeLine("	   jj_input_stream.ReInit(stream, 1, 1);");
-						genCodeLine("	}");
-					} else {
+
+						genCodeLine("  /** Reinitialise. */");
+						genCodeLine("  " + staticOpt() + "public void ReInit(" + streamType
+								+ " stream) {");
 						genCodeLine("	if (jj_input_stream == null) {");
-						genCodeLine("	   jj_input_stream = new SimpleCharStream(stream, 1, 1);");
+						genCodeLine("	   jj_input_stream = new " + getCharStreamName() + "(stream, 1, 1);");
 						genCodeLine("	} else {");
 						genCodeLine("	   jj_input_stream.ReInit(stream, 1, 1);");
 						genCodeLine("	}");
-					}
 
-					genCodeLine("	if (token_source == null) {");
+						genCodeLine("	if (token_source == null) {");
 
-					if (Options.getTokenManagerUsesParser() && !Options.getStatic()) {
-						genCodeLine(" token_source = new " + cu_name + "TokenManager(this, jj_input_stream);");
-					} else {
-						genCodeLine(" token_source = new " + cu_name + "TokenManager(jj_input_stream);");
-					}
+						if (Options.getTokenManagerUsesParser() && !Options.getStatic()) {
+							genCodeLine(" token_source = new " + cu_name + "TokenManager(this, jj_input_stream);");
+						} else {
+							genCodeLine(" token_source = new " + cu_name + "TokenManager(jj_input_stream);");
+						}
 
-					genCodeLine("	}");
-					genCodeLine("");
+						genCodeLine("	}");
+						genCodeLine("");
 
-					if (Options.isTokenManagerRequiresParserAccess()) {
-						genCodeLine("	 token_source.ReInit(this,jj_input_stream);");
-					} else {
-						genCodeLine("	 token_source.ReInit(jj_input_stream);");
-					}
+						if (Options.isTokenManagerRequiresParserAccess()) {
+							genCodeLine("	 token_source.ReInit(this,jj_input_stream);");
+						} else {
+							genCodeLine("	 token_source.ReInit(jj_input_stream);");
+						}
 
-					genCodeLine("	 token = new Token();");
-					if (Options.getCacheTokens()) {
-						genCodeLine("	 token.next = jj_nt = token_source.getNextToken();");
-					} else {
-						genCodeLine("	 jj_ntk = -1;");
-					}
-					if (Options.getDepthLimit() > 0) {
-						genCodeLine("    jj_depth = -1;");
-					}
-					if (jjtreeGenerated) {
-						genCodeLine("	 jjtree.reset();");
-					}
-					if (Options.getErrorReporting()) {
-						genCodeLine("	 jj_gen = 0;");
-						if (maskindex > 0) {
-							genCodeLine("	 for (int i = 0; i < " + maskindex
-									+ "; i++) jj_la1[i] = -1;");
+						genCodeLine("	 token = new Token();");
+						if (Options.getCacheTokens()) {
+							genCodeLine("	 token.next = jj_nt = token_source.getNextToken();");
+						} else {
+							genCodeLine("	 jj_ntk = -1;");
 						}
-						if (jj2index != 0) {
-							genCodeLine("	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();");
+						if (Options.getDepthLimit() > 0) {
+							genCodeLine("    jj_depth = -1;");
+						}
+						if (jjtreeGenerated) {
+							genCodeLine("	 jjtree.reset();");
+						}
+						if (Options.getErrorReporting()) {
+							genCodeLine("	 jj_gen = 0;");
+							if (maskindex > 0) {
+								genCodeLine("	 for (int i = 0; i < " + maskindex
+										+ "; i++) jj_la1[i] = -1;");
+							}
+							if (jj2index != 0) {
+								genCodeLine("	 for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();");
+							}
 						}
+						genCodeLine("  }");
 					}
-					genCodeLine("  }");
 
 				}
 			}
@@ -593,6 +583,9 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 				genCodeLine("	 jj_ntk = -1;");
 			}
 			genCodeLine("	 if (token.kind == kind) {");
+			if (Options.getRecycleTokens()) {
+				genCodeLine("	   token_source.releaseToken(oldToken);");
+			}
 			if (Options.getErrorReporting()) {
 				genCodeLine("	   jj_gen++;");
 				if (jj2index != 0) {
@@ -666,6 +659,9 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 			genCodeLine("");
 			genCodeLine("/** Get the next Token. */");
 			genCodeLine("  " + staticOpt() + "final public Token getNextToken() {");
+			if (Options.getRecycleTokens()) {
+				genCodeLine("	 Token oldToken = token;");
+			}
 			if (Options.getCacheTokens()) {
 				genCodeLine("	 if ((token = jj_nt).next != null) jj_nt = jj_nt.next;");
 				genCodeLine("	 else jj_nt = jj_nt.next = token_source.getNextToken();");
@@ -674,6 +670,9 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 				genCodeLine("	 else token = token.next = token_source.getNextToken();");
 				genCodeLine("	 jj_ntk = -1;");
 			}
+			if (Options.getRecycleTokens()) {
+				genCodeLine("	 token_source.releaseToken(oldToken);");
+			}
 			if (Options.getErrorReporting()) {
 				genCodeLine("	 jj_gen++;");
 			}
@@ -825,10 +824,17 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 				genCodeLine("  /** Generate ParseException. */");
 				genCodeLine("  " + staticOpt() + "public ParseException generateParseException() {");
 				genCodeLine("	 Token errortok = token.next;");
-				if (Options.getKeepLineColumn()) {
-					genCodeLine("	 int line = errortok.beginLine, column = errortok.beginColumn;");
+				if (Options.getOffsetTokens()) {
+					if (Options.getKeepLineColumn()) {
+						genCodeLine("	 int line = errortok.getBeginLine(), column = errortok.getBeginColumn();");
+					}
+					genCodeLine("	 String mess = (errortok.kind == 0) ? tokenImage[0] : errortok.getImage();");
+				} else {
+					if (Options.getKeepLineColumn()) {
+						genCodeLine("	 int line = errortok.beginLine, column = errortok.beginColumn;");
+					}
+					genCodeLine("	 String mess = (errortok.kind == 0) ? tokenImage[0] : errortok.image;");
 				}
-				genCodeLine("	 String mess = (errortok.kind == 0) ? tokenImage[0] : errortok.image;");
 				if (Options.getKeepLineColumn()) {
 					genCodeLine("	 return new ParseException("
 							+ "\"Parse error at line \" + line + \", column \" + column + \".  "
@@ -884,11 +890,14 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 				genCodeLine("	 if (trace_enabled) {");
 				genCodeLine("	   for (int i = 0; i < trace_indent; i++) { System.out.print(\" \"); }");
 				genCodeLine("	   System.out.print(\"Consumed token: <\" + tokenImage[t.kind]);");
-				genCodeLine("	   if (t.kind != 0 && !tokenImage[t.kind].equals(\"\\\"\" + t.image + \"\\\"\")) {");
-				genCodeLine("		 System.out.print(\": \\\"\" + "+Options.getTokenMgrErrorClass() + ".addEscapes("+"t.image) + \"\\\"\");");
+				final String image = Options.getOffsetTokens() ? "getImage()" : "image";
+				final String beginLine = Options.getOffsetTokens() ? "getBeginLine()" : "beginLine";
+				final String beginColumn = Options.getOffsetTokens() ? "getBeginColumn()" : "beginColumn";
+				genCodeLine("	   if (t.kind != 0 && !tokenImage[t.kind].equals(\"\\\"\" + t." + image + " + \"\\\"\")) {");
+				genCodeLine("		 System.out.print(\": \\\"\" + "+Options.getTokenMgrErrorClass() + ".addEscapes("+"t." + image + ") + \"\\\"\");");
 				genCodeLine("	   }");
-				genCodeLine("	   System.out.println(\" at line \" + t.beginLine + "
-						+ "\" column \" + t.beginColumn + \">\" + where);");
+				genCodeLine("	   System.out.println(\" at line \" + t." + beginLine + " + "
+						+ "\" column \" + t." + beginColumn + " + \">\" + where);");
 				genCodeLine("	 }");
 				genCodeLine("  }");
 				genCodeLine("");
@@ -896,11 +905,11 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 				genCodeLine("	 if (trace_enabled) {");
 				genCodeLine("	   for (int i = 0; i < trace_indent; i++) { System.out.print(\" \"); }");
 				genCodeLine("	   System.out.print(\"Visited token: <\" + tokenImage[t1.kind]);");
-				genCodeLine("	   if (t1.kind != 0 && !tokenImage[t1.kind].equals(\"\\\"\" + t1.image + \"\\\"\")) {");
-				genCodeLine("		 System.out.print(\": \\\"\" + "+Options.getTokenMgrErrorClass() + ".addEscapes("+"t1.image) + \"\\\"\");");
+				genCodeLine("	   if (t1.kind != 0 && !tokenImage[t1.kind].equals(\"\\\"\" + t1." + image + " + \"\\\"\")) {");
+				genCodeLine("		 System.out.print(\": \\\"\" + "+Options.getTokenMgrErrorClass() + ".addEscapes("+"t1." + image + ") + \"\\\"\");");
 				genCodeLine("	   }");
-				genCodeLine("	   System.out.println(\" at line \" + t1.beginLine + \""
-						+ " column \" + t1.beginColumn + \">; Expected token: <\" + tokenImage[t2] + \">\");");
+				genCodeLine("	   System.out.println(\" at line \" + t1." + beginLine + " + \""
+						+ " column \" + t1." + beginColumn + " + \">; Expected token: <\" + tokenImage[t2] + \">\");");
 				genCodeLine("	 }");
 				genCodeLine("  }");
 				genCodeLine("");
@@ -981,6 +990,60 @@ public class ParseGen extends CodeGenerator implements JavaCCParserConstants {
 
 	}
 
+	/**
+	 * Turn RECYCLE_TOKENS off for grammars where tokens outlive the parser's
+	 * move past them: special tokens hang off the tokens they precede, the
+	 * error reporting of syntactic lookahead rescans from the tokens it
+	 * recorded in jj_2_rtns, and a token bound to a variable ("t = &lt;ID&gt;")
+	 * can be read by an action after later tokens have reused it.
+	 */
+	private void checkRecycleTokens() {
+		String reason = null;
+		for (TokenProduction tp : rexprlist) {
+			if (tp.kind == TokenProduction.SPECIAL) {
+				reason = "SPECIAL_TOKEN declarations";
+				break;
+			}
+		}
+		if (reason == null && jj2index != 0 && Options.getErrorReporting()) {
+			reason = "syntactic lookahead with ERROR_REPORTING=true";
+		}
+		if (reason != null) {
+			JavaCCErrors.warning("Option RECYCLE_TOKENS is ignored because of " + reason + ".");
+			Options.optionValues.put(Options.USEROPTION__RECYCLE_TOKENS, Boolean.FALSE);
+			return;
+		}
+		BoundTokenFinder finder = new BoundTokenFinder();
+		for (NormalProduction p : bnfproductions) {
+			ExpansionTreeWalker.preOrderWalk(p.getExpansion(), finder);
+			if (finder.bound != null) {
+				JavaCCErrors.warning(finder.bound, "Option RECYCLE_TOKENS is ignored because this token is bound to a variable"
+						+ " in production " + p.getLhs() + ". Read it through \"token\" in the action that follows it instead.");
+				Options.optionValues.put(Options.USEROPTION__RECYCLE_TOKENS, Boolean.FALSE);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Finds the first regular expression of a BNF expansion whose token is
+	 * assigned to a variable.
+	 */
+	private static class BoundTokenFinder implements TreeWalkerOp {
+
+		RegularExpression bound;
+
+		public boolean goDeeper(Expansion e) {
+			return bound == null && !(e instanceof RegularExpression);
+		}
+
+		public void action(Expansion e) {
+			if (bound == null && e instanceof RegularExpression && ((RegularExpression) e).lhsTokens.size() != 0) {
+				bound = (RegularExpression) e;
+			}
+		}
+	}
+
 	public static void reInit() {
 		lookaheadNeeded = false;
 	}
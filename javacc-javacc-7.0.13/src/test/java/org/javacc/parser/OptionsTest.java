@@ -19,6 +19,7 @@ public final class OptionsTest extends TestCase {
         assertEquals(true, Options.getBuildParser());
         assertEquals(true, Options.getBuildTokenManager());
         assertEquals(false, Options.getCacheTokens());
+        assertEquals(false, Options.getRecycleTokens());
         assertEquals(false, Options.getCommonTokenAction());
         assertEquals(false, Options.getDebugLookahead());
         assertEquals(false, Options.getDebugParser());
@@ -28,10 +29,13 @@ public final class OptionsTest extends TestCase {
         assertEquals(false, Options.getIgnoreCase());
         assertEquals(false, Options.getJavaUnicodeEscape());
         assertEquals(true, Options.getKeepLineColumn());
+        assertEquals(false, Options.getLazyLineColumn());
         assertEquals(true, Options.getSanityCheck());
         assertEquals(true, Options.getStatic());
         assertEquals(false, Options.getUnicodeInput());
         assertEquals(false, Options.getUserCharStream());
+        assertEquals(false, Options.getNioCharStream());
+        assertEquals(false, Options.getOffsetTokens());
         assertEquals(false, Options.getUserTokenManager());
         assertEquals(false, Options.getTokenManagerUsesParser());
 
@@ -0,0 +1,91 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/*
+ * Reads the inputs of Positions through the CharBuffer API of a parser
+ * generated with NIO_CHAR_STREAM, printing the same lines as Positions.main:
+ * a heap buffer through the constructor and then ReInit, a buffer without a
+ * backing array, a file decoded by NioCharStream.map(), and a buffer whose
+ * content starts after other characters.
+ *
+ * With "interactive" it instead checks that a Reader is only read as far as
+ * the lexer needs, as it must be for input typed at a console.
+ *
+ * java NioFeeds [input names]   (default all)
+ * java NioFeeds interactive
+ */
+public class NioFeeds {
+
+  // Hands out one line per read, like a console, and counts the lines read
+  static class Console extends Reader {
+    final String[] lines;
+    int read;
+
+    Console(String... lines) { this.lines = lines; }
+
+    public int read(char[] buf, int off, int len) {
+      if (read == lines.length)
+        return -1;
+      String line = lines[read];
+      int n = Math.min(len, line.length());
+      line.getChars(0, n, buf, off);
+      if (n < line.length())
+        lines[read] = line.substring(n);
+      else
+        read++;
+      return n;
+    }
+
+    public void close() {}
+  }
+
+  static void interactive() {
+    Console console = new Console("first line\n", "second\n", "third\n");
+    Positions parser = new Positions(console);
+    Token t = parser.getNextToken();
+    System.out.println("interactive: '" + t.image + "' after " + console.read + " of 3 lines");
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 1 && args[0].equals("interactive")) {
+      interactive();
+      return;
+    }
+    String[] names = args.length > 0 ? args : Positions.NAMES;
+    File file = File.createTempFile("nioCharStream", ".txt");
+    file.deleteOnExit();
+    Positions parser = null;
+    for (int i = 0; i < names.length; i++) {
+      String text = Positions.input(names[i]);
+
+      CharBuffer heap = CharBuffer.wrap(text.toCharArray());
+      if (parser == null)
+        parser = new Positions(heap);
+      else
+        parser.ReInit(heap);
+      System.out.println(parser.dump(names[i], 1));
+
+      // A CharBuffer wrapping a String has no array: images are copied with get()
+      parser.ReInit(CharBuffer.wrap(text));
+      System.out.println(parser.dump(names[i], 8));
+
+      Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      out.write(text);
+      out.close();
+      parser.ReInit(NioCharStream.map(file, "UTF-8"));
+      System.out.println(parser.dump(names[i], 4));
+
+      // Only the characters from position to limit are input: either at a
+      // non-zero position or, sliced, at a non-zero array offset
+      CharBuffer framed = CharBuffer.wrap(("\n\tskip me" + text + "\nand me").toCharArray());
+      framed.position(9);
+      framed.limit(9 + text.length());
+      parser.ReInit(i % 2 == 0 ? framed.slice() : framed);
+      System.out.println(parser.dump(names[i], 2));
+    }
+  }
+}
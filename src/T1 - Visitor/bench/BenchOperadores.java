@@ -0,0 +1,83 @@
+import java.io.StringReader;
+
+/**
+ * Benchmark de regressão da tradução de expressões. Gera programas com
+ * tamanho crescente (dobrando a cada passo), mede análise + tradução com o
+ * ArduinoVisitor e com a IR e compara o tempo por linha do maior programa
+ * com o do menor. Como os operadores são lidos dos nós em O(1), o tempo por
+ * linha deve ficar praticamente constante; se crescer mais que FATOR_LIMITE
+ * vezes, a tradução voltou a ser quadrática e o processo termina com erro.
+ *
+ * Uso: java BenchOperadores [linhasIniciais] [passos]
+ */
+public class BenchOperadores {
+    private static final double FATOR_LIMITE = 3.0;
+    private static final int REPETICOES = 5;
+
+    public static void main(String[] args) throws Exception {
+        int linhasIniciais = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int passos = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // Aquecimento do JIT com um programa médio
+        String aquecimento = GeradorProgramas.gerar(linhasIniciais, 1);
+        for (int i = 0; i < 10; i++) {
+            traduzirVisitor(aquecimento);
+            traduzirIR(aquecimento);
+        }
+
+        double primeiroVisitor = 0, primeiroIR = 0, ultimoVisitor = 0, ultimoIR = 0;
+        System.out.printf("%10s %12s %16s %16s%n", "linhas", "bytes", "visitor ns/linha", "IR ns/linha");
+        for (int p = 0; p < passos; p++) {
+            int linhas = linhasIniciais << p;
+            String fonte = GeradorProgramas.gerar(linhas, 42 + p);
+            double visitor = melhorTempo(fonte, false) / (double) linhas;
+            double ir = melhorTempo(fonte, true) / (double) linhas;
+            System.out.printf("%10d %12d %16.0f %16.0f%n", linhas, fonte.length(), visitor, ir);
+            if (p == 0) {
+                primeiroVisitor = visitor;
+                primeiroIR = ir;
+            }
+            ultimoVisitor = visitor;
+            ultimoIR = ir;
+        }
+
+        double fatorVisitor = ultimoVisitor / primeiroVisitor;
+        double fatorIR = ultimoIR / primeiroIR;
+        System.out.printf("Crescimento do tempo por linha: visitor %.2fx, IR %.2fx (limite %.1fx)%n",
+                fatorVisitor, fatorIR, FATOR_LIMITE);
+        if (fatorVisitor > FATOR_LIMITE || fatorIR > FATOR_LIMITE) {
+            System.out.println("FALHA: o tempo de tradução cresce mais que linearmente com o tamanho do programa");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Menor tempo entre as repetições, em nanossegundos
+    private static long melhorTempo(String fonte, boolean ir) throws ParseException {
+        long melhor = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICOES; i++) {
+            long inicio = System.nanoTime();
+            int tamanho = ir ? traduzirIR(fonte) : traduzirVisitor(fonte);
+            long tempo = System.nanoTime() - inicio;
+            if (tamanho == 0) {
+                throw new IllegalStateException("tradução vazia");
+            }
+            melhor = Math.min(melhor, tempo);
+        }
+        return melhor;
+    }
+
+    private static int traduzirVisitor(String fonte) throws ParseException {
+        SimpleNode raiz = new ADSL(new StringReader(fonte)).Start();
+        ArduinoVisitor visitor = new ArduinoVisitor(ArduinoVisitor.estimarCapacidade(fonte.length()));
+        raiz.jjtAccept(visitor, null);
+        return visitor.getCodigo().length();
+    }
+
+    private static int traduzirIR(String fonte) throws ParseException {
+        SimpleNode raiz = new ADSL(new StringReader(fonte)).Start();
+        GeradorIR gerador = new GeradorIR(ArduinoVisitor.estimarCapacidade(fonte.length()));
+        gerador.gerar(new ConstrutorIR().construir(raiz));
+        return gerador.getCodigo().length();
+    }
+}
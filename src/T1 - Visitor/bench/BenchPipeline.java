@@ -0,0 +1,178 @@
+import java.io.File;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mede cada etapa da compilação ADSL separadamente sobre entradas sintéticas
+ * de 1 KB a 50 MB. Léxico e análise usam os exemplos NN_teste.txt
+ * intercalados com trechos gerados pelo GeradorProgramas; como essa mistura
+ * tem vários Execute, que o ArduinoVisitor passa ao GeradorIR (escalonador),
+ * as etapas de tradução usam um programa gerado com um único Execute do
+ * mesmo tamanho:
+ *
+ *   lexico       ADSLTokenManager.getNextToken() até o EOF
+ *   analise      ADSL.Start(), com construção da AST
+ *   visita       ArduinoVisitor sobre uma AST já construída
+ *   ir           ConstrutorIR + GeradorIR sobre uma AST já construída
+ *   completo     análise + ArduinoVisitor, do texto ao sketch
+ *
+ * Para cada etapa e tamanho são feitas rodadas de aquecimento e depois
+ * rodadas medidas por um tempo mínimo; o resultado é a vazão em ops/s e
+ * MB/s de entrada e a taxa de alocação (bytes alocados pela thread, lidos
+ * do ThreadMXBean, por operação e por segundo).
+ *
+ * Uso: java -Xmx8g BenchPipeline [-exemplos pasta] [-tempo segundos] [-etapas lexico,analise,...] [tamanho...]
+ * Tamanhos aceitam os sufixos K e M (padrão: 1K 64K 1M 8M 50M).
+ */
+public class BenchPipeline {
+    private static final String[] ETAPAS = {"lexico", "analise", "visita", "ir", "completo"};
+    private static final String[] TAMANHOS_PADRAO = {"1K", "64K", "1M", "8M", "50M"};
+    private static final int RODADAS_AQUECIMENTO = 3;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Evita que o JIT descarte o trabalho medido
+    private static long sumidouro;
+
+    public static void main(String[] args) throws Exception {
+        File exemplos = new File("../src");
+        double segundos = 2.0;
+        List<String> etapas = new ArrayList<>(List.of(ETAPAS));
+        List<String> tamanhos = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            boolean temValor = i + 1 < args.length;
+            if (args[i].equals("-exemplos") && temValor) {
+                exemplos = new File(args[++i]);
+            } else if (args[i].equals("-tempo") && temValor) {
+                segundos = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-etapas") && temValor) {
+                etapas = List.of(args[++i].split(","));
+            } else {
+                tamanhos.add(args[i]);
+            }
+        }
+        if (tamanhos.isEmpty()) {
+            tamanhos = List.of(TAMANHOS_PADRAO);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        System.out.printf("%-9s %9s %12s %10s %14s %12s%n",
+                "etapa", "entrada", "ops/s", "MB/s", "aloc/op", "aloc MB/s");
+        for (String tamanho : tamanhos) {
+            long bytes = lerTamanho(tamanho);
+            String mistura = null;
+            String umExecute = null;
+            for (String etapa : etapas) {
+                String fonte;
+                if (etapa.equals("lexico") || etapa.equals("analise")) {
+                    if (mistura == null) {
+                        mistura = GeradorProgramas.misturar(exemplos, bytes, bytes);
+                    }
+                    fonte = mistura;
+                } else {
+                    if (umExecute == null) {
+                        umExecute = GeradorProgramas.gerarBytes(bytes, bytes);
+                    }
+                    fonte = umExecute;
+                }
+                medir(etapa, tamanho, fonte, segundos);
+            }
+        }
+        if (sumidouro == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void medir(String etapa, String tamanho, String fonte, double segundos) throws ParseException {
+        // As etapas de tradução recebem a AST pronta, fora da medição
+        SimpleNode raiz = etapa.equals("visita") || etapa.equals("ir") ? analisar(fonte) : null;
+
+        for (int i = 0; i < RODADAS_AQUECIMENTO; i++) {
+            sumidouro += executar(etapa, fonte, raiz);
+        }
+
+        long limite = (long) (segundos * 1e9);
+        long operacoes = 0;
+        long alocadoInicio = THREADS.getCurrentThreadAllocatedBytes();
+        long inicio = System.nanoTime();
+        long decorrido;
+        do {
+            sumidouro += executar(etapa, fonte, raiz);
+            operacoes++;
+            decorrido = System.nanoTime() - inicio;
+        } while (decorrido < limite);
+        long alocado = THREADS.getCurrentThreadAllocatedBytes() - alocadoInicio;
+
+        double segundosDecorridos = decorrido / 1e9;
+        double opsPorSegundo = operacoes / segundosDecorridos;
+        System.out.printf("%-9s %9s %12.2f %10.1f %14s %12.1f%n",
+                etapa, tamanho, opsPorSegundo, opsPorSegundo * fonte.length() / (1024.0 * 1024),
+                formatarBytes(alocado / operacoes), alocado / segundosDecorridos / (1024.0 * 1024));
+    }
+
+    private static long executar(String etapa, String fonte, SimpleNode raiz) throws ParseException {
+        switch (etapa) {
+            case "lexico":
+                return lexico(fonte);
+            case "analise":
+                return analisar(fonte).jjtGetNumChildren();
+            case "visita":
+                return visitar(raiz);
+            case "ir":
+                return gerarIR(raiz);
+            case "completo":
+                return visitar(analisar(fonte));
+            default:
+                throw new IllegalArgumentException("Etapa desconhecida: " + etapa);
+        }
+    }
+
+    private static long lexico(String fonte) {
+        ADSLTokenManager lexer = new ADSLTokenManager(new SimpleCharStream(new StringReader(fonte)));
+        long tokens = 0;
+        for (Token t = lexer.getNextToken(); t.kind != ADSLConstants.EOF; t = lexer.getNextToken()) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    private static SimpleNode analisar(String fonte) throws ParseException {
+        return new ADSL(new StringReader(fonte)).Start();
+    }
+
+    private static long visitar(SimpleNode raiz) {
+        ArduinoVisitor visitor = new ArduinoVisitor();
+        raiz.jjtAccept(visitor, null);
+        return visitor.getCodigo().length();
+    }
+
+    private static long gerarIR(SimpleNode raiz) {
+        GeradorIR gerador = new GeradorIR();
+        gerador.gerar(new ConstrutorIR().construir(raiz));
+        return gerador.getCodigo().length();
+    }
+
+    private static long lerTamanho(String texto) {
+        String t = texto.toUpperCase();
+        if (t.endsWith("K")) {
+            return Long.parseLong(t.substring(0, t.length() - 1)) * 1024;
+        }
+        if (t.endsWith("M")) {
+            return Long.parseLong(t.substring(0, t.length() - 1)) * 1024 * 1024;
+        }
+        return Long.parseLong(t);
+    }
+
+    private static String formatarBytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        if (bytes >= 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return bytes + " B";
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mede quantas iterações do loop() o SimuladorIR (interpretado) e a classe
+ * gerada pelo CompiladorSimulacao (compilado) executam por segundo em cada
+ * exemplo NN_teste.txt e em um programa gerado pelo GeradorProgramas. Como o
+ * Espere só avança o relógio virtual, o tempo medido é só o de execução dos
+ * comandos. Se algum exemplo ficar abaixo de MINIMO_EXEMPLOS iterações por
+ * segundo no interpretado, o processo termina com erro.
+ *
+ * Uso: java BenchSimulador [-exemplos pasta] [-tempo segundos] [linhasGeradas]
+ */
+public class BenchSimulador {
+    private static final double MINIMO_EXEMPLOS = 1e6;
+    private static final long LOTE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        File exemplos = new File("../src");
+        double segundos = 2.0;
+        int linhasGeradas = 200;
+        for (int i = 0; i < args.length; i++) {
+            boolean temValor = i + 1 < args.length;
+            if (args[i].equals("-exemplos") && temValor) {
+                exemplos = new File(args[++i]);
+            } else if (args[i].equals("-tempo") && temValor) {
+                segundos = Double.parseDouble(args[++i]);
+            } else {
+                linhasGeradas = Integer.parseInt(args[i]);
+            }
+        }
+
+        List<String> nomes = new ArrayList<>();
+        List<String> fontes = new ArrayList<>();
+        File[] arquivos = exemplos.listFiles((pasta, nome) -> nome.matches("\\d\\d_teste\\.txt"));
+        if (arquivos != null) {
+            Arrays.sort(arquivos);
+            for (File arquivo : arquivos) {
+                nomes.add(arquivo.getName());
+                fontes.add(new String(Files.readAllBytes(arquivo.toPath()), StandardCharsets.UTF_8));
+            }
+        }
+        int numExemplos = nomes.size();
+        nomes.add("gerado (" + linhasGeradas + " linhas)");
+        fontes.add(GeradorProgramas.gerar(linhasGeradas, 7));
+
+        boolean falhou = false;
+        System.out.printf("%-24s %16s %16s %10s %18s%n",
+                "programa", "interpretado/s", "compilado/s", "ganho", "tempo virtual/s");
+        for (int i = 0; i < nomes.size(); i++) {
+            IR.Programa programa = new ConstrutorIR().construir(new ADSL(new StringReader(fontes.get(i))).Start());
+            PlacaSimulada placa = new PlacaSimulada(0);
+            double[] interpretado = medir(new SimuladorIR(programa, placa), segundos);
+            PlacaSimulada placaCompilada = new PlacaSimulada(0);
+            double[] compilado = medir(CompiladorSimulacao.compilar(programa, placaCompilada), segundos);
+            System.out.printf("%-24s %16.0f %16.0f %9.1fx %17.0fx%n", nomes.get(i),
+                    interpretado[0], compilado[0], compilado[0] / interpretado[0], compilado[1]);
+            if (i < numExemplos && interpretado[0] < MINIMO_EXEMPLOS) {
+                falhou = true;
+            }
+        }
+        if (falhou) {
+            System.out.printf("FALHA: exemplo abaixo de %.0f iterações/s%n", MINIMO_EXEMPLOS);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Iterações por segundo e quantas vezes o tempo virtual andou mais rápido que o real
+    private static double[] medir(Simulacao simulador, double segundos) {
+        PlacaSimulada placa = simulador.getPlaca();
+        simulador.iniciar();
+        // Aquecimento do JIT
+        long aquecimento = System.nanoTime() + (long) (segundos * 0.25e9);
+        while (System.nanoTime() < aquecimento) {
+            simulador.executar(LOTE);
+        }
+
+        long iteracoes = simulador.getIteracoes();
+        long virtualInicio = placa.micros();
+        long inicio = System.nanoTime();
+        long limite = (long) (segundos * 1e9);
+        long decorrido;
+        do {
+            simulador.executar(LOTE);
+            decorrido = System.nanoTime() - inicio;
+        } while (decorrido < limite);
+        iteracoes = simulador.getIteracoes() - iteracoes;
+
+        double real = decorrido / 1e9;
+        return new double[] {iteracoes / real, (placa.micros() - virtualInicio) / 1e6 / real};
+    }
+}
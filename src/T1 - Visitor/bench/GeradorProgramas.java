@@ -0,0 +1,174 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Gera programas ADSL sintéticos e válidos com o tamanho pedido, usados
+ * pelos benchmarks. Os programas misturam declarações com expressões
+ * aritméticas longas (com parênteses aninhados), condicionais, laços,
+ * chamadas de função e escritas em pinos, para que todos os níveis de
+ * expressão da gramática apareçam em quantidade.
+ *
+ * A mesma semente sempre gera o mesmo programa.
+ */
+public class GeradorProgramas {
+    private static final String[] VARIAVEIS = {"a", "b", "c", "d"};
+    private static final String[] OPERADORES = {"+", "-", "*", "/", "%"};
+    private static final String[] COMPARACOES = {"<", ">", "<=", ">=", "==", "!="};
+    private static final int[] PINOS_PWM = {3, 5, 6, 9, 10, 11};
+
+    private final Random random;
+    private final StringBuilder sb = new StringBuilder();
+    private int linhas = 0;
+
+    private GeradorProgramas(long semente) {
+        random = new Random(semente);
+    }
+
+    // Programa com aproximadamente 'linhasAlvo' linhas
+    public static String gerar(int linhasAlvo, long semente) {
+        return new GeradorProgramas(semente).programa(linhasAlvo);
+    }
+
+    // Programa com aproximadamente 'bytesAlvo' caracteres
+    public static String gerarBytes(long bytesAlvo, long semente) {
+        // Uma linha gerada tem em média pouco menos de 40 caracteres
+        return gerar((int) Math.max(16, Math.min(bytesAlvo / 38, Integer.MAX_VALUE)), semente);
+    }
+
+    /**
+     * Programa com aproximadamente 'bytesAlvo' caracteres que alterna os
+     * exemplos NN_teste.txt da pasta indicada com trechos gerados. Como a
+     * gramática aceita vários blocos Config/Execute/funcao seguidos, a
+     * concatenação continua sendo um programa válido.
+     */
+    public static String misturar(File pastaExemplos, long bytesAlvo, long semente) throws IOException {
+        List<String> exemplos = new ArrayList<>();
+        File[] arquivos = pastaExemplos.listFiles((pasta, nome) -> nome.matches("\\d\\d_teste\\.txt"));
+        if (arquivos != null) {
+            Arrays.sort(arquivos);
+            for (File arquivo : arquivos) {
+                exemplos.add(new String(Files.readAllBytes(arquivo.toPath()), StandardCharsets.UTF_8) + "\n");
+            }
+        }
+
+        StringBuilder sb = new StringBuilder((int) Math.min(bytesAlvo + 8192, Integer.MAX_VALUE - 8));
+        long trecho = 0;
+        while (sb.length() < bytesAlvo) {
+            if (!exemplos.isEmpty()) {
+                sb.append(exemplos.get((int) (trecho % exemplos.size())));
+            }
+            if (sb.length() < bytesAlvo) {
+                sb.append(gerarBytes(Math.min(4096, bytesAlvo - sb.length()), semente + trecho));
+            }
+            trecho++;
+        }
+        return sb.toString();
+    }
+
+    private String programa(int linhasAlvo) {
+        linha("// Programa gerado para benchmark");
+        linha("funcao calcula(int x, int y): int {");
+        linha("    int r = (x + y) * 2 - x % 3;");
+        linha("    retorne r;");
+        linha("}");
+        linha("");
+        linha("Config {");
+        linha("    Monitor 9600;");
+        linha("    Saida 13;");
+        linha("    Saida 9;");
+        linha("    Entrada A0;");
+        for (String v : VARIAVEIS) {
+            linha("    int " + v + " = " + (random.nextInt(50) + 1) + ";");
+        }
+        linha("}");
+        linha("");
+        linha("Execute {");
+        int contador = 0;
+        while (linhas < linhasAlvo - 1) {
+            comando("    ", contador++, 0);
+        }
+        linha("}");
+        return sb.toString();
+    }
+
+    private void comando(String indent, int n, int profundidade) {
+        int escolha = random.nextInt(profundidade < 2 ? 10 : 7);
+        switch (escolha) {
+            case 0:
+            case 1:
+            case 2:
+                linha(indent + "int v" + n + " = " + expressao(3) + ";");
+                break;
+            case 3:
+                linha(indent + VARIAVEIS[random.nextInt(VARIAVEIS.length)] + " = " + expressao(2) + ";");
+                break;
+            case 4:
+                linha(indent + "EscritaMon(" + expressao(2) + ");");
+                break;
+            case 5:
+                linha(indent + "Escreva 13 " + random.nextInt(2) + ";");
+                linha(indent + "EscrevaPWM " + PINOS_PWM[random.nextInt(PINOS_PWM.length)] + " " + random.nextInt(256) + ";");
+                break;
+            case 6:
+                linha(indent + "Espere " + (numero() + 1) + " ms;");
+                break;
+            case 7:
+            case 8:
+                linha(indent + "se (" + expressao(2) + " " + COMPARACOES[random.nextInt(COMPARACOES.length)] + " "
+                        + expressao(1) + " && " + variavel() + " != 0) {");
+                comando(indent + "    ", n, profundidade + 1);
+                linha(indent + "} senao {");
+                comando(indent + "    ", n, profundidade + 1);
+                linha(indent + "}");
+                break;
+            default:
+                linha(indent + "repita " + (random.nextInt(5) + 1) + " {");
+                comando(indent + "    ", n, profundidade + 1);
+                linha(indent + "}");
+                break;
+        }
+    }
+
+    // Abaixo de 300: 300, 600, 1200... são lidos como as palavras de frequência do Monitor
+    private int numero() {
+        return random.nextInt(299);
+    }
+
+    private String variavel() {
+        return VARIAVEIS[random.nextInt(VARIAVEIS.length)];
+    }
+
+    private String expressao(int profundidade) {
+        StringBuilder e = new StringBuilder();
+        int termos = 2 + random.nextInt(4);
+        for (int i = 0; i < termos; i++) {
+            if (i > 0) {
+                e.append(' ').append(OPERADORES[random.nextInt(OPERADORES.length)]).append(' ');
+            }
+            int tipo = random.nextInt(6);
+            if (tipo == 0 && profundidade > 0) {
+                e.append('(').append(expressao(profundidade - 1)).append(')');
+            } else if (tipo == 1 && profundidade > 0) {
+                e.append("calcula(").append(variavel()).append(", ").append(numero()).append(')');
+            } else if (tipo == 2) {
+                e.append(numero());
+            } else if (tipo == 3) {
+                e.append("-").append(variavel());
+            } else {
+                e.append(variavel());
+            }
+        }
+        return e.toString();
+    }
+
+    private void linha(String texto) {
+        sb.append(texto).append('\n');
+        linhas++;
+    }
+}
@@ -4,20 +4,204 @@ import java.io.*;
 public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/*@bgen(jjtree)*/
   protected JJTADSLState jjtree = new JJTADSLState();public static void main(String[] args) throws ParseException {
     if (args.length == 0) {
-      System.err.println("Uso: java ADSL <arquivo.txt>");
+      System.err.println("Uso: java ADSL [-placa uno|mega|nano|perfil.properties] <arquivo.txt> [saida.ino]");
+      System.err.println("     java ADSL -lote [-placa nome] [-d pastaSaida] <arquivo.txt | pasta | glob>...");
+      System.err.println("     java ADSL -paralelo [-placa nome] [-t threads | -virtual] [-d pastaSaida] <arquivo.txt | pasta | glob>...");
+      System.err.println("     java ADSL [-placa nome] -fluxo <arquivo.txt> [saida.ino]");
+      System.err.println("     java ADSL -simular [-n iteracoes] [-tempo ms] [-O] [-compilado] [-entrada pino=valor]... <arquivo.txt>");
+      System.err.println("     java ADSL -simular-lote [-t threads] [-horizonte valor unidade] [-copias n] [-compilado] [-O] <arquivo.txt | pasta | glob>...");
+      System.err.println("     java ADSL -estimar [-placa nome] [-O] [-portas] [-taxa-minima Hz] <arquivo.txt>...");
       return;
     }
-
+    if (args[0].equals("-lote")) {
+      CompiladorLote.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args[0].equals("-paralelo")) {
+      CompiladorParalelo.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args[0].equals("-estimar")) {
+      EstimadorTempo.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    // Placa de destino da tradução (padrão: Uno)
+    PerfilPlaca placa = PerfilPlaca.UNO;
+    if (args[0].equals("-placa") && args.length > 2) {
+      try {
+        placa = PerfilPlaca.ler(args[1]);
+      } catch (IOException e) {
+        System.err.println("Erro ao ler o perfil da placa: " + e.getMessage());
+        return;
+      } catch (IllegalArgumentException e) {
+        System.err.println(e.getMessage());
+        return;
+      }
+      args = java.util.Arrays.copyOfRange(args, 2, args.length);
+    }
+    if (args[0].equals("-fluxo")) {
+      traduzirEmFluxo(java.util.Arrays.copyOfRange(args, 1, args.length), placa);
+      return;
+    }
+    if (args[0].equals("-simular-lote")) {
+      EscalonadorVirtual.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args[0].equals("-simular")) {
+      SimuladorIR.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    
+    File arquivo = new File(args[0]);
+    ArduinoVisitor visitor = new ArduinoVisitor(ArduinoVisitor.estimarCapacidade(arquivo.length()));
+    visitor.setPlaca(placa);
     try {
-      FileInputStream input = new FileInputStream(args[0]);
+      FileInputStream input = new FileInputStream(arquivo);
       ADSL parser = new ADSL(input);
+      parser.setPlaca(placa);
       SimpleNode root = parser.Start();
-      root.jjtAccept(new ArduinoVisitor(), null);
+      root.jjtAccept(visitor, null);
     } catch (FileNotFoundException e) {
       System.err.println("Arquivo n\u00e3o encontrado: " + args[0]);
+      return;
+    }
+
+    // O sketch completo é escrito de uma vez só, no arquivo de saída ou na saída padrão
+    try {
+      if (args.length > 1) {
+        Writer saida = new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8");
+        try {
+          visitor.escreverEm(saida);
+        } finally {
+          saida.close();
+        }
+      } else {
+        PrintStream saida = System.out;
+        saida.print(visitor.getCodigo());
+        saida.flush();
+      }
+    } catch (IOException e) {
+      System.err.println("Erro ao escrever o sketch: " + e.getMessage());
     }
   }
 
+  // Modo fluxo: o sketch é escrito item a item enquanto o arquivo é analisado,
+  // sem manter a AST inteira em memória (veja a produção Traduzir)
+  static void traduzirEmFluxo(String[] args, PerfilPlaca placa) {
+    if (args.length == 0) {
+      System.err.println("Uso: java ADSL [-placa nome] -fluxo <arquivo.txt> [saida.ino]");
+      return;
+    }
+    ArduinoVisitor visitor = new ArduinoVisitor();
+    visitor.setPlaca(placa);
+    File arquivoSaida = args.length > 1 ? new File(args[1]) : null;
+    // Saída já criada e ainda incompleta
+    File incompleto = null;
+    try {
+      ADSL parser = new ADSL(new BufferedInputStream(new FileInputStream(args[0])));
+      parser.setPlaca(placa);
+      if (arquivoSaida != null) {
+        Writer saida = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(arquivoSaida), "UTF-8"));
+        incompleto = arquivoSaida;
+        try {
+          parser.Traduzir(visitor, saida);
+        } finally {
+          saida.close();
+        }
+        incompleto = null;
+      } else {
+        Writer saida = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()));
+        parser.Traduzir(visitor, saida);
+        saida.flush();
+      }
+    } catch (FileNotFoundException e) {
+      System.err.println("Arquivo n\u00e3o encontrado: " + e.getMessage());
+    } catch (ParseException e) {
+      System.err.println(args[0] + ": erro de sintaxe: " + e.getMessage());
+    } catch (TokenMgrError e) {
+      System.err.println(args[0] + ": erro de sintaxe: " + e.getMessage());
+    } catch (IOException e) {
+      System.err.println("Erro ao escrever o sketch: " + e.getMessage());
+    } catch (RuntimeException e) {
+      System.err.println(args[0] + ": erro na tradu\u00e7\u00e3o: " + e.getMessage());
+    } finally {
+      // O que já foi escrito parece um sketch completo, mas não é; vale
+      // também para erros que não são tratados aqui, como falta de memória
+      if (incompleto != null) {
+        incompleto.delete();
+      }
+    }
+  }
+
+  // Placa usada para validar os pinos (Uno se não for escolhida)
+  private PerfilPlaca placa = PerfilPlaca.UNO;
+
+  public void setPlaca(PerfilPlaca placa) {
+    this.placa = placa;
+  }
+
+  public PerfilPlaca getPlaca() {
+    return placa;
+  }
+
+  private void iniciarTraducao(ArduinoVisitor visitor, Writer saida) throws IOException {
+    escalonador = null;
+    primeiroExecute = null;
+    primeiroLoop = null;
+    visitor.reiniciar();
+    visitor.iniciarSketch();
+    saida.append(visitor.getCodigo());
+  }
+
+  // Modo fluxo: o primeiro Execute fica guardado (o loop() já traduzido e a
+  // IR) até se saber se há outro. Do segundo em diante cada Execute vira uma
+  // tarefa escrita assim que fecha; só o número de tarefas fica para o fim.
+  private IR.Comando primeiroExecute;
+  private String primeiroLoop;
+  // Gerador das tarefas, criado no segundo Execute
+  private GeradorIR escalonador;
+
+  // Retira da pilha do JJTree o item que acabou de ser fechado, traduz e escreve.
+  // Depois disso nada mais referencia o nó nem os tokens dele.
+  private void traduzirItem(ArduinoVisitor visitor, Writer saida) throws IOException {
+    Node item = jjtree.popNode();
+    visitor.reiniciar();
+    if (item instanceof ASTExecute) {
+      IR.Comando loop = (IR.Comando) item.jjtAccept(new ConstrutorIR(), null);
+      if (escalonador == null && primeiroExecute == null) {
+        item.jjtAccept(visitor, null);
+        primeiroLoop = visitor.getCodigo().toString();
+        primeiroExecute = loop;
+        return;
+      }
+      if (escalonador == null) {
+        escalonador = new GeradorIR();
+        escalonador.setPlaca(placa);
+        escalonador.iniciarTarefas(saida);
+        escalonador.gerarTarefa(primeiroExecute, saida);
+        primeiroExecute = null;
+        primeiroLoop = null;
+      }
+      escalonador.gerarTarefa(loop, saida);
+      return;
+    }
+    item.jjtAccept(visitor, null);
+    saida.append(visitor.getCodigo());
+  }
+
+  // Fim do arquivo: escreve o loop() do único Execute ou, com vários, o
+  // loop() que escalona as tarefas já escritas
+  private void concluirTraducao(Writer saida) throws IOException {
+    if (escalonador != null) {
+      escalonador.concluirTarefas(saida);
+    } else if (primeiroLoop != null) {
+      saida.append(primeiroLoop);
+    }
+    escalonador = null;
+    primeiroExecute = null;
+    primeiroLoop = null;
+  }
+
   final public SimpleNode Start() throws ParseException {
  /*@bgen(jjtree) Start */
   ASTStart jjtn000 = new ASTStart(JJTSTART);
@@ -779,10 +963,10 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     jjtree.closeNodeScope(jjtn000, true);
     jjtc000 = false;
     jjtn000.jjtSetLastToken(getToken(0));
-    // Validação para pinos digitais (0-13)
+    // Validação para pinos digitais (0-13 no Uno), pela tabela da placa
     int pino = Integer.parseInt(t.image);
-    if (pino < 0 || pino > 13) {
-      {if (true) throw new ParseException("Pino digital deve estar entre 0 e 13: " + pino);}
+    if (!placa.ehDigital(pino)) {
+      {if (true) throw new ParseException("Pino digital deve estar entre 0 e " + (placa.getDigitais() - 1) + ": " + pino);}
     }
     } finally {
     if (jjtc000) {
@@ -794,12 +978,20 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
 
   final public void PinosA() throws ParseException {
  /*@bgen(jjtree) PinosA */
-  ASTPinosA jjtn000 = new ASTPinosA(JJTPINOSA);
-  boolean jjtc000 = true;
-  jjtree.openNodeScope(jjtn000);
-  jjtn000.jjtSetFirstToken(getToken(1));
+ ASTPinosA jjtn000 = new ASTPinosA(JJTPINOSA);
+ boolean jjtc000 = true;
+ jjtree.openNodeScope(jjtn000);
+ jjtn000.jjtSetFirstToken(getToken(1));Token t;
     try {
-      jj_consume_token(PINO_ANALOGICO);
+      t = jj_consume_token(PINO_ANALOGICO);
+    jjtree.closeNodeScope(jjtn000, true);
+    jjtc000 = false;
+    jjtn000.jjtSetLastToken(getToken(0));
+    // Validação para pinos analógicos (A0-A5 no Uno), pela tabela da placa
+    int canal = Integer.parseInt(t.image.substring(1));
+    if (!placa.ehCanalAnalogico(canal)) {
+      {if (true) throw new ParseException("Pino anal\u00f3gico deve estar entre A0 e A" + (placa.getAnalogicos() - 1) + ": " + t.image);}
+    }
     } finally {
     if (jjtc000) {
       jjtree.closeNodeScope(jjtn000, true);
@@ -819,18 +1011,10 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     jjtree.closeNodeScope(jjtn000, true);
     jjtc000 = false;
     jjtn000.jjtSetLastToken(getToken(0));
-    // Validação para pinos PWM (3,5,6,9,10,11)
+    // Validação para pinos PWM (3,5,6,9,10,11 no Uno), pela tabela da placa
     int pino = Integer.parseInt(t.image);
-    int[] pwmPins = {3,5,6,9,10,11};
-    boolean isValid = false;
-    for (int pin : pwmPins) {
-      if (pino == pin) {
-        isValid = true;
-        break;
-      }
-    }
-    if (!isValid) {
-      {if (true) throw new ParseException("Pino PWM deve ser 3,5,6,9,10 ou 11: " + pino);}
+    if (!placa.ehPwm(pino)) {
+      {if (true) throw new ParseException("Pino PWM deve ser " + placa.getDescricaoPwm() + ": " + pino);}
     }
     } finally {
     if (jjtc000) {
@@ -2089,10 +2273,10 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
 
   final public void ExpressaoRelacional() throws ParseException {
  /*@bgen(jjtree) ExpressaoRelacional */
-  ASTExpressaoRelacional jjtn000 = new ASTExpressaoRelacional(JJTEXPRESSAORELACIONAL);
-  boolean jjtc000 = true;
-  jjtree.openNodeScope(jjtn000);
-  jjtn000.jjtSetFirstToken(getToken(1));
+ ASTExpressaoRelacional jjtn000 = new ASTExpressaoRelacional(JJTEXPRESSAORELACIONAL);
+ boolean jjtc000 = true;
+ jjtree.openNodeScope(jjtn000);
+ jjtn000.jjtSetFirstToken(getToken(1));Token t;
     try {
       ExpressaoAditiva();
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -2104,28 +2288,29 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
       case NE:
         switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
         case LT:
-          jj_consume_token(LT);
+          t = jj_consume_token(LT);
           break;
         case GT:
-          jj_consume_token(GT);
+          t = jj_consume_token(GT);
           break;
         case LE:
-          jj_consume_token(LE);
+          t = jj_consume_token(LE);
           break;
         case GE:
-          jj_consume_token(GE);
+          t = jj_consume_token(GE);
           break;
         case EQ:
-          jj_consume_token(EQ);
+          t = jj_consume_token(EQ);
           break;
         case NE:
-          jj_consume_token(NE);
+          t = jj_consume_token(NE);
           break;
         default:
           jj_la1[33] = jj_gen;
           jj_consume_token(-1);
           throw new ParseException();
         }
+                                                   jjtn000.setOperador(t.kind);
         ExpressaoAditiva();
         break;
       default:
@@ -2156,10 +2341,10 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
 
   final public void ExpressaoAditiva() throws ParseException {
  /*@bgen(jjtree) ExpressaoAditiva */
-  ASTExpressaoAditiva jjtn000 = new ASTExpressaoAditiva(JJTEXPRESSAOADITIVA);
-  boolean jjtc000 = true;
-  jjtree.openNodeScope(jjtn000);
-  jjtn000.jjtSetFirstToken(getToken(1));
+ ASTExpressaoAditiva jjtn000 = new ASTExpressaoAditiva(JJTEXPRESSAOADITIVA);
+ boolean jjtc000 = true;
+ jjtree.openNodeScope(jjtn000);
+ jjtn000.jjtSetFirstToken(getToken(1));Token t;
     try {
       ExpressaoMultiplicativa();
       label_12:
@@ -2171,16 +2356,17 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
         }
         switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
         case PLUS:
-          jj_consume_token(PLUS);
+          t = jj_consume_token(PLUS);
           break;
         case MINUS:
-          jj_consume_token(MINUS);
+          t = jj_consume_token(MINUS);
           break;
         default:
           jj_la1[35] = jj_gen;
           jj_consume_token(-1);
           throw new ParseException();
         }
+                                                   jjtn000.adicionarOperador(t.kind);
         ExpressaoMultiplicativa();
       }
     } catch (Throwable jjte000) {
@@ -2207,10 +2393,10 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
 
   final public void ExpressaoMultiplicativa() throws ParseException {
  /*@bgen(jjtree) ExpressaoMultiplicativa */
-  ASTExpressaoMultiplicativa jjtn000 = new ASTExpressaoMultiplicativa(JJTEXPRESSAOMULTIPLICATIVA);
-  boolean jjtc000 = true;
-  jjtree.openNodeScope(jjtn000);
-  jjtn000.jjtSetFirstToken(getToken(1));
+ ASTExpressaoMultiplicativa jjtn000 = new ASTExpressaoMultiplicativa(JJTEXPRESSAOMULTIPLICATIVA);
+ boolean jjtc000 = true;
+ jjtree.openNodeScope(jjtn000);
+ jjtn000.jjtSetFirstToken(getToken(1));Token t;
     try {
       ExpressaoUnaria();
       label_13:
@@ -2222,19 +2408,20 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
         }
         switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
         case STAR:
-          jj_consume_token(STAR);
+          t = jj_consume_token(STAR);
           break;
         case SLASH:
-          jj_consume_token(SLASH);
+          t = jj_consume_token(SLASH);
           break;
         case REM:
-          jj_consume_token(REM);
+          t = jj_consume_token(REM);
           break;
         default:
           jj_la1[36] = jj_gen;
           jj_consume_token(-1);
           throw new ParseException();
         }
+                                                   jjtn000.adicionarOperador(t.kind);
         ExpressaoUnaria();
       }
     } catch (Throwable jjte000) {
@@ -2494,6 +2681,73 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     }
   }
 
+  final public void Traduzir(ArduinoVisitor visitor, Writer saida) throws ParseException, IOException {
+    iniciarTraducao(visitor, saida);
+    label_14:
+    while (true) {
+      switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
+      case CONFIG:
+      case EXECUTE:
+      case FUNCAO:
+      case BYTE:
+      case INT:
+      case UNSIGNED_INT:
+      case LONG:
+      case UNSIGNED_LONG:
+      case FLOAT:
+      case CHAR:
+      case STRING_TYPE:
+      case BOOLEAN:
+      case SINGLE_LINE_COMMENT:
+      case MULTI_LINE_COMMENT:
+      case FORMAL_COMMENT:
+        ;
+        break;
+      default:
+        jj_la1[43] = jj_gen;
+        break label_14;
+      }
+      switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
+      case CONFIG:
+        Config();
+        break;
+      case EXECUTE:
+        Execute();
+        break;
+      case FUNCAO:
+        Funcao();
+        break;
+      case SINGLE_LINE_COMMENT:
+        SingleLineComment();
+        break;
+      case MULTI_LINE_COMMENT:
+        MultiLineComment();
+        break;
+      case FORMAL_COMMENT:
+        FormalComment();
+        break;
+      case BYTE:
+      case INT:
+      case UNSIGNED_INT:
+      case LONG:
+      case UNSIGNED_LONG:
+      case FLOAT:
+      case CHAR:
+      case STRING_TYPE:
+      case BOOLEAN:
+        DecVar();
+        break;
+      default:
+        jj_la1[44] = jj_gen;
+        jj_consume_token(-1);
+        throw new ParseException();
+      }
+      traduzirItem(visitor, saida);
+    }
+    jj_consume_token(0);
+    concluirTraducao(saida);
+  }
+
   private boolean jj_2_1(int xla) {
     jj_la = xla; jj_lastpos = jj_scanpos = token;
     try { return !jj_3_1(); }
@@ -2898,7 +3152,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
   private boolean jj_lookingAhead = false;
   private boolean jj_semLA;
   private int jj_gen;
-  final private int[] jj_la1 = new int[43];
+  final private int[] jj_la1 = new int[45];
   static private int[] jj_la1_0;
   static private int[] jj_la1_1;
   static private int[] jj_la1_2;
@@ -2908,13 +3162,13 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
       jj_la1_init_2();
    }
    private static void jj_la1_init_0() {
-      jj_la1_0 = new int[] {0x106,0x106,0x0,0x0,0xfab8,0xfab8,0x0,0x400,0x800,0x0,0x58,0x58,0xf8b8,0xf8b8,0x18,0x0,0xffc00000,0x3e0000,0x800,0x800,0x800,0xf8b8,0xf8b8,0xf8b8,0x0,0x0,0x10000,0xf8b8,0xf8b8,0xf8b8,0xf8b8,0x0,0x0,0x0,0x0,0x0,0x0,0x0,0x800,0x0,0x800,0x800,0x0,};
+      jj_la1_0 = new int[] {0x106,0x106,0x0,0x0,0xfab8,0xfab8,0x0,0x400,0x800,0x0,0x58,0x58,0xf8b8,0xf8b8,0x18,0x0,0xffc00000,0x3e0000,0x800,0x800,0x800,0xf8b8,0xf8b8,0xf8b8,0x0,0x0,0x10000,0xf8b8,0xf8b8,0xf8b8,0xf8b8,0x0,0x0,0x0,0x0,0x0,0x0,0x0,0x800,0x0,0x800,0x800,0x0,0x106,0x106,};
    }
    private static void jj_la1_init_1() {
-      jj_la1_1 = new int[] {0x7fc,0x7fc,0x7fc,0x20000,0x7fc,0x7fc,0x0,0x7fc,0x600c000,0x0,0x7fc,0x7fc,0x7fc,0x7fc,0x0,0x0,0x3,0x0,0x600c000,0x600c000,0x600c000,0x7fc,0x7fc,0x7fc,0x800,0x7fc,0x0,0x7fc,0x7fc,0x7fc,0x7fc,0x400000,0x800000,0x3c3000,0x3c3000,0x6000000,0x18000000,0x600c000,0x600c000,0x0,0x0,0x600c000,0x0,};
+      jj_la1_1 = new int[] {0x7fc,0x7fc,0x7fc,0x20000,0x7fc,0x7fc,0x0,0x7fc,0x600c000,0x0,0x7fc,0x7fc,0x7fc,0x7fc,0x0,0x0,0x3,0x0,0x600c000,0x600c000,0x600c000,0x7fc,0x7fc,0x7fc,0x800,0x7fc,0x0,0x7fc,0x7fc,0x7fc,0x7fc,0x400000,0x800000,0x3c3000,0x3c3000,0x6000000,0x18000000,0x600c000,0x600c000,0x0,0x0,0x600c000,0x0,0x7fc,0x7fc,};
    }
    private static void jj_la1_init_2() {
-      jj_la1_2 = new int[] {0x1c0,0x1c0,0x0,0x0,0x1e0,0x1e0,0x200000,0x0,0x4036,0x200000,0x1c0,0x1c0,0x1e0,0x1e0,0x0,0xc,0x0,0x0,0x4036,0x4036,0x4036,0x1e0,0x1e0,0x0,0x0,0x0,0x0,0x1e0,0x1e0,0x1e0,0x1e0,0x0,0x0,0x0,0x0,0x0,0x1,0x0,0x4036,0x16,0x4020,0x4036,0x6,};
+      jj_la1_2 = new int[] {0x1c0,0x1c0,0x0,0x0,0x1e0,0x1e0,0x200000,0x0,0x4036,0x200000,0x1c0,0x1c0,0x1e0,0x1e0,0x0,0xc,0x0,0x0,0x4036,0x4036,0x4036,0x1e0,0x1e0,0x0,0x0,0x0,0x0,0x1e0,0x1e0,0x1e0,0x1e0,0x0,0x0,0x0,0x0,0x0,0x1,0x0,0x4036,0x16,0x4020,0x4036,0x6,0x1c0,0x1c0,};
    }
   final private JJCalls[] jj_2_rtns = new JJCalls[8];
   private boolean jj_rescan = false;
@@ -2931,7 +3185,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     token = new Token();
     jj_ntk = -1;
     jj_gen = 0;
-    for (int i = 0; i < 43; i++) jj_la1[i] = -1;
+    for (int i = 0; i < 45; i++) jj_la1[i] = -1;
     for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2947,7 +3201,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     jj_ntk = -1;
     jjtree.reset();
     jj_gen = 0;
-    for (int i = 0; i < 43; i++) jj_la1[i] = -1;
+    for (int i = 0; i < 45; i++) jj_la1[i] = -1;
     for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2958,7 +3212,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     token = new Token();
     jj_ntk = -1;
     jj_gen = 0;
-    for (int i = 0; i < 43; i++) jj_la1[i] = -1;
+    for (int i = 0; i < 45; i++) jj_la1[i] = -1;
     for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2970,7 +3224,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     jj_ntk = -1;
     jjtree.reset();
     jj_gen = 0;
-    for (int i = 0; i < 43; i++) jj_la1[i] = -1;
+    for (int i = 0; i < 45; i++) jj_la1[i] = -1;
     for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2980,7 +3234,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     token = new Token();
     jj_ntk = -1;
     jj_gen = 0;
-    for (int i = 0; i < 43; i++) jj_la1[i] = -1;
+    for (int i = 0; i < 45; i++) jj_la1[i] = -1;
     for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -2991,7 +3245,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
     jj_ntk = -1;
     jjtree.reset();
     jj_gen = 0;
-    for (int i = 0; i < 43; i++) jj_la1[i] = -1;
+    for (int i = 0; i < 45; i++) jj_la1[i] = -1;
     for (int i = 0; i < jj_2_rtns.length; i++) jj_2_rtns[i] = new JJCalls();
   }
 
@@ -3111,7 +3365,7 @@ public class ADSL/*@bgen(jjtree)*/implements ADSLTreeConstants, ADSLConstants {/
       la1tokens[jj_kind] = true;
       jj_kind = -1;
     }
-    for (int i = 0; i < 43; i++) {
+    for (int i = 0; i < 45; i++) {
       if (jj_la1[i] == jj_gen) {
         for (int j = 0; j < 32; j++) {
           if ((jj_la1_0[i] & (1<<j)) != 0) {
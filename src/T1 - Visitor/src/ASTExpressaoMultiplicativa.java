@@ -1,6 +1,12 @@
 /* Generated By:JJTree: Do not edit this line. ASTExpressaoMultiplicativa.java Version 4.1 */
 /* JavaCCOptions:MULTI=true,NODE_USES_PARSER=false,VISITOR=true,TRACK_TOKENS=true,NODE_PREFIX=AST,NODE_EXTENDS=,NODE_FACTORY= */
 public class ASTExpressaoMultiplicativa extends SimpleNode {
+  private static final int[] SEM_OPERADORES = new int[0];
+
+  // Tipos (ADSLConstants) dos operadores entre filhos consecutivos, gravados pelo parser
+  private int[] operadores = SEM_OPERADORES;
+  private int numOperadores = 0;
+
   public ASTExpressaoMultiplicativa(int id) {
     super(id);
   }
@@ -9,6 +15,17 @@ public class ASTExpressaoMultiplicativa extends SimpleNode {
     super(p, id);
   }
 
+  public void adicionarOperador(int kind) {
+    if (numOperadores == operadores.length) {
+      operadores = java.util.Arrays.copyOf(operadores, Math.max(4, numOperadores * 2));
+    }
+    operadores[numOperadores++] = kind;
+  }
+
+  /** Operador entre os filhos i e i + 1. **/
+  public int getOperador(int i) {
+    return operadores[i];
+  }
 
   /** Accept the visitor. **/
   public Object jjtAccept(ADSLVisitor visitor, Object data) {
@@ -1,6 +1,9 @@
 /* Generated By:JJTree: Do not edit this line. ASTExpressaoRelacional.java Version 4.1 */
 /* JavaCCOptions:MULTI=true,NODE_USES_PARSER=false,VISITOR=true,TRACK_TOKENS=true,NODE_PREFIX=AST,NODE_EXTENDS=,NODE_FACTORY= */
 public class ASTExpressaoRelacional extends SimpleNode {
+  // Tipo (ADSLConstants) do operador de comparação, ou -1 quando há um único filho
+  private int operador = -1;
+
   public ASTExpressaoRelacional(int id) {
     super(id);
   }
@@ -9,6 +12,13 @@ public class ASTExpressaoRelacional extends SimpleNode {
     super(p, id);
   }
 
+  public void setOperador(int kind) {
+    operador = kind;
+  }
+
+  public int getOperador() {
+    return operador;
+  }
 
   /** Accept the visitor. **/
   public Object jjtAccept(ADSLVisitor visitor, Object data) {
@@ -1,9 +1,68 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Flushable;
+import java.io.IOException;
 
 public class ArduinoVisitor implements ADSLVisitor {
+    // Capacidade inicial do buffer quando o tamanho da entrada é desconhecido
+    public static final int CAPACIDADE_PADRAO = 4096;
+    private static final String NOVA_LINHA = System.lineSeparator();
+
     private int indentLevel = 0;
-    
+    // Todo o sketch é montado neste buffer e escrito de uma só vez no final
+    private final StringBuilder saida;
+    // Placa de destino: dá o número digital dos pinos An
+    private PerfilPlaca placa = PerfilPlaca.UNO;
+
+    public ArduinoVisitor() {
+        this(CAPACIDADE_PADRAO);
+    }
+
+    public ArduinoVisitor(int capacidadeInicial) {
+        saida = new StringBuilder(Math.max(capacidadeInicial, 16));
+    }
+
+    // O código gerado costuma ter cerca do dobro do tamanho do fonte ADSL
+    public static int estimarCapacidade(long tamanhoEntrada) {
+        long estimativa = tamanhoEntrada * 2;
+        if (estimativa < CAPACIDADE_PADRAO) {
+            return CAPACIDADE_PADRAO;
+        }
+        return (int) Math.min(estimativa, Integer.MAX_VALUE - 8);
+    }
+
+    public void setPlaca(PerfilPlaca placa) {
+        this.placa = placa;
+    }
+
+    public CharSequence getCodigo() {
+        return saida;
+    }
+
+    // Escreve o sketch acumulado no destino escolhido pelo chamador com um único append
+    public void escreverEm(Appendable destino) throws IOException {
+        destino.append(saida);
+        if (destino instanceof Flushable) {
+            ((Flushable) destino).flush();
+        }
+    }
+
+    // Descarta o código acumulado, mantendo a capacidade já alocada do buffer
+    public void reiniciar() {
+        saida.setLength(0);
+        indentLevel = 0;
+    }
+
+    private void print(String texto) {
+        saida.append(texto);
+    }
+
+    private void println(String texto) {
+        saida.append(texto).append(NOVA_LINHA);
+    }
+
+    private void println() {
+        saida.append(NOVA_LINHA);
+    }
+
     private String getIndent() {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < indentLevel; i++) {
@@ -12,18 +71,10 @@ public class ArduinoVisitor implements ADSLVisitor {
         return sb.toString();
     }
     
-    // Método para extração de operadores em um nó
-    private List<Token> extractOperators(SimpleNode node, int[] operatorKinds) {
-        List<Token> operators = new ArrayList<>();
-        for (Token t = node.jjtGetFirstToken(); t != null; t = t.next) {
-            for (int kind : operatorKinds) {
-                if (t.kind == kind) {
-                    operators.add(t);
-                    break;
-                }
-            }
-        }
-        return operators;
+    // Símbolo de um operador a partir do tipo gravado no nó pelo parser ("+" e não "\"+\"")
+    private static String simbolo(int kind) {
+        String imagem = ADSLConstants.tokenImage[kind];
+        return imagem.substring(1, imagem.length() - 1);
     }
     
     @Override
@@ -31,32 +82,55 @@ public class ArduinoVisitor implements ADSLVisitor {
         return node.childrenAccept(this, data);
     }
 
+    // Cabeçalho do sketch; no modo fluxo é escrito antes do primeiro item
+    public void iniciarSketch() {
+        println("// Código gerado automaticamente");
+        println();
+    }
+
     @Override
     public Object visit(ASTStart node, Object data) {
-        System.out.println("// Código gerado automaticamente");
-        System.out.println();
+        if (contarExecute(node) > 1) {
+            // Vários Execute viram tarefas de um escalonador, que só o GeradorIR sabe montar
+            GeradorIR gerador = new GeradorIR(saida.capacity());
+            gerador.setPlaca(placa);
+            gerador.gerar(new ConstrutorIR().construir(node));
+            saida.append(gerador.getCodigo());
+            return data;
+        }
+        iniciarSketch();
         node.childrenAccept(this, data);
         return data;
     }
 
+    private static int contarExecute(SimpleNode node) {
+        int n = 0;
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            if (node.jjtGetChild(i) instanceof ASTExecute) {
+                n++;
+            }
+        }
+        return n;
+    }
+
     @Override
     public Object visit(ASTConfig node, Object data) {
-        System.out.println("void setup() {");
+        println("void setup() {");
         indentLevel++;
         node.childrenAccept(this, data);
         indentLevel--;
-        System.out.println("}");
-        System.out.println();
+        println("}");
+        println();
         return data;
     }
 
     @Override
     public Object visit(ASTExecute node, Object data) {
-        System.out.println("void loop() {");
+        println("void loop() {");
         indentLevel++;
         node.childrenAccept(this, data);
         indentLevel--;
-        System.out.println("}");
+        println("}");
         return data;
     }
 
@@ -76,10 +150,10 @@ public class ArduinoVisitor implements ADSLVisitor {
         
         if (pinosNode instanceof ASTPinosA) {
             int analogPin = Integer.parseInt(pino.substring(1));
-            pino = String.valueOf(analogPin + 14);
+            pino = String.valueOf(placa.pinoDoCanal(analogPin));
         }
         
-        System.out.println(getIndent() + "pinMode(" + pino + ", " + arduinoMode + ");");
+        println(getIndent() + "pinMode(" + pino + ", " + arduinoMode + ");");
         return data;
     }
 
@@ -89,7 +163,7 @@ public class ArduinoVisitor implements ADSLVisitor {
         Token freqToken = freqNode.jjtGetFirstToken();
         String baudRate = freqToken.image;
         
-        System.out.println(getIndent() + "Serial.begin(" + baudRate + ");");
+        println(getIndent() + "Serial.begin(" + baudRate + ");");
         return data;
     }
 
@@ -109,11 +183,11 @@ public class ArduinoVisitor implements ADSLVisitor {
         String unidade = unidadeToken.image;
         
         long ms = converterParaMs(Long.parseLong(valor), unidade);
-        System.out.println(getIndent() + "delay(" + ms + ");");
+        println(getIndent() + "delay(" + ms + ");");
         return data;
     }
 
-    private long converterParaMs(long valor, String unidade) {
+    static long converterParaMs(long valor, String unidade) {
         switch (unidade) {
             case "ns": return valor / 1000000;
             case "ms": return valor;
@@ -128,7 +202,7 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTRead node, Object data) {
         Node pinoNode = node.jjtGetChild(0);
         
-        System.out.print(getIndent());
+        print(getIndent());
         
         if (pinoNode instanceof ASTPinos) {
             SimpleNode tipoPinoNode = (SimpleNode) ((SimpleNode) pinoNode).jjtGetChild(0);
@@ -136,14 +210,14 @@ public class ArduinoVisitor implements ADSLVisitor {
             String pino = pinoToken.image;
 
             if (tipoPinoNode instanceof ASTPinosA) {
-                System.out.println("analogRead(" + pino + ");");
+                println("analogRead(" + pino + ");");
             } else {
-                System.out.println("digitalRead(" + pino + ");");
+                println("digitalRead(" + pino + ");");
             }
         } else {
-            System.out.print("digitalRead(");
+            print("digitalRead(");
             ((SimpleNode) pinoNode).jjtAccept(this, data);
-            System.out.println(");");
+            println(");");
         }
         return data;
     }
@@ -153,7 +227,7 @@ public class ArduinoVisitor implements ADSLVisitor {
         Node pinoNode = node.jjtGetChild(0);
         SimpleNode valorNode = (SimpleNode) node.jjtGetChild(1);
         
-        System.out.print(getIndent() + "digitalWrite(");
+        print(getIndent() + "digitalWrite(");
         
         if (pinoNode instanceof ASTPinos) {
             SimpleNode tipoPinoNode = (SimpleNode) ((SimpleNode) pinoNode).jjtGetChild(0);
@@ -162,17 +236,17 @@ public class ArduinoVisitor implements ADSLVisitor {
             
             if (tipoPinoNode instanceof ASTPinosA) {
                 int analogPin = Integer.parseInt(pino.substring(1));
-                pino = String.valueOf(analogPin + 14);
+                pino = String.valueOf(placa.pinoDoCanal(analogPin));
             }
             
-            System.out.print(pino);
+            print(pino);
         } else {
             ((SimpleNode) pinoNode).jjtAccept(this, data);
         }
         
-        System.out.print(", ");
+        print(", ");
         valorNode.jjtAccept(this, data);
-        System.out.println(");");
+        println(");");
         
         return data;
     }
@@ -182,18 +256,18 @@ public class ArduinoVisitor implements ADSLVisitor {
         Node pinoNode = node.jjtGetChild(0);
         SimpleNode valorNode = (SimpleNode) node.jjtGetChild(1);
         
-        System.out.print(getIndent() + "analogWrite(");
+        print(getIndent() + "analogWrite(");
         
         if (pinoNode instanceof ASTPinosPWM) {
             Token pinoToken = ((SimpleNode) pinoNode).jjtGetFirstToken();
-            System.out.print(pinoToken.image);
+            print(pinoToken.image);
         } else {
             ((SimpleNode) pinoNode).jjtAccept(this, data);
         }
         
-        System.out.print(", ");
+        print(", ");
         valorNode.jjtAccept(this, data);
-        System.out.println(");");
+        println(");");
         
         return data;
     }
@@ -249,7 +323,7 @@ public class ArduinoVisitor implements ADSLVisitor {
         if (t != null) {
             String[] lines = t.image.split("\n", -1);
             for (String line : lines) {
-                System.out.println(getIndent() + line);
+                println(getIndent() + line);
             }
         }
         return data;
@@ -261,7 +335,7 @@ public class ArduinoVisitor implements ADSLVisitor {
         if (t != null) {
             String[] lines = t.image.split("\n", -1);
             for (int i = 0; i < lines.length; i++) {
-                System.out.println((i == 0 ? getIndent() : getIndent()) + lines[i]);
+                println((i == 0 ? getIndent() : getIndent()) + lines[i]);
             }
         }
         return data;
@@ -273,7 +347,7 @@ public class ArduinoVisitor implements ADSLVisitor {
         if (t != null) {
             String[] lines = t.image.split("\n", -1);
             for (int i = 0; i < lines.length; i++) {
-                System.out.println((i == 0 ? getIndent() : getIndent()) + lines[i]);
+                println((i == 0 ? getIndent() : getIndent()) + lines[i]);
             }
         }
         return data;
@@ -283,14 +357,14 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTSerialPrint node, Object data) {
         SimpleNode expressaoNode = (SimpleNode) node.jjtGetChild(0);
         
-        System.out.print(getIndent() + "Serial.println(");
+        print(getIndent() + "Serial.println(");
         expressaoNode.jjtAccept(this, data);
-        System.out.println(");");
+        println(");");
         
         return data;
     }
 
-    private String processarString(String str) {
+    static String processarString(String str) {
         str = str.substring(1, str.length() - 1);
         
         str = str.replace("\\n", "\" + \"\\n\" + \"");
@@ -325,14 +399,14 @@ public class ArduinoVisitor implements ADSLVisitor {
                 if (initToken.kind == ADSLConstants.STRING) {
                     valor = processarString(valor);
                 }
-                System.out.println(getIndent() + mapType(tipo) + " " + identifier + " = " + valor + ";");
+                println(getIndent() + mapType(tipo) + " " + identifier + " = " + valor + ";");
             } else {
-                System.out.print(getIndent() + mapType(tipo) + " " + identifier + " = ");
+                print(getIndent() + mapType(tipo) + " " + identifier + " = ");
                 initNode.jjtAccept(this, data);
-                System.out.println(";");
+                println(";");
             }
         } else {
-            System.out.println(getIndent() + mapType(tipo) + " " + identifier + ";");
+            println(getIndent() + mapType(tipo) + " " + identifier + ";");
         }
         return data;
     }
@@ -367,25 +441,25 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTSeSenao node, Object data) {
         String currentIndent = getIndent();
         
-        System.out.print(currentIndent + "if (");
+        print(currentIndent + "if (");
         SimpleNode condicaoNode = (SimpleNode) node.jjtGetChild(0);
         condicaoNode.jjtAccept(this, data);
-        System.out.println(") {");
+        println(") {");
         
         indentLevel++;
         SimpleNode blocoSeNode = (SimpleNode) node.jjtGetChild(1);
         blocoSeNode.jjtAccept(this, data);
         indentLevel--;
         
-        System.out.println(currentIndent + "}");
+        println(currentIndent + "}");
         
         if (node.jjtGetNumChildren() > 2) {
             SimpleNode blocoSenaoNode = (SimpleNode) node.jjtGetChild(2);
-            System.out.println(currentIndent + "else {");
+            println(currentIndent + "else {");
             indentLevel++;
             blocoSenaoNode.jjtAccept(this, data);
             indentLevel--;
-            System.out.println(currentIndent + "}");
+            println(currentIndent + "}");
         }
         
         return data;
@@ -413,9 +487,9 @@ public class ArduinoVisitor implements ADSLVisitor {
         
         SimpleNode expressaoNode = (SimpleNode) node.jjtGetChild(0);
         
-        System.out.print(getIndent() + identifier + " = ");
+        print(getIndent() + identifier + " = ");
         expressaoNode.jjtAccept(this, data);
-        System.out.println(";");
+        println(";");
         
         return data;
     }
@@ -434,7 +508,7 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTExpressaoOu node, Object data) {
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
             if (i > 0) {
-                System.out.print(" || ");
+                print(" || ");
             }
             Node child = node.jjtGetChild(i);
             if (child instanceof SimpleNode) {
@@ -448,7 +522,7 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTExpressaoE node, Object data) {
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
             if (i > 0) {
-                System.out.print(" && ");
+                print(" && ");
             }
             Node child = node.jjtGetChild(i);
             if (child instanceof SimpleNode) {
@@ -473,19 +547,7 @@ public class ArduinoVisitor implements ADSLVisitor {
                 ((SimpleNode) left).jjtAccept(this, data);
             }
             
-            Token operatorToken = null;
-            for (Token t = node.jjtGetFirstToken(); t != null; t = t.next) {
-                if (t.kind == ADSLConstants.LT || t.kind == ADSLConstants.GT ||
-                    t.kind == ADSLConstants.LE || t.kind == ADSLConstants.GE ||
-                    t.kind == ADSLConstants.EQ || t.kind == ADSLConstants.NE) {
-                    operatorToken = t;
-                    break;
-                }
-            }
-            
-            if (operatorToken != null) {
-                System.out.print(" " + operatorToken.image + " ");
-            }
+            print(" " + simbolo(node.getOperador()) + " ");
             
             if (right instanceof SimpleNode) {
                 ((SimpleNode) right).jjtAccept(this, data);
@@ -497,17 +559,9 @@ public class ArduinoVisitor implements ADSLVisitor {
     @Override
     public Object visit(ASTExpressaoAditiva node, Object data) {
         // Processa adição e subtração: +, -
-        int[] additiveOperators = {ADSLConstants.PLUS, ADSLConstants.MINUS};
-        List<Token> operators = extractOperators(node, additiveOperators);
-        
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
             if (i > 0) {
-                int operatorIndex = i - 1;
-                if (operatorIndex < operators.size()) {
-                    System.out.print(" " + operators.get(operatorIndex).image + " ");
-                } else {
-                    System.out.print(" + ");
-                }
+                print(" " + simbolo(node.getOperador(i - 1)) + " ");
             }
             
             Node child = node.jjtGetChild(i);
@@ -521,17 +575,9 @@ public class ArduinoVisitor implements ADSLVisitor {
     @Override
     public Object visit(ASTExpressaoMultiplicativa node, Object data) {
         // Processa multiplicação, divisão e módulo: *, /, %
-        int[] multiplicativeOperators = {ADSLConstants.STAR, ADSLConstants.SLASH, ADSLConstants.REM};
-        List<Token> operators = extractOperators(node, multiplicativeOperators);
-        
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
             if (i > 0) {
-                int operatorIndex = i - 1;
-                if (operatorIndex < operators.size()) {
-                    System.out.print(" " + operators.get(operatorIndex).image + " ");
-                } else {
-                    System.out.print(" * ");
-                }
+                print(" " + simbolo(node.getOperador(i - 1)) + " ");
             }
             
             Node child = node.jjtGetChild(i);
@@ -550,7 +596,7 @@ public class ArduinoVisitor implements ADSLVisitor {
              firstToken.kind == ADSLConstants.MINUS ||
              firstToken.kind == ADSLConstants.BANG ||
              firstToken.kind == ADSLConstants.TILDE)) {
-            System.out.print(firstToken.image);
+            print(firstToken.image);
         }
         
         if (node.jjtGetNumChildren() > 0) {
@@ -568,19 +614,19 @@ public class ArduinoVisitor implements ADSLVisitor {
             Token firstToken = node.jjtGetFirstToken();
             if (firstToken != null) {
                 if (firstToken.kind == ADSLConstants.STRING) {
-                    System.out.print(processarString(firstToken.image));
+                    print(processarString(firstToken.image));
                 } else if (firstToken.kind == ADSLConstants.LPAREN) {
-                    System.out.print("(");
+                    print("(");
                 } else if (firstToken.kind == ADSLConstants.RPAREN) {
-                    System.out.print(")");
+                    print(")");
                 } else {
-                    System.out.print(firstToken.image);
+                    print(firstToken.image);
                 }
             }
         } else {
             for (int i = 0; i < node.jjtGetNumChildren(); i++) {
                 if (i > 0) {
-                    System.out.print(" ");
+                    print(" ");
                 }
                 Node child = node.jjtGetChild(i);
                 if (child instanceof SimpleNode) {
@@ -598,9 +644,9 @@ public class ArduinoVisitor implements ADSLVisitor {
         String pino = pinoToken.image;
 
         if (pino.startsWith("A")) {
-            System.out.print("analogRead(" + pino + ")");
+            print("analogRead(" + pino + ")");
         } else {
-            System.out.print("digitalRead(" + pino + ")");
+            print("digitalRead(" + pino + ")");
         }
         return data;
     }
@@ -609,21 +655,21 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTValorNumerico node, Object data) {
         Token t = node.jjtGetFirstToken();
         if (t != null) {
-            System.out.print(t.image);
+            print(t.image);
         }
         return data;
     }
 
     @Override
     public Object visit(ASTRepita node, Object data) {
-        System.out.print(getIndent() + "for (int forCount = 0; forCount < ");
+        print(getIndent() + "for (int forCount = 0; forCount < ");
         
         if (node.jjtGetNumChildren() > 0) {
             SimpleNode expressaoNode = (SimpleNode) node.jjtGetChild(0);
             expressaoNode.jjtAccept(this, data);
         }
         
-        System.out.println("; forCount++) {");
+        println("; forCount++) {");
         
         indentLevel++;
         if (node.jjtGetNumChildren() > 1) {
@@ -632,7 +678,7 @@ public class ArduinoVisitor implements ADSLVisitor {
         }
         indentLevel--;
         
-        System.out.println(getIndent() + "}");
+        println(getIndent() + "}");
         
         return data;
     }
@@ -656,7 +702,7 @@ public class ArduinoVisitor implements ADSLVisitor {
             }
         }
         
-        System.out.print(tipoRetorno + " " + nomeFuncao + "(");
+        print(tipoRetorno + " " + nomeFuncao + "(");
         
         int startIndex = (tipoRetorno.equals("void") && node.jjtGetNumChildren() > 0) ? 0 : 1;
         if (node.jjtGetNumChildren() > startIndex) {
@@ -664,7 +710,7 @@ public class ArduinoVisitor implements ADSLVisitor {
             parametrosNode.jjtAccept(this, data);
         }
         
-        System.out.println(") {");
+        println(") {");
         
         indentLevel++;
         for (int i = startIndex + 1; i < node.jjtGetNumChildren(); i++) {
@@ -675,8 +721,8 @@ public class ArduinoVisitor implements ADSLVisitor {
         }
         indentLevel--;
         
-        System.out.println("}");
-        System.out.println();
+        println("}");
+        println();
         return data;
     }
 
@@ -684,7 +730,7 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTParametros node, Object data) {
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
             if (i > 0) {
-                System.out.print(", ");
+                print(", ");
             }
             Node child = node.jjtGetChild(i);
             if (child instanceof SimpleNode) {
@@ -703,7 +749,7 @@ public class ArduinoVisitor implements ADSLVisitor {
         Token idToken = node.jjtGetFirstToken().next;
         String identificador = idToken.image;
         
-        System.out.print(tipo + " " + identificador);
+        print(tipo + " " + identificador);
         return data;
     }
 
@@ -714,15 +760,15 @@ public class ArduinoVisitor implements ADSLVisitor {
 
     @Override
     public Object visit(ASTRetorne node, Object data) {
-        System.out.print(getIndent() + "return");
+        print(getIndent() + "return");
         
         if (node.jjtGetNumChildren() > 0) {
-            System.out.print(" ");
+            print(" ");
             SimpleNode expressaoNode = (SimpleNode) node.jjtGetChild(0);
             expressaoNode.jjtAccept(this, data);
         }
         
-        System.out.println(";");
+        println(";");
         return data;
     }
 
@@ -731,14 +777,14 @@ public class ArduinoVisitor implements ADSLVisitor {
         Token nomeToken = node.jjtGetFirstToken();
         String nomeFuncao = nomeToken.image;
         
-        System.out.print(getIndent() + nomeFuncao + "(");
+        print(getIndent() + nomeFuncao + "(");
         
         if (node.jjtGetNumChildren() > 0) {
             SimpleNode argumentosNode = (SimpleNode) node.jjtGetChild(0);
             argumentosNode.jjtAccept(this, data);
         }
         
-        System.out.println(");");
+        println(");");
         return data;
     }
 
@@ -747,14 +793,14 @@ public class ArduinoVisitor implements ADSLVisitor {
         Token nomeToken = node.jjtGetFirstToken();
         String nomeFuncao = nomeToken.image;
         
-        System.out.print(nomeFuncao + "(");
+        print(nomeFuncao + "(");
         
         if (node.jjtGetNumChildren() > 0) {
             SimpleNode argumentosNode = (SimpleNode) node.jjtGetChild(0);
             argumentosNode.jjtAccept(this, data);
         }
         
-        System.out.print(")");
+        print(")");
         return data;
     }
 
@@ -762,7 +808,7 @@ public class ArduinoVisitor implements ADSLVisitor {
     public Object visit(ASTArgumentos node, Object data) {
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
             if (i > 0) {
-                System.out.print(", ");
+                print(", ");
             }
             Node child = node.jjtGetChild(i);
             if (child instanceof SimpleNode) {
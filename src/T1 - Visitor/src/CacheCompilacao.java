@@ -0,0 +1,177 @@
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache persistente de compilação. A chave é o hash SHA-256 do fonte ADSL
+ * junto com a versão do compilador (hash de todas as classes da pasta ou do
+ * jar de onde ele foi carregado) e das opções de tradução; o valor é o sketch gerado, guardado como
+ * <chave>.ino na pasta do cache. Em um acerto, parser e visitor não são
+ * executados.
+ *
+ * A data de modificação de cada entrada é atualizada a cada acerto e, quando
+ * o tamanho total passa do limite, as entradas usadas há mais tempo são
+ * removidas primeiro (LRU).
+ */
+public class CacheCompilacao {
+    public static final long LIMITE_PADRAO = 64L * 1024 * 1024;
+
+    // Hash de todas as classes do compilador (inclusive as internas, como
+    // IR$Tipo); null se o bytecode não pôde ser lido, e então não há cache
+    private static final String VERSAO = calcularVersao();
+
+    private final File pasta;
+    private final long limiteBytes;
+    private long tamanhoTotal;
+
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong faltas = new AtomicLong();
+
+    public CacheCompilacao(File pasta, long limiteBytes) throws IOException {
+        this.pasta = pasta;
+        this.limiteBytes = limiteBytes;
+        if (!pasta.isDirectory() && !pasta.mkdirs()) {
+            throw new IOException("não foi possível criar a pasta do cache: " + pasta);
+        }
+        for (File entrada : entradas()) {
+            tamanhoTotal += entrada.length();
+        }
+        // O limite pode ter diminuído desde a última execução
+        if (tamanhoTotal > limiteBytes) {
+            despejar();
+        }
+    }
+
+    public static String getVersao() {
+        return VERSAO;
+    }
+
+    public String chave(byte[] fonte, String opcoes) {
+        MessageDigest digest = novoDigest();
+        digest.update(VERSAO.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(opcoes.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(fonte);
+        return hex(digest.digest());
+    }
+
+    // Devolve o sketch guardado para a chave, ou null se não houver
+    public String buscar(String chave) {
+        File arquivo = new File(pasta, chave + ".ino");
+        try {
+            byte[] conteudo = Files.readAllBytes(arquivo.toPath());
+            arquivo.setLastModified(System.currentTimeMillis());
+            acertos.incrementAndGet();
+            return new String(conteudo, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            faltas.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            // Uma entrada ilegível é tratada como ausente e será regravada
+            faltas.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void guardar(String chave, CharSequence codigo) throws IOException {
+        byte[] conteudo = codigo.toString().getBytes(StandardCharsets.UTF_8);
+        Path destino = new File(pasta, chave + ".ino").toPath();
+        // Grava em um temporário e move, para que outro processo nunca leia uma entrada pela metade
+        Path temporario = Files.createTempFile(pasta.toPath(), chave, ".tmp");
+        try {
+            Files.write(temporario, conteudo);
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+
+        synchronized (this) {
+            tamanhoTotal += conteudo.length;
+            if (tamanhoTotal > limiteBytes) {
+                despejar();
+            }
+        }
+    }
+
+    // Remove as entradas menos usadas recentemente até o cache voltar ao limite
+    private void despejar() {
+        File[] arquivos = entradas();
+        long total = 0;
+        for (File arquivo : arquivos) {
+            total += arquivo.length();
+        }
+        Arrays.sort(arquivos, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < arquivos.length && total > limiteBytes; i++) {
+            long tamanho = arquivos[i].length();
+            if (arquivos[i].delete()) {
+                total -= tamanho;
+            }
+        }
+        tamanhoTotal = total;
+    }
+
+    private File[] entradas() {
+        File[] arquivos = pasta.listFiles((dir, nome) -> nome.endsWith(".ino"));
+        return arquivos != null ? arquivos : new File[0];
+    }
+
+    public long getAcertos() {
+        return acertos.get();
+    }
+
+    public long getFaltas() {
+        return faltas.get();
+    }
+
+    private static String calcularVersao() {
+        MessageDigest digest = novoDigest();
+        try {
+            Path origem = Paths.get(CacheCompilacao.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isDirectory(origem)) {
+                List<Path> classes = new ArrayList<>();
+                try (DirectoryStream<Path> pasta = Files.newDirectoryStream(origem, "*.class")) {
+                    for (Path classe : pasta) {
+                        classes.add(classe);
+                    }
+                }
+                // Mesma ordem em qualquer sistema de arquivos
+                classes.sort(Comparator.comparing(classe -> classe.getFileName().toString()));
+                for (Path classe : classes) {
+                    digest.update(classe.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(classe));
+                }
+            } else {
+                digest.update(Files.readAllBytes(origem));
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return null;
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest novoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,235 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Modo lote: compila vários programas ADSL em uma única execução da JVM.
+ * O mesmo parser é reaproveitado através do ReInit gerado pelo JavaCC e o
+ * mesmo ArduinoVisitor (com seu buffer já alocado) é usado para todos os
+ * arquivos, gerando um .ino para cada entrada.
+ *
+ * Uso: java ADSL -lote [-placa nome] [-ir | -O] [-nao-bloqueante] [-portas] [-d pastaSaida] [-cache pasta [-cache-max MB]] <arquivo.txt | pasta | glob>...
+ */
+public class CompiladorLote {
+    private ADSL parser;
+    private final ArduinoVisitor visitor = new ArduinoVisitor();
+    // Usados no lugar do visitor com a opção -ir
+    private final ConstrutorIR construtorIR = new ConstrutorIR();
+    private final GeradorIR geradorIR = new GeradorIR();
+    private final OtimizadorIR otimizador = new OtimizadorIR();
+    private final OtimizadorPeephole peephole = new OtimizadorPeephole();
+    private final OpcoesCompilacao opcoes;
+    private final CacheCompilacao cache;
+    // Sketch da última compilação: o buffer do visitor ou o conteúdo vindo do cache
+    private CharSequence ultimoCodigo;
+
+    // Tempos acumulados de cada etapa, em nanossegundos
+    private long tempoAnalise = 0;
+    private long tempoTraducao = 0;
+    private long tempoEscrita = 0;
+
+    public static void main(String[] args) {
+        OpcoesCompilacao opcoes = OpcoesCompilacao.ler(args);
+        if (opcoes == null || opcoes.padroes.isEmpty()) {
+            System.err.println("Uso: java ADSL -lote [-placa nome] [-ir | -O] [-nao-bloqueante] [-portas] [-d pastaSaida] [-cache pasta [-cache-max MB]] <arquivo.txt | pasta | glob>...");
+            return;
+        }
+
+        List<File> entradas;
+        CacheCompilacao cache;
+        try {
+            entradas = expandirEntradas(opcoes.padroes);
+            cache = opcoes.abrirCache();
+            opcoes.carregarPlaca();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao preparar a compilação: " + e.getMessage());
+            return;
+        }
+        if (opcoes.pastaSaida != null) {
+            opcoes.pastaSaida.mkdirs();
+        }
+
+        CompiladorLote compilador = new CompiladorLote(opcoes, cache);
+        long inicio = System.nanoTime();
+        int sucessos = 0;
+        for (File entrada : entradas) {
+            File saida = arquivoSaida(entrada, opcoes.pastaSaida);
+            try {
+                compilador.compilar(entrada);
+                compilador.escrever(saida);
+                sucessos++;
+            } catch (ParseException | TokenMgrError e) {
+                System.err.println(entrada + ": erro de sintaxe: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println(entrada + ": erro de E/S: " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println(entrada + ": erro na tradução: " + e.getMessage());
+            }
+        }
+        long total = System.nanoTime() - inicio;
+
+        System.out.println("Arquivos compilados: " + sucessos + " de " + entradas.size());
+        compilador.imprimirTempos(total, entradas.size());
+        imprimirCache(cache);
+    }
+
+    public static void imprimirCache(CacheCompilacao cache) {
+        if (cache != null) {
+            System.out.println("Cache: " + cache.getAcertos() + " acertos, " + cache.getFaltas() + " faltas");
+        }
+    }
+
+    public CompiladorLote() {
+        this(new OpcoesCompilacao(), null);
+    }
+
+    public CompiladorLote(OpcoesCompilacao opcoes, CacheCompilacao cache) {
+        this.opcoes = opcoes;
+        this.cache = cache;
+        visitor.setPlaca(opcoes.placa);
+        geradorIR.setPlaca(opcoes.placa);
+        geradorIR.setNaoBloqueante(opcoes.naoBloqueante);
+        geradorIR.setPortas(opcoes.portas);
+        peephole.setPlaca(opcoes.placa);
+    }
+
+    // Analisa e traduz um arquivo; o código fica disponível até a próxima chamada
+    public CharSequence compilar(File entrada) throws IOException, ParseException {
+        if (cache == null) {
+            try (InputStream input = new BufferedInputStream(new FileInputStream(entrada))) {
+                ultimoCodigo = traduzir(input);
+            }
+            return ultimoCodigo;
+        }
+
+        long inicio = System.nanoTime();
+        byte[] fonte = Files.readAllBytes(entrada.toPath());
+        String chave = cache.chave(fonte, opcoes.assinatura());
+        String guardado = cache.buscar(chave);
+        tempoAnalise += System.nanoTime() - inicio;
+        if (guardado != null) {
+            ultimoCodigo = guardado;
+            return ultimoCodigo;
+        }
+
+        ultimoCodigo = traduzir(new ByteArrayInputStream(fonte));
+        cache.guardar(chave, ultimoCodigo);
+        return ultimoCodigo;
+    }
+
+    private CharSequence traduzir(InputStream input) throws ParseException {
+        long inicio = System.nanoTime();
+        SimpleNode root;
+        try {
+            if (parser == null) {
+                parser = new ADSL(input);
+                parser.setPlaca(opcoes.placa);
+            } else {
+                parser.ReInit(input);
+            }
+            root = parser.Start();
+        } finally {
+            tempoAnalise += System.nanoTime() - inicio;
+        }
+
+        long inicioTraducao = System.nanoTime();
+        try {
+            if (opcoes.ir) {
+                IR.Programa programa = construtorIR.construir(root);
+                if (opcoes.otimizar) {
+                    programa = otimizador.otimizar(programa);
+                    programa = peephole.otimizar(programa);
+                }
+                geradorIR.reiniciar();
+                geradorIR.gerar(programa);
+                return geradorIR.getCodigo();
+            }
+            visitor.reiniciar();
+            root.jjtAccept(visitor, null);
+            return visitor.getCodigo();
+        } finally {
+            tempoTraducao += System.nanoTime() - inicioTraducao;
+        }
+    }
+
+    // Grava o último sketch compilado
+    public void escrever(File saida) throws IOException {
+        long inicio = System.nanoTime();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(saida), "UTF-8")) {
+            writer.append(ultimoCodigo);
+        } finally {
+            tempoEscrita += System.nanoTime() - inicio;
+        }
+    }
+
+    // Soma os tempos de outro compilador a este (usado pelo modo paralelo)
+    public void acumular(CompiladorLote outro) {
+        tempoAnalise += outro.tempoAnalise;
+        tempoTraducao += outro.tempoTraducao;
+        tempoEscrita += outro.tempoEscrita;
+    }
+
+    public void imprimirTempos(long totalNanos, int arquivos) {
+        double totalMs = totalNanos / 1e6;
+        System.out.printf("Análise: %.1f ms | Tradução: %.1f ms | Escrita: %.1f ms | Total: %.1f ms",
+                tempoAnalise / 1e6, tempoTraducao / 1e6, tempoEscrita / 1e6, totalMs);
+        if (totalMs > 0) {
+            System.out.printf(" (%.1f arquivos/s)", arquivos * 1000.0 / totalMs);
+        }
+        System.out.println();
+    }
+
+    // Troca a extensão da entrada por .ino, na pasta de saída ou ao lado do arquivo original
+    public static File arquivoSaida(File entrada, File pastaSaida) {
+        String nome = entrada.getName();
+        int ponto = nome.lastIndexOf('.');
+        if (ponto > 0) {
+            nome = nome.substring(0, ponto);
+        }
+        File pasta = pastaSaida != null ? pastaSaida : entrada.getAbsoluteFile().getParentFile();
+        return new File(pasta, nome + ".ino");
+    }
+
+    // Cada argumento pode ser um arquivo, uma pasta (todos os .txt dela) ou um glob como src/*_teste.txt
+    public static List<File> expandirEntradas(List<String> padroes) throws IOException {
+        List<File> arquivos = new ArrayList<>();
+        for (String padrao : padroes) {
+            File arquivo = new File(padrao);
+            if (arquivo.isDirectory()) {
+                File[] txts = arquivo.listFiles((pasta, nome) -> nome.endsWith(".txt"));
+                if (txts != null) {
+                    Arrays.sort(txts);
+                    arquivos.addAll(Arrays.asList(txts));
+                }
+            } else if (ehGlob(padrao)) {
+                arquivos.addAll(expandirGlob(padrao));
+            } else {
+                arquivos.add(arquivo);
+            }
+        }
+        return arquivos;
+    }
+
+    private static boolean ehGlob(String padrao) {
+        return padrao.indexOf('*') >= 0 || padrao.indexOf('?') >= 0
+                || padrao.indexOf('[') >= 0 || padrao.indexOf('{') >= 0;
+    }
+
+    private static List<File> expandirGlob(String padrao) throws IOException {
+        Path caminho = Paths.get(padrao.replace('\\', '/'));
+        Path pasta = caminho.getParent() != null ? caminho.getParent() : Paths.get(".");
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + caminho.getFileName());
+        List<File> arquivos = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(pasta)) {
+            for (Path p : stream) {
+                if (Files.isRegularFile(p) && matcher.matches(p.getFileName())) {
+                    arquivos.add(p.toFile());
+                }
+            }
+        }
+        arquivos.sort(null);
+        return arquivos;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * Compila vários programas ADSL em paralelo. Cada thread trabalhadora tem o
+ * seu próprio CompiladorLote (parser ADSL, ArduinoVisitor e buffer de saída),
+ * então nenhum estado mutável é compartilhado entre arquivos em andamento.
+ * Com -virtual cada arquivo roda em uma thread virtual nova; aí os
+ * compiladores, um por núcleo, são emprestados de uma fila e devolvidos ao
+ * fim de cada arquivo.
+ * Os resultados são relatados na ordem das entradas e a falha de um arquivo
+ * não interrompe os demais.
+ *
+ * Uso: java ADSL -paralelo [-t threads | -virtual] [-placa nome] [-ir | -O] [-nao-bloqueante] [-portas] [-d pastaSaida] [-cache pasta [-cache-max MB]] <arquivo.txt | pasta | glob>...
+ */
+public class CompiladorParalelo {
+    private final OpcoesCompilacao opcoes;
+    // O cache é compartilhado; as escritas nele são atômicas por entrada
+    private final CacheCompilacao cache;
+
+    // Todos os compiladores criados, para somar os tempos no final
+    private final Queue<CompiladorLote> compiladores = new ConcurrentLinkedQueue<>();
+    // Threads de plataforma: um compilador por thread
+    private final ThreadLocal<CompiladorLote> compiladorDaThread;
+    // Threads virtuais: compiladores livres; null com threads de plataforma
+    private final BlockingQueue<CompiladorLote> livres;
+
+    public CompiladorParalelo(OpcoesCompilacao opcoes, CacheCompilacao cache) {
+        this.opcoes = opcoes;
+        this.cache = cache;
+        this.compiladorDaThread = ThreadLocal.withInitial(this::novoCompilador);
+        if (opcoes.virtual) {
+            int nucleos = Runtime.getRuntime().availableProcessors();
+            livres = new ArrayBlockingQueue<>(nucleos);
+            for (int i = 0; i < nucleos; i++) {
+                livres.add(novoCompilador());
+            }
+        } else {
+            livres = null;
+        }
+    }
+
+    private CompiladorLote novoCompilador() {
+        CompiladorLote compilador = new CompiladorLote(opcoes, cache);
+        compiladores.add(compilador);
+        return compilador;
+    }
+
+    public static void main(String[] args) {
+        OpcoesCompilacao opcoes = OpcoesCompilacao.ler(args);
+        if (opcoes == null || opcoes.padroes.isEmpty()) {
+            System.err.println("Uso: java ADSL -paralelo [-t threads | -virtual] [-placa nome] [-ir | -O] [-nao-bloqueante] [-portas] [-d pastaSaida] [-cache pasta [-cache-max MB]] <arquivo.txt | pasta | glob>...");
+            return;
+        }
+
+        List<File> entradas;
+        CacheCompilacao cache;
+        try {
+            entradas = CompiladorLote.expandirEntradas(opcoes.padroes);
+            cache = opcoes.abrirCache();
+            opcoes.carregarPlaca();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao preparar a compilação: " + e.getMessage());
+            return;
+        }
+        if (opcoes.pastaSaida != null) {
+            opcoes.pastaSaida.mkdirs();
+        }
+
+        ExecutorService pool = opcoes.virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : new ForkJoinPool(opcoes.threads);
+        CompiladorParalelo compilador = new CompiladorParalelo(opcoes, cache);
+        long inicio = System.nanoTime();
+        List<String> erros;
+        try {
+            erros = compilador.compilarTodos(entradas, opcoes.pastaSaida, pool);
+        } finally {
+            pool.shutdown();
+        }
+        long total = System.nanoTime() - inicio;
+
+        int falhas = 0;
+        for (int i = 0; i < entradas.size(); i++) {
+            if (erros.get(i) != null) {
+                System.err.println(entradas.get(i) + ": " + erros.get(i));
+                falhas++;
+            }
+        }
+        System.out.println("Arquivos compilados: " + (entradas.size() - falhas) + " de " + entradas.size()
+                + (opcoes.virtual ? " (threads virtuais)" : " (" + opcoes.threads + " threads)"));
+        compilador.imprimirTempos(total, entradas.size());
+        CompiladorLote.imprimirCache(cache);
+    }
+
+    /**
+     * Compila cada entrada em uma tarefa do pool. Devolve, na mesma ordem das
+     * entradas, null para os arquivos compilados ou a mensagem de erro.
+     */
+    public List<String> compilarTodos(List<File> entradas, File pastaSaida, ExecutorService pool) {
+        List<Future<String>> tarefas = new ArrayList<>(entradas.size());
+        for (File entrada : entradas) {
+            tarefas.add(pool.submit(() -> compilarArquivo(entrada, CompiladorLote.arquivoSaida(entrada, pastaSaida))));
+        }
+
+        List<String> erros = new ArrayList<>(entradas.size());
+        for (Future<String> tarefa : tarefas) {
+            try {
+                erros.add(tarefa.get());
+            } catch (ExecutionException e) {
+                erros.add("erro inesperado: " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                erros.add("compilação interrompida");
+            }
+        }
+        return erros;
+    }
+
+    private String compilarArquivo(File entrada, File saida) {
+        if (livres == null) {
+            return compilarArquivo(compiladorDaThread.get(), entrada, saida);
+        }
+        CompiladorLote compilador;
+        try {
+            compilador = livres.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "compilação interrompida";
+        }
+        try {
+            return compilarArquivo(compilador, entrada, saida);
+        } finally {
+            livres.add(compilador);
+        }
+    }
+
+    private static String compilarArquivo(CompiladorLote compilador, File entrada, File saida) {
+        try {
+            compilador.compilar(entrada);
+            compilador.escrever(saida);
+            return null;
+        } catch (ParseException | TokenMgrError e) {
+            return "erro de sintaxe: " + e.getMessage();
+        } catch (IOException e) {
+            return "erro de E/S: " + e.getMessage();
+        } catch (RuntimeException e) {
+            return "erro na tradução: " + e;
+        }
+    }
+
+    // Os tempos de cada etapa são a soma do trabalho de todas as threads
+    public void imprimirTempos(long totalNanos, int arquivos) {
+        CompiladorLote soma = new CompiladorLote();
+        for (CompiladorLote compilador : compiladores) {
+            soma.acumular(compilador);
+        }
+        soma.imprimirTempos(totalNanos, arquivos);
+    }
+}
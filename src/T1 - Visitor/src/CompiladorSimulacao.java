@@ -0,0 +1,694 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compila um programa ADSL em uma classe Java que roda sobre a
+ * PlacaSimulada, em vez de interpretá-lo como o SimuladorIR.
+ *
+ * A IR vira o código-fonte de uma subclasse de SimulacaoCompilada: globais e
+ * declarações do nível de cima do Config viram campos, o Config vira
+ * setup(), os blocos Execute viram loop(), cada funcao vira um método e as
+ * variáveis locais viram variáveis locais Java (inteiros em long, real em
+ * float, String em String). Leituras, escritas, Espere e Serial viram
+ * chamadas diretas à placa. O fonte é compilado em memória pelo javax.tools
+ * e carregado por um class loader próprio, e a partir daí o JIT otimiza o
+ * programa do usuário como qualquer outro código: laços, contas e acessos a
+ * variáveis não passam mais por nós da árvore.
+ *
+ * A semântica é a mesma do SimuladorIR (truncamento no tamanho do tipo ao
+ * gravar, contas intermediárias em 64 bits, float, divisão por zero do AVR).
+ * É preciso rodar em um JDK; um loop() muito grande pode passar do limite de
+ * 64 KB de bytecode por método, e nesses casos compilar() lança
+ * IllegalStateException com os erros do compilador.
+ */
+public class CompiladorSimulacao {
+    private static final int INTEIRO = 0;
+    private static final int REAL = 1;
+    private static final int TEXTO = 2;
+
+    private static final String NOME_CLASSE = "SimulacaoGerada";
+    private static int classesGeradas = 0;
+
+    private final StringBuilder fonte = new StringBuilder();
+    private final Set<String> avisos = new LinkedHashSet<>();
+    private int indentLevel = 0;
+
+    private final Map<String, IR.Funcao> funcoes = new HashMap<>();
+    private final Map<String, Variavel> globais = new HashMap<>();
+    private final Deque<Map<String, Variavel>> escopos = new ArrayDeque<>();
+    private final StringBuilder campos = new StringBuilder();
+    private int contador = 0;
+    // Tipo de retorno da funcao sendo gerada; setup() e loop() são void de verdade
+    private IR.Tipo retorno = IR.Tipo.VOID;
+    private boolean emFuncao = false;
+
+    private static final class Variavel {
+        final String nome;
+        final IR.Tipo tipo;
+
+        Variavel(String nome, IR.Tipo tipo) {
+            this.nome = nome;
+            this.tipo = tipo;
+        }
+    }
+
+    // Trecho de expressão Java e o tipo do valor que ele produz
+    private static final class Codigo {
+        final String texto;
+        final int tipo;
+        // Variável char: vira texto como caractere, não como número
+        final boolean caractere;
+
+        Codigo(String texto, int tipo) {
+            this(texto, tipo, false);
+        }
+
+        Codigo(String texto, int tipo, boolean caractere) {
+            this.texto = texto;
+            this.tipo = tipo;
+            this.caractere = caractere;
+        }
+    }
+
+    /**
+     * Gera, compila e instancia a classe do programa sobre a placa dada.
+     * Os avisos da geração ficam em getAvisos() da simulação devolvida.
+     */
+    public static Simulacao compilar(IR.Programa programa, PlacaSimulada placa) {
+        return compilarFabrica(programa).apply(placa);
+    }
+
+    /**
+     * Gera e compila a classe uma única vez e devolve uma função que cria uma
+     * instância nova sobre cada placa, para simular muitas cópias do mesmo
+     * programa sem recompilar.
+     */
+    public static Function<PlacaSimulada, Simulacao> compilarFabrica(IR.Programa programa) {
+        CompiladorSimulacao gerador = new CompiladorSimulacao();
+        String nome = proximoNome();
+        String codigo = gerador.gerar(programa, nome);
+        Constructor<?> construtor;
+        try {
+            construtor = compilarFonte(nome, codigo).getConstructor(PlacaSimulada.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Falha ao carregar a simulação compilada: " + e, e);
+        }
+        Set<String> avisos = gerador.avisos;
+        return placa -> {
+            try {
+                SimulacaoCompilada simulacao = (SimulacaoCompilada) construtor.newInstance(placa);
+                simulacao.adicionarAvisos(avisos);
+                return simulacao;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Falha ao instanciar a simulação compilada: " + e, e);
+            }
+        };
+    }
+
+    // Só o código-fonte Java, útil para inspeção
+    public static String gerarFonte(IR.Programa programa) {
+        return new CompiladorSimulacao().gerar(programa, NOME_CLASSE);
+    }
+
+    private static synchronized String proximoNome() {
+        return NOME_CLASSE + (classesGeradas++);
+    }
+
+    // ------------------------------------------------------------------
+    // Compilação em memória
+    // ------------------------------------------------------------------
+
+    private static Class<?> compilarFonte(String nome, String codigo) throws ClassNotFoundException {
+        JavaCompiler compilador = ToolProvider.getSystemJavaCompiler();
+        if (compilador == null) {
+            throw new IllegalStateException("Compilador Java indisponível: a simulação compilada precisa de um JDK");
+        }
+        DiagnosticCollector<JavaFileObject> diagnosticos = new DiagnosticCollector<>();
+        StandardJavaFileManager padrao = compilador.getStandardFileManager(diagnosticos, null, null);
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        JavaFileManager memoria = new ForwardingJavaFileManager<StandardJavaFileManager>(padrao) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location local, String nomeClasse,
+                    JavaFileObject.Kind tipo, FileObject origem) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + nomeClasse + ".class"), tipo) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        classes.put(nomeClasse, bytes);
+                        return bytes;
+                    }
+                };
+            }
+        };
+        JavaFileObject arquivo = new SimpleJavaFileObject(URI.create("mem:///" + nome + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignorarErros) {
+                return codigo;
+            }
+        };
+
+        List<String> opcoes = List.of("-classpath", classpath(), "-g:none", "-nowarn");
+        boolean ok = compilador.getTask(null, memoria, diagnosticos, opcoes, null, List.of(arquivo)).call();
+        if (!ok) {
+            StringBuilder erros = new StringBuilder("Erro ao compilar a simulação:");
+            for (Diagnostic<? extends JavaFileObject> d : diagnosticos.getDiagnostics()) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) {
+                    erros.append(System.lineSeparator()).append("  linha ").append(d.getLineNumber())
+                            .append(": ").append(d.getMessage(null));
+                }
+            }
+            throw new IllegalStateException(erros.toString());
+        }
+
+        ClassLoader carregador = new ClassLoader(SimulacaoCompilada.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String nomeClasse) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(nomeClasse);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(nomeClasse);
+                }
+                byte[] b = bytes.toByteArray();
+                return defineClass(nomeClasse, b, 0, b.length);
+            }
+        };
+        return carregador.loadClass(nome);
+    }
+
+    // O código gerado estende SimulacaoCompilada, então precisa das classes deste projeto
+    private static String classpath() {
+        String atual = System.getProperty("java.class.path");
+        try {
+            File local = new File(SimulacaoCompilada.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return atual == null || atual.isEmpty() ? local.getPath() : atual + File.pathSeparator + local.getPath();
+        } catch (Exception e) {
+            return atual;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Geração do código-fonte
+    // ------------------------------------------------------------------
+
+    private void linha(String texto) {
+        for (int i = 0; i < indentLevel; i++) {
+            fonte.append("    ");
+        }
+        fonte.append(texto).append('\n');
+    }
+
+    private String gerar(IR.Programa programa, String nome) {
+        for (IR.Comando item : programa.itens) {
+            if (item instanceof IR.Funcao) {
+                funcoes.put(((IR.Funcao) item).nome, (IR.Funcao) item);
+            }
+        }
+
+        StringBuilder inicializacao = new StringBuilder();
+        StringBuilder setup = new StringBuilder();
+        StringBuilder loop = new StringBuilder();
+        StringBuilder metodos = new StringBuilder();
+
+        indentLevel = 2;
+        for (IR.Comando item : programa.itens) {
+            if (item instanceof IR.DeclaraVariavel) {
+                declararGlobal((IR.DeclaraVariavel) item);
+                mover(inicializacao);
+            } else if (item instanceof IR.Setup) {
+                linha("{");
+                indentLevel++;
+                escopos.push(new HashMap<>());
+                for (IR.Comando c : ((IR.Setup) item).corpo) {
+                    if (c instanceof IR.DeclaraVariavel) {
+                        declararGlobal((IR.DeclaraVariavel) c);
+                    } else {
+                        comando(c);
+                    }
+                }
+                escopos.pop();
+                indentLevel--;
+                linha("}");
+                mover(setup);
+            } else if (item instanceof IR.Loop) {
+                linha("{");
+                bloco(((IR.Loop) item).corpo);
+                linha("}");
+                mover(loop);
+            }
+        }
+        indentLevel = 1;
+        for (IR.Funcao f : funcoes.values()) {
+            funcao(f);
+            mover(metodos);
+        }
+
+        fonte.append("// Gerado pelo CompiladorSimulacao\n");
+        fonte.append("public final class ").append(nome).append(" extends SimulacaoCompilada {\n");
+        fonte.append(campos);
+        fonte.append('\n');
+        fonte.append("    public ").append(nome).append("(PlacaSimulada placa) {\n");
+        fonte.append("        super(placa);\n");
+        fonte.append("    }\n\n");
+        metodo("inicializarGlobais", inicializacao);
+        metodo("setup", setup);
+        metodo("loop", loop);
+        fonte.append(metodos);
+        fonte.append("}\n");
+        return fonte.toString();
+    }
+
+    // Passa o que foi gerado até agora para 'destino'
+    private void mover(StringBuilder destino) {
+        destino.append(fonte);
+        fonte.setLength(0);
+    }
+
+    private void metodo(String nome, CharSequence corpo) {
+        fonte.append("    @Override\n");
+        fonte.append("    protected void ").append(nome).append("() {\n");
+        fonte.append(corpo);
+        fonte.append("    }\n\n");
+    }
+
+    private void funcao(IR.Funcao f) {
+        StringBuilder assinatura = new StringBuilder("public ");
+        assinatura.append(tipoJava(f.retorno)).append(" f_").append(f.nome).append('(');
+        escopos.push(new HashMap<>());
+        for (int i = 0; i < f.parametros.size(); i++) {
+            IR.Parametro p = f.parametros.get(i);
+            Variavel v = nova(p.nome, p.tipo, "l");
+            escopos.peek().put(p.nome, v);
+            assinatura.append(i > 0 ? ", " : "").append(tipoJava(p.tipo)).append(' ').append(v.nome);
+        }
+        linha(assinatura.append(") {").toString());
+        retorno = f.retorno;
+        emFuncao = true;
+        bloco(f.corpo);
+        indentLevel++;
+        // Como em C, uma função sem retorne no fim devolve lixo; aqui, zero
+        linha("return " + zero(f.retorno) + ";");
+        indentLevel--;
+        retorno = IR.Tipo.VOID;
+        emFuncao = false;
+        escopos.pop();
+        linha("}");
+        fonte.append('\n');
+    }
+
+    // Funções void devolvem long para poderem aparecer em expressões, como no SimuladorIR
+    private static String tipoJava(IR.Tipo tipo) {
+        switch (tipo) {
+            case REAL: return "float";
+            case STRING: return "String";
+            default: return "long";
+        }
+    }
+
+    private static int armazenamento(IR.Tipo tipo) {
+        switch (tipo) {
+            case REAL: return REAL;
+            case STRING: return TEXTO;
+            default: return INTEIRO;
+        }
+    }
+
+    private static String zero(IR.Tipo tipo) {
+        switch (armazenamento(tipo)) {
+            case REAL: return "0f";
+            case TEXTO: return "\"\"";
+            default: return "0L";
+        }
+    }
+
+    private Variavel nova(String nome, IR.Tipo tipo, String prefixo) {
+        return new Variavel(prefixo + (contador++) + "_" + nome, tipo);
+    }
+
+    private void declararGlobal(IR.DeclaraVariavel d) {
+        Variavel v = nova(d.nome, d.tipo, "g");
+        campos.append("    private ").append(tipoJava(d.tipo)).append(' ').append(v.nome)
+                .append(" = ").append(zero(d.tipo)).append(";\n");
+        String valor = d.inicial != null ? gravar(d.tipo, expressao(d.inicial)) : zero(d.tipo);
+        globais.put(d.nome, v);
+        linha(v.nome + " = " + valor + ";");
+    }
+
+    private void bloco(List<IR.Comando> corpo) {
+        indentLevel++;
+        escopos.push(new HashMap<>());
+        for (IR.Comando c : corpo) {
+            comando(c);
+        }
+        escopos.pop();
+        indentLevel--;
+    }
+
+    private Variavel resolver(String nome) {
+        for (Map<String, Variavel> escopo : escopos) {
+            Variavel v = escopo.get(nome);
+            if (v != null) {
+                return v;
+            }
+        }
+        Variavel v = globais.get(nome);
+        if (v == null) {
+            avisos.add("Variável não declarada tratada como int global: " + nome);
+            v = nova(nome, IR.Tipo.INT, "g");
+            campos.append("    private long ").append(v.nome).append(" = 0L;\n");
+            globais.put(nome, v);
+        }
+        return v;
+    }
+
+    private boolean declarada(String nome) {
+        for (Map<String, Variavel> escopo : escopos) {
+            if (escopo.containsKey(nome)) {
+                return true;
+            }
+        }
+        return globais.containsKey(nome);
+    }
+
+    private void comando(IR.Comando c) {
+        if (c instanceof IR.DeclaraVariavel) {
+            IR.DeclaraVariavel d = (IR.DeclaraVariavel) c;
+            String valor = d.inicial != null ? gravar(d.tipo, expressao(d.inicial)) : zero(d.tipo);
+            Variavel v = nova(d.nome, d.tipo, "l");
+            escopos.peek().put(d.nome, v);
+            linha(tipoJava(d.tipo) + " " + v.nome + " = " + valor + ";");
+        } else if (c instanceof IR.Atribuicao) {
+            IR.Atribuicao a = (IR.Atribuicao) c;
+            Codigo valor = expressao(a.valor);
+            Variavel v = resolver(a.nome);
+            linha(v.nome + " = " + gravar(v.tipo, valor) + ";");
+        } else if (c instanceof IR.ModoPino) {
+            IR.ModoPino m = (IR.ModoPino) c;
+            linha("placa.pinMode(" + numeroPino(m.pino) + ", " + m.saida + ");");
+        } else if (c instanceof IR.IniciaSerial) {
+            linha("placa.iniciarSerial(" + ((IR.IniciaSerial) c).baud + ");");
+        } else if (c instanceof IR.Espera) {
+            linha("placa.esperar(" + ((IR.Espera) c).ms + "L);");
+        } else if (c instanceof IR.EscritaDigital) {
+            IR.EscritaDigital e = (IR.EscritaDigital) c;
+            linha("placa.digitalWrite((int) " + inteiro(expressao(e.pino)) + ", (int) " + inteiro(expressao(e.valor)) + ");");
+        } else if (c instanceof IR.EscritaAnalogica) {
+            IR.EscritaAnalogica e = (IR.EscritaAnalogica) c;
+            linha("placa.analogWrite((int) " + inteiro(expressao(e.pino)) + ", (int) " + inteiro(expressao(e.valor)) + ");");
+        } else if (c instanceof IR.ImprimeSerial) {
+            linha("placa.println(" + texto(expressao(((IR.ImprimeSerial) c).valor)) + ");");
+        } else if (c instanceof IR.Se) {
+            IR.Se se = (IR.Se) c;
+            linha("if (" + condicao(expressao(se.condicao)) + ") {");
+            bloco(se.entao);
+            if (se.senao != null) {
+                linha("} else {");
+                bloco(se.senao);
+            }
+            linha("}");
+        } else if (c instanceof IR.Repita) {
+            IR.Repita r = (IR.Repita) c;
+            String i = "i" + (contador++);
+            // Como o for gerado para o Arduino, o limite é reavaliado a cada volta
+            linha("for (long " + i + " = 0; " + i + " < " + inteiro(expressao(r.vezes)) + "; " + i + "++) {");
+            bloco(r.corpo);
+            linha("}");
+        } else if (c instanceof IR.Bloco) {
+            linha("{");
+            bloco(((IR.Bloco) c).corpo);
+            linha("}");
+        } else if (c instanceof IR.Retorne) {
+            IR.Expr valor = ((IR.Retorne) c).valor;
+            // 'if (true)' evita o erro de código inalcançável quando há comandos depois do retorne
+            if (valor != null && emFuncao && retorno != IR.Tipo.VOID) {
+                linha("if (true) return " + gravar(retorno, expressao(valor)) + ";");
+                return;
+            }
+            if (valor != null) {
+                linha("nada(" + expressao(valor).texto + ");");
+            }
+            linha(emFuncao ? "if (true) return " + zero(retorno) + ";" : "if (true) return;");
+        } else if (c instanceof IR.ComandoExpressao) {
+            linha("nada(" + expressao(((IR.ComandoExpressao) c).expressao).texto + ");");
+        }
+        // Comentários não geram código
+    }
+
+    // Valor convertido para o tipo da variável que o recebe, com o truncamento do AVR
+    private static String gravar(IR.Tipo tipo, Codigo valor) {
+        switch (armazenamento(tipo)) {
+            case REAL: return real(valor);
+            case TEXTO: return texto(valor);
+            default: break;
+        }
+        String v = inteiro(valor);
+        switch (tipo) {
+            case BYTE: return "(" + v + " & 0xFFL)";
+            case INT: return "(long) (short) " + v;
+            case UNSIGNED_INT: return "(" + v + " & 0xFFFFL)";
+            case LONG: return "(long) (int) " + v;
+            case UNSIGNED_LONG: return "(" + v + " & 0xFFFFFFFFL)";
+            case CHAR: return "(long) (byte) " + v;
+            case BOOLEAN: return "(" + v + " != 0L ? 1L : 0L)";
+            default: return v;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Conversões entre os três tipos de valor
+    // ------------------------------------------------------------------
+
+    private static String inteiro(Codigo c) {
+        switch (c.tipo) {
+            case REAL: return "((long) " + c.texto + ")";
+            case TEXTO: return "nada(" + c.texto + ")";
+            default: return c.texto;
+        }
+    }
+
+    private static String real(Codigo c) {
+        switch (c.tipo) {
+            case INTEIRO: return "((float) " + c.texto + ")";
+            case TEXTO: return "((float) nada(" + c.texto + "))";
+            default: return c.texto;
+        }
+    }
+
+    // Comparações em double, como no SimuladorIR
+    private static String duplo(Codigo c) {
+        return c.tipo == TEXTO ? "((double) nada(" + c.texto + "))" : "((double) " + c.texto + ")";
+    }
+
+    private static String texto(Codigo c) {
+        if (c.caractere) {
+            return "caractere(" + c.texto + ")";
+        }
+        return c.tipo == TEXTO ? c.texto : "texto(" + c.texto + ")";
+    }
+
+    private static String condicao(Codigo c) {
+        switch (c.tipo) {
+            case REAL: return c.texto + " != 0f";
+            case TEXTO: return "nada(" + c.texto + ") == 0L";
+            default: return c.texto + " != 0L";
+        }
+    }
+
+    private static String numeroPino(IR.Pino pino) {
+        return String.valueOf(pino.analogico ? pino.numero + PlacaSimulada.PRIMEIRO_ANALOGICO : pino.numero);
+    }
+
+    // Literal Java com o valor de um literal "..." do fonte ADSL
+    private static String literalJava(String literalAdsl) {
+        String valor = literalAdsl.substring(1, literalAdsl.length() - 1)
+                .replace("\\n", "\n").replace("\\t", "\t").replace("\\\\", "\\");
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < valor.length(); i++) {
+            char ch = valor.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20 || ch > 0x7E) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // ------------------------------------------------------------------
+    // Expressões
+    // ------------------------------------------------------------------
+
+    private Codigo expressao(IR.Expr e) {
+        if (e instanceof IR.Numero) {
+            IR.Numero n = (IR.Numero) e;
+            if (n.real) {
+                return new Codigo(Float.toString((float) n.valorReal) + "f", REAL);
+            }
+            return new Codigo(n.inteiro + "L", INTEIRO);
+        }
+        if (e instanceof IR.Texto) {
+            return new Codigo(literalJava(((IR.Texto) e).literal), TEXTO);
+        }
+        if (e instanceof IR.Pino) {
+            return new Codigo(numeroPino((IR.Pino) e) + "L", INTEIRO);
+        }
+        if (e instanceof IR.Variavel) {
+            return variavel(((IR.Variavel) e).nome);
+        }
+        if (e instanceof IR.Leitura) {
+            IR.Leitura l = (IR.Leitura) e;
+            if (l.analogica) {
+                return new Codigo("((long) placa.analogRead(" + ((IR.Pino) l.pino).numero + "))", INTEIRO);
+            }
+            return new Codigo("((long) placa.digitalRead((int) " + inteiro(expressao(l.pino)) + "))", INTEIRO);
+        }
+        if (e instanceof IR.Binaria) {
+            IR.Binaria b = (IR.Binaria) e;
+            return binaria(b.operador, expressao(b.esquerda), expressao(b.direita));
+        }
+        if (e instanceof IR.Unaria) {
+            IR.Unaria u = (IR.Unaria) e;
+            return unaria(u.operador, expressao(u.operando));
+        }
+        if (e instanceof IR.Chamada) {
+            return chamada((IR.Chamada) e);
+        }
+        throw new IllegalArgumentException("Expressão sem simulação: " + e.getClass().getSimpleName());
+    }
+
+    private Codigo variavel(String nome) {
+        switch (nome) {
+            case "true":
+            case "HIGH":
+                return new Codigo("1L", INTEIRO);
+            case "false":
+            case "LOW":
+                return new Codigo("0L", INTEIRO);
+            default:
+                break;
+        }
+        if (nome.matches("A\\d+") && !declarada(nome)) {
+            return new Codigo((Integer.parseInt(nome.substring(1)) + PlacaSimulada.PRIMEIRO_ANALOGICO) + "L", INTEIRO);
+        }
+        Variavel v = resolver(nome);
+        return new Codigo(v.nome, armazenamento(v.tipo), v.tipo == IR.Tipo.CHAR);
+    }
+
+    private Codigo chamada(IR.Chamada ch) {
+        List<Codigo> argumentos = new ArrayList<>(ch.argumentos.size());
+        for (IR.Expr a : ch.argumentos) {
+            argumentos.add(expressao(a));
+        }
+        IR.Funcao f = funcoes.get(ch.nome);
+        if (f != null) {
+            if (f.parametros.size() != argumentos.size()) {
+                throw new IllegalArgumentException("Chamada de " + ch.nome + " com " + argumentos.size()
+                        + " argumento(s), esperado(s) " + f.parametros.size());
+            }
+            StringBuilder sb = new StringBuilder("f_").append(ch.nome).append('(');
+            for (int i = 0; i < argumentos.size(); i++) {
+                sb.append(i > 0 ? ", " : "").append(gravar(f.parametros.get(i).tipo, argumentos.get(i)));
+            }
+            return new Codigo(sb.append(')').toString(), armazenamento(f.retorno));
+        }
+        if (ch.nome.equals("millis") && argumentos.isEmpty()) {
+            return new Codigo("(placa.millis() & 0xFFFFFFFFL)", INTEIRO);
+        }
+        if (ch.nome.equals("micros") && argumentos.isEmpty()) {
+            return new Codigo("(placa.micros() & 0xFFFFFFFFL)", INTEIRO);
+        }
+        avisos.add("Função desconhecida, chamada devolve 0: " + ch.nome);
+        StringBuilder sb = new StringBuilder("(0L");
+        for (Codigo a : argumentos) {
+            sb.append(" + nada(").append(a.texto).append(')');
+        }
+        return new Codigo(sb.append(')').toString(), INTEIRO);
+    }
+
+    private static Codigo binaria(IR.Operador operador, Codigo a, Codigo b) {
+        switch (operador) {
+            case E:
+                return new Codigo("((" + condicao(a) + ") && (" + condicao(b) + ") ? 1L : 0L)", INTEIRO);
+            case OU:
+                return new Codigo("((" + condicao(a) + ") || (" + condicao(b) + ") ? 1L : 0L)", INTEIRO);
+            case IGUAL:
+            case DIFERENTE:
+            case MENOR:
+            case MAIOR:
+            case MENOR_IGUAL:
+            case MAIOR_IGUAL:
+                return comparacao(operador, a, b);
+            default:
+                break;
+        }
+        if (operador == IR.Operador.SOMA && (a.tipo == TEXTO || b.tipo == TEXTO)) {
+            return new Codigo("(" + texto(a) + ").concat(" + texto(b) + ")", TEXTO);
+        }
+        if (a.tipo == REAL || b.tipo == REAL) {
+            return new Codigo("(" + real(a) + " " + operador.simbolo + " " + real(b) + ")", REAL);
+        }
+        switch (operador) {
+            case DIVISAO: return new Codigo("div(" + inteiro(a) + ", " + inteiro(b) + ")", INTEIRO);
+            case RESTO: return new Codigo("resto(" + inteiro(a) + ", " + inteiro(b) + ")", INTEIRO);
+            default: return new Codigo("(" + inteiro(a) + " " + operador.simbolo + " " + inteiro(b) + ")", INTEIRO);
+        }
+    }
+
+    private static Codigo comparacao(IR.Operador operador, Codigo a, Codigo b) {
+        int comum = Math.max(a.tipo, b.tipo);
+        String teste;
+        if (comum == TEXTO) {
+            teste = "comparar(" + texto(a) + ", " + texto(b) + ") " + operador.simbolo + " 0";
+        } else if (comum == REAL) {
+            teste = duplo(a) + " " + operador.simbolo + " " + duplo(b);
+        } else {
+            teste = inteiro(a) + " " + operador.simbolo + " " + inteiro(b);
+        }
+        return new Codigo("(" + teste + " ? 1L : 0L)", INTEIRO);
+    }
+
+    private static Codigo unaria(IR.OperadorUnario operador, Codigo a) {
+        switch (operador) {
+            case NAO:
+                return new Codigo("(" + condicao(a) + " ? 0L : 1L)", INTEIRO);
+            case COMPLEMENTO:
+                return new Codigo("(~" + inteiro(a) + ")", INTEIRO);
+            case MENOS:
+                if (a.tipo == REAL) {
+                    return new Codigo("(- " + a.texto + ")", REAL);
+                }
+                return new Codigo("(- " + inteiro(a) + ")", INTEIRO);
+            default:
+                return a;
+        }
+    }
+}
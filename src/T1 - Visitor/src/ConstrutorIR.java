@@ -0,0 +1,409 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passe de redução da AST do JJTree para a IR tipada (veja IR.java).
+ *
+ * Cada nó é visitado uma única vez e cada visit devolve o objeto de IR
+ * correspondente: comandos, expressões, pinos, tipos ou listas deles. Os
+ * operadores de uma cadeia como a + b - c vêm dos tipos gravados no nó pelo
+ * parser, então o custo é proporcional ao tamanho da AST e não ao restante
+ * do arquivo.
+ */
+public class ConstrutorIR implements ADSLVisitor {
+
+    public IR.Programa construir(SimpleNode raiz) {
+        return (IR.Programa) raiz.jjtAccept(this, null);
+    }
+
+    private Object filho(SimpleNode node, int i) {
+        return node.jjtGetChild(i).jjtAccept(this, null);
+    }
+
+    private IR.Expr expressao(SimpleNode node, int i) {
+        return (IR.Expr) filho(node, i);
+    }
+
+    // Converte os filhos a partir de 'desde' em comandos, ignorando os nós que não produzem nada
+    private List<IR.Comando> comandos(SimpleNode node, int desde) {
+        List<IR.Comando> lista = new ArrayList<>(Math.max(node.jjtGetNumChildren() - desde, 0));
+        for (int i = desde; i < node.jjtGetNumChildren(); i++) {
+            Object item = filho(node, i);
+            if (item instanceof IR.Comando) {
+                lista.add((IR.Comando) item);
+            }
+        }
+        return lista;
+    }
+
+    // Cadeia de filhos ligados sempre pelo mesmo operador (|| e &&)
+    private IR.Expr cadeia(SimpleNode node, IR.Operador operador) {
+        IR.Expr resultado = expressao(node, 0);
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+            resultado = new IR.Binaria(operador, resultado, expressao(node, i));
+        }
+        return resultado;
+    }
+
+    private static String semQuebraFinal(String texto) {
+        int fim = texto.length();
+        while (fim > 0 && (texto.charAt(fim - 1) == '\n' || texto.charAt(fim - 1) == '\r')) {
+            fim--;
+        }
+        return texto.substring(0, fim);
+    }
+
+    @Override
+    public Object visit(SimpleNode node, Object data) {
+        return null;
+    }
+
+    @Override
+    public Object visit(ASTStart node, Object data) {
+        return new IR.Programa(comandos(node, 0));
+    }
+
+    @Override
+    public Object visit(ASTFuncao node, Object data) {
+        String nome = node.jjtGetFirstToken().next.image;
+        List<IR.Parametro> parametros = new ArrayList<>();
+        IR.Tipo retorno = IR.Tipo.VOID;
+
+        int i = 0;
+        if (i < node.jjtGetNumChildren() && node.jjtGetChild(i) instanceof ASTParametros) {
+            @SuppressWarnings("unchecked")
+            List<IR.Parametro> lidos = (List<IR.Parametro>) filho(node, i++);
+            parametros = lidos;
+        }
+        if (i < node.jjtGetNumChildren() && node.jjtGetChild(i) instanceof ASTTipoRetorno) {
+            retorno = (IR.Tipo) filho(node, i++);
+        }
+        return new IR.Funcao(nome, retorno, parametros, comandos(node, i));
+    }
+
+    @Override
+    public Object visit(ASTParametros node, Object data) {
+        List<IR.Parametro> parametros = new ArrayList<>(node.jjtGetNumChildren());
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            parametros.add((IR.Parametro) filho(node, i));
+        }
+        return parametros;
+    }
+
+    @Override
+    public Object visit(ASTParametro node, Object data) {
+        IR.Tipo tipo = (IR.Tipo) filho(node, 0);
+        return new IR.Parametro(tipo, node.jjtGetFirstToken().next.image);
+    }
+
+    @Override
+    public Object visit(ASTTipoRetorno node, Object data) {
+        if (node.jjtGetNumChildren() == 0) {
+            return IR.Tipo.VOID;
+        }
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTRetorne node, Object data) {
+        return new IR.Retorne(expressao(node, 0));
+    }
+
+    @Override
+    public Object visit(ASTChamadaFuncao node, Object data) {
+        return new IR.ComandoExpressao(chamada(node));
+    }
+
+    private IR.Chamada chamada(SimpleNode node) {
+        List<IR.Expr> argumentos = new ArrayList<>();
+        if (node.jjtGetNumChildren() > 0) {
+            @SuppressWarnings("unchecked")
+            List<IR.Expr> lidos = (List<IR.Expr>) filho(node, 0);
+            argumentos = lidos;
+        }
+        return new IR.Chamada(node.jjtGetFirstToken().image, argumentos);
+    }
+
+    @Override
+    public Object visit(ASTArgumentos node, Object data) {
+        List<IR.Expr> argumentos = new ArrayList<>(node.jjtGetNumChildren());
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            argumentos.add(expressao(node, i));
+        }
+        return argumentos;
+    }
+
+    @Override
+    public Object visit(ASTConfig node, Object data) {
+        return new IR.Setup(comandos(node, 0));
+    }
+
+    @Override
+    public Object visit(ASTExecute node, Object data) {
+        return new IR.Loop(comandos(node, 0));
+    }
+
+    @Override
+    public Object visit(ASTPinMode node, Object data) {
+        boolean saida = node.jjtGetFirstToken().kind == ADSLConstants.SAIDA;
+        return new IR.ModoPino((IR.Pino) filho(node, 0), saida);
+    }
+
+    @Override
+    public Object visit(ASTPinos node, Object data) {
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTPinosD node, Object data) {
+        return IR.Pino.deImagem(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTPinosA node, Object data) {
+        return IR.Pino.deImagem(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTPinosPWM node, Object data) {
+        return IR.Pino.deImagem(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTFreqMonitor node, Object data) {
+        return new IR.IniciaSerial((Integer) filho(node, 0));
+    }
+
+    @Override
+    public Object visit(ASTFrequencia node, Object data) {
+        return Integer.valueOf(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTDelay node, Object data) {
+        long valor = (Long) filho(node, 0);
+        String unidade = (String) filho(node, 1);
+        return new IR.Espera(ArduinoVisitor.converterParaMs(valor, unidade));
+    }
+
+    @Override
+    public Object visit(ASTValorTempo node, Object data) {
+        return Long.valueOf(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTUnidadeTempo node, Object data) {
+        return node.jjtGetFirstToken().image;
+    }
+
+    @Override
+    public Object visit(ASTRead node, Object data) {
+        return new IR.ComandoExpressao(leitura(node));
+    }
+
+    // Leia <pino>: analógica para A0-A5; com uma expressão como pino, digital
+    private IR.Leitura leitura(SimpleNode node) {
+        Object alvo = filho(node, 0);
+        if (alvo instanceof IR.Pino) {
+            IR.Pino pino = (IR.Pino) alvo;
+            return new IR.Leitura(pino, pino.analogico);
+        }
+        return new IR.Leitura((IR.Expr) alvo, false);
+    }
+
+    @Override
+    public Object visit(ASTDigitalWrite node, Object data) {
+        return new IR.EscritaDigital(expressao(node, 0), expressao(node, 1));
+    }
+
+    @Override
+    public Object visit(ASTAnalogWrite node, Object data) {
+        return new IR.EscritaAnalogica(expressao(node, 0), expressao(node, 1));
+    }
+
+    @Override
+    public Object visit(ASTValorDigital node, Object data) {
+        return new IR.Numero(node.jjtGetFirstToken().image, false);
+    }
+
+    @Override
+    public Object visit(ASTValorAnalogico node, Object data) {
+        return new IR.Numero(node.jjtGetFirstToken().image, false);
+    }
+
+    @Override
+    public Object visit(ASTRepita node, Object data) {
+        @SuppressWarnings("unchecked")
+        List<IR.Comando> corpo = (List<IR.Comando>) filho(node, 1);
+        return new IR.Repita(expressao(node, 0), corpo);
+    }
+
+    @Override
+    public Object visit(ASTBlocoRepita node, Object data) {
+        return comandos(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTComando node, Object data) {
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTSingleLineComment node, Object data) {
+        return new IR.Comentario(semQuebraFinal(node.jjtGetFirstToken().image));
+    }
+
+    @Override
+    public Object visit(ASTMultiLineComment node, Object data) {
+        return new IR.Comentario(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTFormalComment node, Object data) {
+        return new IR.Comentario(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTSerialPrint node, Object data) {
+        return new IR.ImprimeSerial(expressao(node, 0));
+    }
+
+    @Override
+    public Object visit(ASTDecVar node, Object data) {
+        IR.Tipo tipo = (IR.Tipo) filho(node, 0);
+        String nome = node.jjtGetFirstToken().next.image;
+        IR.Expr inicial = node.jjtGetNumChildren() > 1 ? expressao(node, 1) : null;
+        return new IR.DeclaraVariavel(tipo, nome, inicial);
+    }
+
+    @Override
+    public Object visit(ASTTiposVar node, Object data) {
+        return IR.Tipo.deAdsl(node.jjtGetFirstToken().image);
+    }
+
+    @Override
+    public Object visit(ASTInicializador node, Object data) {
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTSeSenao node, Object data) {
+        IR.Expr condicao = expressao(node, 0);
+        @SuppressWarnings("unchecked")
+        List<IR.Comando> entao = (List<IR.Comando>) filho(node, 1);
+        List<IR.Comando> senao = null;
+        if (node.jjtGetNumChildren() > 2) {
+            @SuppressWarnings("unchecked")
+            List<IR.Comando> lidos = (List<IR.Comando>) filho(node, 2);
+            senao = lidos;
+        }
+        return new IR.Se(condicao, entao, senao);
+    }
+
+    @Override
+    public Object visit(ASTBlocoSe node, Object data) {
+        return comandos(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTBlocoSenao node, Object data) {
+        return comandos(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTCondicao node, Object data) {
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTAtribuicao node, Object data) {
+        return new IR.Atribuicao(node.jjtGetFirstToken().image, expressao(node, 0));
+    }
+
+    @Override
+    public Object visit(ASTExpressao node, Object data) {
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTExpressaoBooleana node, Object data) {
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTExpressaoOu node, Object data) {
+        return cadeia(node, IR.Operador.OU);
+    }
+
+    @Override
+    public Object visit(ASTExpressaoE node, Object data) {
+        return cadeia(node, IR.Operador.E);
+    }
+
+    @Override
+    public Object visit(ASTExpressaoRelacional node, Object data) {
+        if (node.jjtGetNumChildren() == 1) {
+            return filho(node, 0);
+        }
+        IR.Operador operador = IR.Operador.doToken(node.getOperador());
+        return new IR.Binaria(operador, expressao(node, 0), expressao(node, 1));
+    }
+
+    @Override
+    public Object visit(ASTExpressaoAditiva node, Object data) {
+        IR.Expr resultado = expressao(node, 0);
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+            IR.Operador operador = IR.Operador.doToken(node.getOperador(i - 1));
+            resultado = new IR.Binaria(operador, resultado, expressao(node, i));
+        }
+        return resultado;
+    }
+
+    @Override
+    public Object visit(ASTExpressaoMultiplicativa node, Object data) {
+        IR.Expr resultado = expressao(node, 0);
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+            IR.Operador operador = IR.Operador.doToken(node.getOperador(i - 1));
+            resultado = new IR.Binaria(operador, resultado, expressao(node, i));
+        }
+        return resultado;
+    }
+
+    @Override
+    public Object visit(ASTExpressaoUnaria node, Object data) {
+        if (node.jjtGetChild(0) instanceof ASTExpressaoUnaria) {
+            IR.OperadorUnario operador = IR.OperadorUnario.doToken(node.jjtGetFirstToken().kind);
+            return new IR.Unaria(operador, expressao(node, 0));
+        }
+        return filho(node, 0);
+    }
+
+    @Override
+    public Object visit(ASTExpressaoPrimaria node, Object data) {
+        if (node.jjtGetNumChildren() > 0) {
+            // Valor numérico, chamada, leitura ou expressão entre parênteses
+            return filho(node, 0);
+        }
+        Token t = node.jjtGetFirstToken();
+        if (t.kind == ADSLConstants.STRING) {
+            return new IR.Texto(t.image);
+        }
+        return new IR.Variavel(t.image);
+    }
+
+    @Override
+    public Object visit(ASTChamadaFuncaoExpressao node, Object data) {
+        return chamada(node);
+    }
+
+    @Override
+    public Object visit(ASTLeiaExpressao node, Object data) {
+        return leitura(node);
+    }
+
+    @Override
+    public Object visit(ASTValorNumerico node, Object data) {
+        Token t = node.jjtGetFirstToken();
+        return new IR.Numero(t.image, t.kind == ADSLConstants.NUM_FLT);
+    }
+}
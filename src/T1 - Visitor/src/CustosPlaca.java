@@ -0,0 +1,63 @@
+import java.util.Properties;
+
+/**
+ * Custo aproximado, em microssegundos, das operações que o EstimadorTempo
+ * soma em um sketch. Os valores padrão são medidas típicas do core do Arduino
+ * em um AVR de 16 MHz (Uno, Nano e Mega). Um perfil .properties pode trocar
+ * qualquer um deles com as chaves custo.digitalWrite, custo.digitalRead,
+ * custo.analogRead, custo.analogWrite, custo.pinMode, custo.porta,
+ * custo.serialByte, custo.serial, custo.operacao e custo.chamada.
+ */
+public final class CustosPlaca {
+    public static final CustosPlaca AVR_16MHZ = new CustosPlaca(3.4, 3.6, 112, 5.0, 3.5, 0.125, 5.0, 10.0, 0.25, 0.5);
+
+    public final double digitalWrite;
+    public final double digitalRead;
+    public final double analogRead;
+    public final double analogWrite;
+    public final double pinMode;
+    // Leitura ou escrita direta em PINx/PORTx/DDRx (opção -portas)
+    public final double porta;
+    // Cópia de um byte para o buffer da serial, sem esperar a transmissão
+    public final double serialByte;
+    // Parte fixa de um Serial.println
+    public final double serial;
+    // Uma operação aritmética, comparação ou atribuição de int
+    public final double operacao;
+    // Chamada e retorno de função (também a volta do loop())
+    public final double chamada;
+
+    public CustosPlaca(double digitalWrite, double digitalRead, double analogRead, double analogWrite, double pinMode,
+            double porta, double serialByte, double serial, double operacao, double chamada) {
+        this.digitalWrite = digitalWrite;
+        this.digitalRead = digitalRead;
+        this.analogRead = analogRead;
+        this.analogWrite = analogWrite;
+        this.pinMode = pinMode;
+        this.porta = porta;
+        this.serialByte = serialByte;
+        this.serial = serial;
+        this.operacao = operacao;
+        this.chamada = chamada;
+    }
+
+    // Custos do arquivo de perfil; as chaves ausentes ficam com os valores de 'padrao'
+    static CustosPlaca ler(Properties p, CustosPlaca padrao) {
+        return new CustosPlaca(
+                valor(p, "custo.digitalWrite", padrao.digitalWrite),
+                valor(p, "custo.digitalRead", padrao.digitalRead),
+                valor(p, "custo.analogRead", padrao.analogRead),
+                valor(p, "custo.analogWrite", padrao.analogWrite),
+                valor(p, "custo.pinMode", padrao.pinMode),
+                valor(p, "custo.porta", padrao.porta),
+                valor(p, "custo.serialByte", padrao.serialByte),
+                valor(p, "custo.serial", padrao.serial),
+                valor(p, "custo.operacao", padrao.operacao),
+                valor(p, "custo.chamada", padrao.chamada));
+    }
+
+    private static double valor(Properties p, String chave, double padrao) {
+        String texto = p.getProperty(chave);
+        return texto == null ? padrao : Double.parseDouble(texto.trim());
+    }
+}
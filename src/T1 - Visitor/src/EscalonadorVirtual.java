@@ -0,0 +1,282 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Escalonador de eventos discretos em tempo virtual para muitas placas
+ * simuladas na mesma JVM.
+ *
+ * Cada placa tem o seu relógio virtual (o da PlacaSimulada) e um horário de
+ * despertar: o instante em que a próxima iteração do loop() começa. As
+ * placas são repartidas entre as threads trabalhadoras e cada trabalhadora
+ * mantém uma fila de prioridade própria: tira a placa que acorda mais cedo,
+ * roda uma iteração (o Config, no primeiro evento), e a recoloca na fila com
+ * o novo horário. O tempo nunca é esperado de verdade, só salta para o
+ * próximo despertar, e como as placas não interagem as trabalhadoras não
+ * precisam se sincronizar; a vazão cresce com o número de núcleos.
+ *
+ * Um loop() que não chama Espere não faria o relógio andar, então cada
+ * iteração assim custa 'custoMinimo' microssegundos virtuais. A iteração que
+ * começa antes do horizonte roda até o fim, mesmo que termine depois dele.
+ *
+ * Uso: java ADSL -simular-lote [-t threads] [-horizonte valor unidade] [-copias n] [-compilado] [-O] <arquivo.txt | pasta | glob>...
+ */
+public class EscalonadorVirtual {
+    public static final long CUSTO_MINIMO_PADRAO = 1;
+    // Cada placa guarda pouco da serial: com milhares delas o total ainda cabe na memória
+    private static final int LIMITE_SERIAL = 4096;
+
+    // Placa escalonada: a simulação e o instante em que ela deve voltar a rodar
+    public static final class Agendada {
+        public final String nome;
+        public final Simulacao simulacao;
+        private long acordar = 0;
+        private boolean iniciada = false;
+        private long eventos = 0;
+        private String erro;
+
+        Agendada(String nome, Simulacao simulacao) {
+            this.nome = nome;
+            this.simulacao = simulacao;
+        }
+
+        public long getAcordar() {
+            return acordar;
+        }
+
+        public long getEventos() {
+            return eventos;
+        }
+
+        // Mensagem da exceção que parou a placa, ou null
+        public String getErro() {
+            return erro;
+        }
+    }
+
+    private final List<Agendada> placas = new ArrayList<>();
+    private final int threads;
+    private long custoMinimo = CUSTO_MINIMO_PADRAO;
+
+    public EscalonadorVirtual(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setCustoMinimo(long micros) {
+        this.custoMinimo = Math.max(1, micros);
+    }
+
+    public Agendada adicionar(String nome, Simulacao simulacao) {
+        Agendada a = new Agendada(nome, simulacao);
+        placas.add(a);
+        return a;
+    }
+
+    public List<Agendada> getPlacas() {
+        return placas;
+    }
+
+    /**
+     * Roda todas as placas até o horizonte (em microssegundos virtuais) e
+     * devolve o total de eventos processados. Pode ser chamado de novo com um
+     * horizonte maior para continuar de onde parou.
+     */
+    public long executarAte(long horizonte) throws InterruptedException {
+        int trabalhadoras = Math.min(threads, Math.max(1, placas.size()));
+        if (trabalhadoras == 1) {
+            return trabalhar(placas, horizonte);
+        }
+
+        // Repartição fixa e intercalada: placas vizinhas (em geral do mesmo arquivo) vão para threads diferentes
+        List<List<Agendada>> particoes = new ArrayList<>(trabalhadoras);
+        for (int t = 0; t < trabalhadoras; t++) {
+            particoes.add(new ArrayList<>(placas.size() / trabalhadoras + 1));
+        }
+        for (int i = 0; i < placas.size(); i++) {
+            particoes.get(i % trabalhadoras).add(placas.get(i));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(trabalhadoras);
+        try {
+            List<Future<Long>> tarefas = new ArrayList<>(trabalhadoras);
+            for (List<Agendada> particao : particoes) {
+                tarefas.add(pool.submit(() -> trabalhar(particao, horizonte)));
+            }
+            long eventos = 0;
+            for (Future<Long> tarefa : tarefas) {
+                try {
+                    eventos += tarefa.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Falha no escalonador: " + e.getCause(), e.getCause());
+                }
+            }
+            return eventos;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Laço de uma trabalhadora: sempre a placa que acorda mais cedo primeiro
+    private long trabalhar(List<Agendada> particao, long horizonte) {
+        PriorityQueue<Agendada> fila = new PriorityQueue<>(Math.max(1, particao.size()),
+                Comparator.comparingLong(Agendada::getAcordar));
+        for (Agendada a : particao) {
+            if (a.erro == null) {
+                fila.add(a);
+            }
+        }
+
+        long eventos = 0;
+        while (!fila.isEmpty() && fila.peek().acordar < horizonte) {
+            Agendada a = fila.poll();
+            executarEvento(a);
+            eventos++;
+            if (a.erro == null) {
+                fila.add(a);
+            }
+        }
+        return eventos;
+    }
+
+    private void executarEvento(Agendada a) {
+        PlacaSimulada placa = a.simulacao.getPlaca();
+        long antes = placa.micros();
+        try {
+            if (!a.iniciada) {
+                a.iniciada = true;
+                a.simulacao.iniciar();
+            } else {
+                a.simulacao.executarLoop();
+            }
+        } catch (RuntimeException | StackOverflowError e) {
+            a.erro = e.toString();
+        }
+        if (placa.micros() == antes) {
+            placa.avancar(custoMinimo);
+        }
+        a.acordar = placa.micros();
+        a.eventos++;
+    }
+
+    // ------------------------------------------------------------------
+    // Linha de comando
+    // ------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long horizonteMs = 60 * 1000;
+        int copias = 1;
+        boolean compilado = false;
+        boolean otimizar = false;
+        List<String> padroes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            boolean temValor = i + 1 < args.length;
+            if (args[i].equals("-t") && temValor) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-horizonte") && i + 2 < args.length) {
+                // Mesmas unidades do Espere: -horizonte 24 h
+                horizonteMs = ArduinoVisitor.converterParaMs(Long.parseLong(args[i + 1]), args[i + 2]);
+                i += 2;
+            } else if (args[i].equals("-copias") && temValor) {
+                copias = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-compilado")) {
+                compilado = true;
+            } else if (args[i].equals("-O")) {
+                otimizar = true;
+            } else {
+                padroes.add(args[i]);
+            }
+        }
+        if (padroes.isEmpty() || threads < 1 || copias < 1) {
+            System.err.println("Uso: java ADSL -simular-lote [-t threads] [-horizonte valor unidade] [-copias n] [-compilado] [-O] <arquivo.txt | pasta | glob>...");
+            return;
+        }
+
+        List<File> entradas;
+        try {
+            entradas = CompiladorLote.expandirEntradas(padroes);
+        } catch (IOException e) {
+            System.err.println("Erro ao listar as entradas: " + e.getMessage());
+            return;
+        }
+
+        EscalonadorVirtual escalonador = new EscalonadorVirtual(threads);
+        int falhasPreparo = 0;
+        for (File entrada : entradas) {
+            try {
+                IR.Programa programa;
+                try (InputStream in = new FileInputStream(entrada)) {
+                    programa = new ConstrutorIR().construir(new ADSL(in).Start());
+                }
+                if (otimizar) {
+                    programa = new OtimizadorIR().otimizar(programa);
+                }
+                Function<PlacaSimulada, Simulacao> fabrica = fabrica(programa, compilado);
+                for (int c = 0; c < copias; c++) {
+                    String nome = copias > 1 ? entrada.getPath() + "#" + c : entrada.getPath();
+                    escalonador.adicionar(nome, fabrica.apply(new PlacaSimulada(LIMITE_SERIAL)));
+                }
+            } catch (ParseException | TokenMgrError e) {
+                System.err.println(entrada + ": erro de sintaxe: " + e.getMessage());
+                falhasPreparo++;
+            } catch (IOException e) {
+                System.err.println(entrada + ": erro de E/S: " + e.getMessage());
+                falhasPreparo++;
+            } catch (RuntimeException e) {
+                System.err.println(entrada + ": " + e.getMessage());
+                falhasPreparo++;
+            }
+        }
+
+        long inicio = System.nanoTime();
+        long eventos;
+        try {
+            eventos = escalonador.executarAte(horizonteMs * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Simulação interrompida");
+            return;
+        }
+        long decorrido = System.nanoTime() - inicio;
+
+        int falhas = 0;
+        for (Agendada a : escalonador.getPlacas()) {
+            if (a.getErro() != null) {
+                System.err.println(a.nome + ": parou em " + a.simulacao.getPlaca().millis() + " ms: " + a.getErro());
+                falhas++;
+            }
+        }
+        int numPlacas = escalonador.getPlacas().size();
+        double segundos = Math.max(decorrido / 1e9, 1e-9);
+        System.out.println("Placas simuladas: " + (numPlacas - falhas) + " de " + numPlacas
+                + (falhasPreparo > 0 ? " (" + falhasPreparo + " arquivo(s) não carregado(s))" : "")
+                + ", " + Math.min(threads, Math.max(1, numPlacas)) + " threads"
+                + (compilado ? ", compilado" : ", interpretado"));
+        System.out.printf("Horizonte: %d ms virtuais por placa; %d eventos em %.1f ms (%.0f eventos/s)%n",
+                horizonteMs, eventos, decorrido / 1e6, eventos / segundos);
+        System.out.printf("Tempo virtual total: %.0f vezes o tempo real%n",
+                (double) horizonteMs * numPlacas / 1000.0 / segundos);
+    }
+
+    private static Function<PlacaSimulada, Simulacao> fabrica(IR.Programa programa, boolean compilado) {
+        if (compilado) {
+            try {
+                return CompiladorSimulacao.compilarFabrica(programa);
+            } catch (IllegalStateException e) {
+                System.err.println(e.getMessage());
+                System.err.println("Usando o simulador interpretado.");
+            }
+        }
+        return placa -> new SimuladorIR(programa, placa);
+    }
+}
@@ -0,0 +1,437 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimativa estática do tempo de uma passada do loop() de cada Execute,
+ * feita sobre a IR sem rodar o programa.
+ *
+ * Cada trecho tem uma faixa [melhor caso, pior caso] em microssegundos:
+ * Espere soma o tempo já convertido para ms, digitalRead, analogRead,
+ * Serial.println etc. somam o custo da tabela da placa (CustosPlaca), um se
+ * fica com o ramo mais rápido no melhor caso e o mais lento no pior, e um
+ * repita com contagem constante multiplica o corpo. Os caminhos que saem por
+ * um retorne são acompanhados à parte, então o melhor caso também vale para
+ * um Execute que termina cedo.
+ *
+ * Um repita com contagem calculada em tempo de execução e funções recursivas
+ * não têm pior caso limitado; o resultado fica infinito e sai um aviso. No
+ * pior caso, Serial.println espera a transmissão de todos os bytes na
+ * velocidade do Monitor (9600 se não houver um).
+ */
+public class EstimadorTempo {
+    // Bytes de um número impresso: de "0" a "-2147483648"
+    private static final int MIN_BYTES_NUMERO = 1;
+    private static final int MAX_BYTES_NUMERO = 11;
+
+    // Faixa de tempo em microssegundos; max é infinito quando não há limite
+    public static final class Faixa {
+        public final double min;
+        public final double max;
+
+        Faixa(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        Faixa mais(Faixa outra) {
+            return new Faixa(min + outra.min, max + outra.max);
+        }
+
+        Faixa vezes(long n) {
+            return new Faixa(min * n, max * n);
+        }
+
+        static Faixa juntar(Faixa a, Faixa b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            return new Faixa(Math.min(a.min, b.min), Math.max(a.max, b.max));
+        }
+    }
+
+    private static final Faixa ZERO = new Faixa(0, 0);
+
+    // Tempo de um trecho: caminhos que seguem adiante e caminhos que saem por retorne (null se não há)
+    private static final class Resumo {
+        final Faixa segue;
+        final Faixa retorna;
+
+        Resumo(Faixa segue, Faixa retorna) {
+            this.segue = segue;
+            this.retorna = retorna;
+        }
+
+        Resumo depois(Resumo b) {
+            Faixa segueJunto = segue != null && b.segue != null ? segue.mais(b.segue) : null;
+            Faixa retornaDepois = segue != null && b.retorna != null ? segue.mais(b.retorna) : null;
+            return new Resumo(segueJunto, Faixa.juntar(retorna, retornaDepois));
+        }
+
+        Faixa total() {
+            return Faixa.juntar(segue, retorna);
+        }
+    }
+
+    // Resultado de um bloco Execute
+    public static final class Estimativa {
+        public final String nome;
+        public final Faixa periodo;
+
+        Estimativa(String nome, Faixa periodo) {
+            this.nome = nome;
+            this.periodo = periodo;
+        }
+
+        // Passadas por segundo no pior caso (0 se o pior caso não tem limite)
+        public double taxaMinima() {
+            return periodo.max > 0 ? 1e6 / periodo.max : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private final CustosPlaca custos;
+    private final PerfilPlaca placa;
+    private final boolean portas;
+    private final Map<String, IR.Funcao> funcoes = new HashMap<>();
+    private final Map<String, Faixa> tempoFuncoes = new HashMap<>();
+    private final Set<String> emAnalise = new HashSet<>();
+    private final Set<Integer> pinosPwm = new HashSet<>();
+    private final List<String> avisos = new ArrayList<>();
+    private long baud = 9600;
+
+    /**
+     * 'portas' conta pinMode/digitalWrite/digitalRead de pinos constantes com
+     * o custo do acesso direto aos registradores, como o GeradorIR faz com -portas.
+     */
+    public EstimadorTempo(PerfilPlaca placa, boolean portas) {
+        this.placa = placa;
+        this.custos = placa.getCustos();
+        this.portas = portas;
+    }
+
+    public List<String> getAvisos() {
+        return avisos;
+    }
+
+    // Uma estimativa por setup() e por Execute, na ordem do fonte
+    public List<Estimativa> estimar(IR.Programa programa) {
+        funcoes.clear();
+        tempoFuncoes.clear();
+        avisos.clear();
+        pinosPwm.clear();
+        if (portas) {
+            GeradorIR.pinosPwm(programa.itens, placa, pinosPwm);
+        }
+        baud = 9600;
+        for (IR.Comando item : programa.itens) {
+            if (item instanceof IR.Funcao) {
+                funcoes.put(((IR.Funcao) item).nome, (IR.Funcao) item);
+            } else if (item instanceof IR.Setup) {
+                for (IR.Comando c : ((IR.Setup) item).corpo) {
+                    if (c instanceof IR.IniciaSerial) {
+                        baud = ((IR.IniciaSerial) c).baud;
+                    }
+                }
+            }
+        }
+
+        List<Estimativa> resultado = new ArrayList<>();
+        int execute = 0;
+        for (IR.Comando item : programa.itens) {
+            if (item instanceof IR.Setup) {
+                resultado.add(new Estimativa("Config", bloco(((IR.Setup) item).corpo).total()));
+            } else if (item instanceof IR.Loop) {
+                execute++;
+                Faixa corpo = bloco(((IR.Loop) item).corpo).total();
+                if (corpo == null) {
+                    corpo = ZERO;
+                }
+                resultado.add(new Estimativa("Execute " + execute, corpo.mais(new Faixa(custos.chamada, custos.chamada))));
+            }
+        }
+        return resultado;
+    }
+
+    private Resumo bloco(List<IR.Comando> corpo) {
+        Resumo r = new Resumo(ZERO, null);
+        for (IR.Comando c : corpo) {
+            r = r.depois(comando(c));
+            if (r.segue == null) {
+                // O resto do bloco vem depois de um retorne em todos os caminhos
+                break;
+            }
+        }
+        return r;
+    }
+
+    private static Resumo simples(double micros) {
+        return new Resumo(new Faixa(micros, micros), null);
+    }
+
+    private static Resumo simples(Faixa f) {
+        return new Resumo(f, null);
+    }
+
+    private Resumo comando(IR.Comando c) {
+        if (c instanceof IR.ModoPino) {
+            return simples(direto(((IR.ModoPino) c).pino) ? custos.porta : custos.pinMode);
+        }
+        if (c instanceof IR.IniciaSerial) {
+            return simples(custos.chamada);
+        }
+        if (c instanceof IR.Espera) {
+            return simples(((IR.Espera) c).ms * 1000.0);
+        }
+        if (c instanceof IR.EscritaDigital) {
+            IR.EscritaDigital e = (IR.EscritaDigital) c;
+            double escrita = direto(e.pino) ? custos.porta : custos.digitalWrite;
+            return simples(expressao(e.pino).mais(expressao(e.valor)).mais(new Faixa(escrita, escrita)));
+        }
+        if (c instanceof IR.EscritaAnalogica) {
+            IR.EscritaAnalogica e = (IR.EscritaAnalogica) c;
+            return simples(expressao(e.pino).mais(expressao(e.valor)).mais(new Faixa(custos.analogWrite, custos.analogWrite)));
+        }
+        if (c instanceof IR.ImprimeSerial) {
+            return simples(serial(((IR.ImprimeSerial) c).valor));
+        }
+        if (c instanceof IR.DeclaraVariavel) {
+            IR.DeclaraVariavel d = (IR.DeclaraVariavel) c;
+            return d.inicial == null ? simples(0) : simples(atribuicao(d.inicial));
+        }
+        if (c instanceof IR.Atribuicao) {
+            return simples(atribuicao(((IR.Atribuicao) c).valor));
+        }
+        if (c instanceof IR.Se) {
+            IR.Se se = (IR.Se) c;
+            Resumo entao = bloco(se.entao);
+            Resumo senao = se.senao != null ? bloco(se.senao) : new Resumo(ZERO, null);
+            Resumo ramos = new Resumo(Faixa.juntar(entao.segue, senao.segue), Faixa.juntar(entao.retorna, senao.retorna));
+            return simples(expressao(se.condicao)).depois(ramos);
+        }
+        if (c instanceof IR.Repita) {
+            return repita((IR.Repita) c);
+        }
+        if (c instanceof IR.Bloco) {
+            return bloco(((IR.Bloco) c).corpo);
+        }
+        if (c instanceof IR.Retorne) {
+            IR.Retorne r = (IR.Retorne) c;
+            return new Resumo(null, r.valor != null ? expressao(r.valor) : ZERO);
+        }
+        if (c instanceof IR.ComandoExpressao) {
+            return simples(expressao(((IR.ComandoExpressao) c).expressao));
+        }
+        // Comentario
+        return simples(0);
+    }
+
+    private Resumo repita(IR.Repita r) {
+        Faixa contagem = expressao(r.vezes);
+        double volta = 2 * custos.operacao;
+        Resumo corpo = bloco(r.corpo).depois(simples(volta));
+        Resumo inicio = simples(contagem.mais(new Faixa(custos.operacao, custos.operacao)));
+
+        if (!(r.vezes instanceof IR.Numero) || ((IR.Numero) r.vezes).real) {
+            avisos.add("repita com contagem calculada em tempo de execução: pior caso sem limite");
+            Faixa segue = new Faixa(0, Double.POSITIVE_INFINITY);
+            Faixa retorna = corpo.retorna != null ? new Faixa(corpo.retorna.min, Double.POSITIVE_INFINITY) : null;
+            return inicio.depois(new Resumo(segue, retorna));
+        }
+        long n = ((IR.Numero) r.vezes).inteiro;
+        if (n <= 0) {
+            return inicio;
+        }
+        Faixa segue = corpo.segue != null ? corpo.segue.vezes(n) : null;
+        Faixa retorna = null;
+        if (corpo.retorna != null) {
+            // Pode sair já na primeira volta ou só na última
+            double antes = corpo.segue != null ? corpo.segue.max * (n - 1) : 0;
+            retorna = new Faixa(corpo.retorna.min, antes + corpo.retorna.max);
+        }
+        return inicio.depois(new Resumo(segue, retorna));
+    }
+
+    private Faixa atribuicao(IR.Expr valor) {
+        return expressao(valor).mais(new Faixa(custos.operacao, custos.operacao));
+    }
+
+    // Serial.println: no melhor caso só copia para o buffer; no pior espera a transmissão
+    private Faixa serial(IR.Expr valor) {
+        int min;
+        int max;
+        if (valor instanceof IR.Texto) {
+            min = max = Math.max(((IR.Texto) valor).literal.length() - 2, 0);
+        } else {
+            min = MIN_BYTES_NUMERO;
+            max = MAX_BYTES_NUMERO;
+        }
+        // \r\n do println
+        min += 2;
+        max += 2;
+        double transmissao = max * 10 * 1e6 / baud;
+        Faixa f = new Faixa(custos.serial + min * custos.serialByte,
+                custos.serial + Math.max(max * custos.serialByte, transmissao));
+        return expressao(valor).mais(f);
+    }
+
+    private boolean direto(IR.Expr pino) {
+        if (!portas || !(pino instanceof IR.Pino)) {
+            return false;
+        }
+        IR.Pino p = (IR.Pino) pino;
+        int numero = p.analogico ? placa.pinoDoCanal(p.numero) : p.numero;
+        return placa.temPorta(numero) && !pinosPwm.contains(numero);
+    }
+
+    private Faixa expressao(IR.Expr e) {
+        if (e instanceof IR.Binaria) {
+            IR.Binaria b = (IR.Binaria) e;
+            Faixa esquerda = expressao(b.esquerda).mais(new Faixa(custos.operacao, custos.operacao));
+            Faixa direita = expressao(b.direita);
+            if (b.operador == IR.Operador.E || b.operador == IR.Operador.OU) {
+                // Curto-circuito: o lado direito pode não ser avaliado
+                return new Faixa(esquerda.min, esquerda.max + direita.max);
+            }
+            return esquerda.mais(direita);
+        }
+        if (e instanceof IR.Unaria) {
+            return expressao(((IR.Unaria) e).operando).mais(new Faixa(custos.operacao, custos.operacao));
+        }
+        if (e instanceof IR.Leitura) {
+            IR.Leitura l = (IR.Leitura) e;
+            double leitura = l.analogica ? custos.analogRead : direto(l.pino) ? custos.porta : custos.digitalRead;
+            return expressao(l.pino).mais(new Faixa(leitura, leitura));
+        }
+        if (e instanceof IR.Chamada) {
+            IR.Chamada ch = (IR.Chamada) e;
+            Faixa f = new Faixa(custos.chamada, custos.chamada);
+            for (IR.Expr argumento : ch.argumentos) {
+                f = f.mais(expressao(argumento));
+            }
+            return f.mais(funcao(ch.nome));
+        }
+        return ZERO;
+    }
+
+    // Tempo do corpo de uma função do programa; funções do Arduino (millis() etc.) contam só a chamada
+    private Faixa funcao(String nome) {
+        IR.Funcao f = funcoes.get(nome);
+        if (f == null) {
+            return ZERO;
+        }
+        Faixa pronta = tempoFuncoes.get(nome);
+        if (pronta != null) {
+            return pronta;
+        }
+        if (!emAnalise.add(nome)) {
+            avisos.add("a função " + nome + " é recursiva: pior caso sem limite");
+            return new Faixa(0, Double.POSITIVE_INFINITY);
+        }
+        Faixa tempo = bloco(f.corpo).total();
+        emAnalise.remove(nome);
+        if (tempo == null) {
+            tempo = ZERO;
+        }
+        tempoFuncoes.put(nome, tempo);
+        return tempo;
+    }
+
+    private static String formatar(double micros) {
+        if (Double.isInfinite(micros)) {
+            return "sem limite";
+        }
+        return String.format("%.3f ms", micros / 1000);
+    }
+
+    /**
+     * Uso: java ADSL -estimar [-placa nome] [-O] [-portas] [-taxa-minima Hz] <arquivo.txt>...
+     */
+    public static void main(String[] args) {
+        String nomePlaca = null;
+        boolean otimizar = false;
+        boolean portas = false;
+        double taxaMinima = 0;
+        List<String> arquivos = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            boolean temValor = i + 1 < args.length;
+            if (args[i].equals("-placa") && temValor) {
+                nomePlaca = args[++i];
+            } else if (args[i].equals("-O")) {
+                otimizar = true;
+            } else if (args[i].equals("-portas")) {
+                portas = true;
+            } else if (args[i].equals("-taxa-minima") && temValor) {
+                taxaMinima = Double.parseDouble(args[++i]);
+            } else {
+                arquivos.add(args[i]);
+            }
+        }
+        if (arquivos.isEmpty()) {
+            System.err.println("Uso: java ADSL -estimar [-placa nome] [-O] [-portas] [-taxa-minima Hz] <arquivo.txt>...");
+            return;
+        }
+
+        PerfilPlaca placa = PerfilPlaca.UNO;
+        try {
+            if (nomePlaca != null) {
+                placa = PerfilPlaca.ler(nomePlaca);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao ler o perfil da placa: " + e.getMessage());
+            return;
+        }
+
+        EstimadorTempo estimador = new EstimadorTempo(placa, portas);
+        for (String arquivo : arquivos) {
+            IR.Programa programa;
+            try (InputStream entrada = new FileInputStream(new File(arquivo))) {
+                ADSL parser = new ADSL(entrada);
+                parser.setPlaca(placa);
+                programa = new ConstrutorIR().construir(parser.Start());
+            } catch (FileNotFoundException e) {
+                System.err.println("Arquivo não encontrado: " + arquivo);
+                continue;
+            } catch (IOException e) {
+                System.err.println("Erro ao ler " + arquivo + ": " + e.getMessage());
+                continue;
+            } catch (ParseException | TokenMgrError e) {
+                System.err.println(arquivo + ": " + e.getMessage());
+                continue;
+            }
+            if (otimizar) {
+                programa = new OtimizadorIR().otimizar(programa);
+                OtimizadorPeephole peephole = new OtimizadorPeephole();
+                peephole.setPlaca(placa);
+                programa = peephole.otimizar(programa);
+            }
+
+            System.out.println(arquivo + ":");
+            for (Estimativa e : estimador.estimar(programa)) {
+                if (e.nome.equals("Config")) {
+                    System.out.printf("  %s: %s a %s%n", e.nome, formatar(e.periodo.min), formatar(e.periodo.max));
+                    continue;
+                }
+                System.out.printf("  %s: melhor caso %s, pior caso %s (%.2f passadas/s no pior caso)%n",
+                        e.nome, formatar(e.periodo.min), formatar(e.periodo.max), e.taxaMinima());
+                if (taxaMinima > 0 && e.taxaMinima() < taxaMinima) {
+                    System.err.printf("Aviso: %s: %s fica abaixo de %.2f passadas/s no pior caso%n", arquivo, e.nome, taxaMinima);
+                }
+            }
+            for (String aviso : new LinkedHashSet<>(estimador.getAvisos())) {
+                System.err.println("Aviso: " + arquivo + ": " + aviso);
+            }
+        }
+    }
+}
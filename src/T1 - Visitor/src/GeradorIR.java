@@ -0,0 +1,718 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gera o sketch Arduino a partir da IR (veja IR.java), com o mesmo layout do
+ * ArduinoVisitor. Como a IR já traz operadores, pinos e tempos resolvidos, a
+ * geração é um único percurso da árvore sem consultar tokens; os parênteses
+ * das expressões são recolocados a partir da precedência dos operadores.
+ *
+ * No modo não bloqueante, um Execute com Espere vira uma função de tarefa
+ * com uma máquina de estados (veja MaquinaEstados) guiada por millis(), e o
+ * loop() só chama essa função; assim o loop() nunca fica parado em delay().
+ * Um programa com vários Execute sempre é gerado assim: cada bloco vira uma
+ * tarefa e o loop() passa a ser um escalonador cooperativo entre elas.
+ *
+ * Com portas ligado, pinMode, digitalWrite e digitalRead de pinos constantes
+ * viram acessos diretos a DDRx, PORTx e PINx pela tabela da placa. Escritas
+ * seguidas no mesmo registrador (sem outro comando no meio e sem repetir um
+ * pino, para não apagar pulsos) saem em uma única atualização.
+ */
+public class GeradorIR {
+    private static final String NOVA_LINHA = System.lineSeparator();
+    // Precedência das expressões unárias e primárias, acima de qualquer operador binário
+    private static final int PRECEDENCIA_UNARIA = 7;
+
+    private final StringBuilder saida;
+    private int indentLevel = 0;
+    // Indentações já montadas, reaproveitadas entre linhas e arquivos
+    private String[] indentacoes = {"", "  ", "    ", "      "};
+    // Placa de destino: dá o número digital dos pinos An
+    private PerfilPlaca placa = PerfilPlaca.UNO;
+    // Execute com Espere vira máquina de estados com millis() em vez de delay()
+    private boolean naoBloqueante = false;
+    // Tarefas já geradas no arquivo atual (tarefa0, tarefa1, ...)
+    private int tarefas = 0;
+    // Vários Execute no arquivo atual: cada um vira tarefa do escalonador
+    private boolean escalonado = false;
+    // Acesso direto aos registradores das portas em vez de digitalWrite/digitalRead
+    private boolean portas = false;
+    // Pinos com analogWrite no programa: ficam com digitalWrite/digitalRead, que desligam o PWM
+    private final Set<Integer> pinosPwm = new HashSet<>();
+    // Escritas acumuladas em um registrador (DDRx para pinMode, PORTx para digitalWrite)
+    private char portaPendente = 0;
+    private boolean pendenteModo;
+    private int liga;
+    private int desliga;
+    private int indentPendente;
+
+    public GeradorIR() {
+        this(ArduinoVisitor.CAPACIDADE_PADRAO);
+    }
+
+    public GeradorIR(int capacidadeInicial) {
+        saida = new StringBuilder(Math.max(capacidadeInicial, 16));
+    }
+
+    public void setPlaca(PerfilPlaca placa) {
+        this.placa = placa;
+    }
+
+    public void setNaoBloqueante(boolean naoBloqueante) {
+        this.naoBloqueante = naoBloqueante;
+    }
+
+    public void setPortas(boolean portas) {
+        this.portas = portas;
+    }
+
+    public CharSequence getCodigo() {
+        return saida;
+    }
+
+    public void reiniciar() {
+        saida.setLength(0);
+        indentLevel = 0;
+        tarefas = 0;
+        portaPendente = 0;
+    }
+
+    private String getIndent() {
+        if (indentLevel >= indentacoes.length) {
+            int antigo = indentacoes.length;
+            indentacoes = Arrays.copyOf(indentacoes, Math.max(indentLevel + 1, antigo * 2));
+            for (int i = antigo; i < indentacoes.length; i++) {
+                indentacoes[i] = indentacoes[i - 1] + "  ";
+            }
+        }
+        return indentacoes[indentLevel];
+    }
+
+    private void linha(String texto) {
+        descarregar();
+        saida.append(getIndent()).append(texto).append(NOVA_LINHA);
+    }
+
+    public void gerar(IR.Programa programa) {
+        saida.append("// Código gerado automaticamente").append(NOVA_LINHA);
+        saida.append(NOVA_LINHA);
+        int execute = 0;
+        for (IR.Comando item : programa.itens) {
+            if (item instanceof IR.Loop) {
+                execute++;
+            }
+        }
+        escalonado = execute > 1;
+        pinosPwm.clear();
+        if (portas) {
+            pinosPwm(programa.itens, placa, pinosPwm);
+        }
+        if (escalonado) {
+            declararEscalonador(execute);
+        }
+        for (IR.Comando item : programa.itens) {
+            comando(item);
+        }
+        if (escalonado) {
+            escalonador(execute);
+        }
+        descarregar();
+    }
+
+    /*
+     * Modo fluxo: cada Execute vira uma tarefa escrita assim que o bloco
+     * fecha, e o número de tarefas só se conhece no fim do arquivo. Por isso
+     * os vetores de espera são apenas declarados (extern) antes das tarefas
+     * e definidos com o tamanho junto do loop(), em concluirTarefas().
+     */
+    public void iniciarTarefas(Appendable destino) throws IOException {
+        reiniciar();
+        escalonado = true;
+        pinosPwm.clear();
+        linha("// Escalonador dos blocos Execute: instante e duração da espera de cada tarefa");
+        linha("extern unsigned long inicioTarefa[];");
+        linha("extern unsigned long esperaTarefa[];");
+        saida.append(NOVA_LINHA);
+        escrever(destino);
+    }
+
+    public void gerarTarefa(IR.Comando loop, Appendable destino) throws IOException {
+        comando(loop);
+        descarregar();
+        escrever(destino);
+    }
+
+    public void concluirTarefas(Appendable destino) throws IOException {
+        int quantidade = tarefas;
+        definirVetores(quantidade);
+        abrirEscalonador(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            linha("case " + i + ": tarefa" + i + "(); break;");
+            // O switch tem uma linha por tarefa: sai aos pedaços
+            if (saida.length() >= ArduinoVisitor.CAPACIDADE_PADRAO) {
+                escrever(destino);
+            }
+        }
+        fecharEscalonador();
+        escrever(destino);
+    }
+
+    // Passa o código acumulado ao destino e esvazia o buffer
+    private void escrever(Appendable destino) throws IOException {
+        destino.append(saida);
+        saida.setLength(0);
+    }
+
+    private void bloco(List<IR.Comando> corpo) {
+        indentLevel++;
+        for (IR.Comando c : corpo) {
+            comando(c);
+        }
+        descarregar();
+        indentLevel--;
+    }
+
+    private void comando(IR.Comando c) {
+        if (portas && direto(c)) {
+            return;
+        }
+        if (c instanceof IR.Setup) {
+            linha("void setup() {");
+            bloco(((IR.Setup) c).corpo);
+            linha("}");
+            saida.append(NOVA_LINHA);
+        } else if (c instanceof IR.Loop) {
+            List<IR.Comando> corpo = ((IR.Loop) c).corpo;
+            if (escalonado) {
+                tarefa(corpo);
+            } else if (naoBloqueante && MaquinaEstados.suspende(corpo)) {
+                String nome = tarefa(corpo);
+                linha("void loop() {");
+                indentLevel++;
+                linha(nome + "();");
+                indentLevel--;
+                linha("}");
+            } else {
+                linha("void loop() {");
+                bloco(corpo);
+                linha("}");
+            }
+        } else if (c instanceof IR.Funcao) {
+            funcao((IR.Funcao) c);
+        } else if (c instanceof IR.ModoPino) {
+            IR.ModoPino m = (IR.ModoPino) c;
+            linha("pinMode(" + nomePino(m.pino) + ", " + (m.saida ? "OUTPUT" : "INPUT") + ");");
+        } else if (c instanceof IR.IniciaSerial) {
+            linha("Serial.begin(" + ((IR.IniciaSerial) c).baud + ");");
+        } else if (c instanceof IR.Espera) {
+            linha("delay(" + ((IR.Espera) c).ms + ");");
+        } else if (c instanceof IR.EscritaDigital) {
+            IR.EscritaDigital e = (IR.EscritaDigital) c;
+            inicio("digitalWrite(");
+            expressao(e.pino, 0);
+            saida.append(", ");
+            expressao(e.valor, 0);
+            fim(");");
+        } else if (c instanceof IR.EscritaAnalogica) {
+            IR.EscritaAnalogica e = (IR.EscritaAnalogica) c;
+            inicio("analogWrite(");
+            expressao(e.pino, 0);
+            saida.append(", ");
+            expressao(e.valor, 0);
+            fim(");");
+        } else if (c instanceof IR.ImprimeSerial) {
+            inicio("Serial.println(");
+            expressao(((IR.ImprimeSerial) c).valor, 0);
+            fim(");");
+        } else if (c instanceof IR.DeclaraVariavel) {
+            IR.DeclaraVariavel d = (IR.DeclaraVariavel) c;
+            inicio(d.tipo.arduino + " " + d.nome);
+            if (d.inicial != null) {
+                saida.append(" = ");
+                expressao(d.inicial, 0);
+            }
+            fim(";");
+        } else if (c instanceof IR.Atribuicao) {
+            IR.Atribuicao a = (IR.Atribuicao) c;
+            inicio(a.nome + " = ");
+            expressao(a.valor, 0);
+            fim(";");
+        } else if (c instanceof IR.Se) {
+            IR.Se se = (IR.Se) c;
+            inicio("if (");
+            expressao(se.condicao, 0);
+            fim(") {");
+            bloco(se.entao);
+            linha("}");
+            if (se.senao != null) {
+                linha("else {");
+                bloco(se.senao);
+                linha("}");
+            }
+        } else if (c instanceof IR.Repita) {
+            IR.Repita r = (IR.Repita) c;
+            inicio("for (int forCount = 0; forCount < ");
+            expressao(r.vezes, 0);
+            fim("; forCount++) {");
+            bloco(r.corpo);
+            linha("}");
+        } else if (c instanceof IR.Bloco) {
+            linha("{");
+            bloco(((IR.Bloco) c).corpo);
+            linha("}");
+        } else if (c instanceof IR.Retorne) {
+            inicio("return ");
+            expressao(((IR.Retorne) c).valor, 0);
+            fim(";");
+        } else if (c instanceof IR.ComandoExpressao) {
+            inicio("");
+            expressao(((IR.ComandoExpressao) c).expressao, 0);
+            fim(";");
+        } else if (c instanceof IR.Comentario) {
+            // Comentários de várias linhas mantêm o alinhamento original de cada linha
+            for (String texto : ((IR.Comentario) c).texto.split("\n", -1)) {
+                linha(texto);
+            }
+        } else {
+            throw new IllegalArgumentException("Comando sem tradução: " + c.getClass().getSimpleName());
+        }
+    }
+
+    // Gera as variáveis de estado e a função da tarefa; devolve o nome da função
+    private String tarefa(List<IR.Comando> corpo) {
+        int numero = tarefas++;
+        String nome = "tarefa" + numero;
+        if (!MaquinaEstados.suspende(corpo)) {
+            // Só acontece com o escalonador: a tarefa roda o corpo inteiro a cada vez
+            linha("void " + nome + "() {");
+            bloco(corpo);
+            linha("}");
+            saida.append(NOVA_LINHA);
+            return nome;
+        }
+        MaquinaEstados maquina = new MaquinaEstados(nome, corpo);
+        String estado = "estadoTarefa" + numero;
+        String inicio;
+        String espera;
+        if (escalonado) {
+            // A espera fica nos vetores do escalonador, que decide quando a tarefa volta
+            inicio = "inicioTarefa[" + numero + "]";
+            espera = "esperaTarefa[" + numero + "]";
+            linha((maquina.getEstados().size() <= 256 ? "byte " : "unsigned int ") + estado + " = 0;");
+        } else {
+            inicio = "inicioTarefa" + numero;
+            espera = "esperaTarefa" + numero;
+            linha("// Execute sem delay(): cada Espere guarda o instante e devolve o controle ao loop()");
+            linha((maquina.getEstados().size() <= 256 ? "byte " : "unsigned int ") + estado + " = 0;");
+            linha("unsigned long " + inicio + " = 0;");
+            linha("unsigned long " + espera + " = 0;");
+        }
+        saida.append(NOVA_LINHA);
+
+        linha("void " + nome + "() {");
+        indentLevel++;
+        for (Map.Entry<String, IR.Tipo> v : maquina.getVariaveis().entrySet()) {
+            linha("static " + v.getValue().arduino + " " + v.getKey() + ";");
+        }
+        if (!escalonado) {
+            linha("if (" + espera + " != 0) {");
+            indentLevel++;
+            linha("if (millis() - " + inicio + " < " + espera + ") {");
+            indentLevel++;
+            linha("return;");
+            indentLevel--;
+            linha("}");
+            linha(espera + " = 0;");
+            indentLevel--;
+            linha("}");
+        }
+        linha("for (;;) {");
+        indentLevel++;
+        linha("switch (" + estado + ") {");
+        indentLevel++;
+        for (MaquinaEstados.Estado e : maquina.getEstados()) {
+            linha("case " + e.numero + ": {");
+            indentLevel++;
+            for (IR.Comando c : e.comandos) {
+                comando(c);
+            }
+            transicao(e.saida, estado, inicio, espera);
+            indentLevel--;
+            linha("}");
+        }
+        indentLevel--;
+        linha("}");
+        indentLevel--;
+        linha("}");
+        indentLevel--;
+        linha("}");
+        saida.append(NOVA_LINHA);
+        return nome;
+    }
+
+    // Vetores do escalonador, antes de qualquer tarefa
+    private void declararEscalonador(int quantidade) {
+        linha("// Escalonador dos " + quantidade + " blocos Execute: instante e duração da espera de cada tarefa");
+        definirVetores(quantidade);
+    }
+
+    private void definirVetores(int quantidade) {
+        String tipo = tipoTarefa(quantidade);
+        linha("const " + tipo + " TAREFAS = " + quantidade + ";");
+        linha("unsigned long inicioTarefa[TAREFAS];");
+        linha("unsigned long esperaTarefa[TAREFAS];");
+        linha(tipo + " proximaTarefa = 0;");
+        saida.append(NOVA_LINHA);
+    }
+
+    /*
+     * loop() roda, a cada passada, uma única tarefa: entre as que já
+     * terminaram a espera, a que está mais atrasada em relação ao próprio
+     * prazo. Uma tarefa sem espera tem como prazo a última vez em que rodou,
+     * então as tarefas ocupadas se revezam; no empate vence a próxima na
+     * ordem circular a partir da última que rodou.
+     */
+    private void escalonador(int quantidade) {
+        abrirEscalonador(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            linha("case " + i + ": tarefa" + i + "(); break;");
+        }
+        fecharEscalonador();
+    }
+
+    // loop() até o switch que chama a tarefa escolhida
+    private void abrirEscalonador(int quantidade) {
+        String tipo = tipoTarefa(quantidade);
+        linha("void loop() {");
+        indentLevel++;
+        linha("unsigned long agora = millis();");
+        linha(tipo + " escolhida = TAREFAS;");
+        linha("unsigned long maiorAtraso = 0;");
+        linha("for (" + tipo + " i = 0; i < TAREFAS; i++) {");
+        indentLevel++;
+        linha(tipo + " t = (proximaTarefa + i) % TAREFAS;");
+        linha("unsigned long passado = agora - inicioTarefa[t];");
+        linha("if (passado >= esperaTarefa[t]) {");
+        indentLevel++;
+        linha("unsigned long atraso = passado - esperaTarefa[t];");
+        linha("if (escolhida == TAREFAS || atraso > maiorAtraso) {");
+        indentLevel++;
+        linha("escolhida = t;");
+        linha("maiorAtraso = atraso;");
+        indentLevel--;
+        linha("}");
+        indentLevel--;
+        linha("}");
+        indentLevel--;
+        linha("}");
+        linha("if (escolhida == TAREFAS) {");
+        indentLevel++;
+        linha("return;");
+        indentLevel--;
+        linha("}");
+        linha("inicioTarefa[escolhida] = agora;");
+        linha("esperaTarefa[escolhida] = 0;");
+        linha("switch (escolhida) {");
+        indentLevel++;
+    }
+
+    private void fecharEscalonador() {
+        indentLevel--;
+        linha("}");
+        linha("proximaTarefa = (escolhida + 1) % TAREFAS;");
+        indentLevel--;
+        linha("}");
+    }
+
+    // Tipo do número de tarefas e dos índices do escalonador: o contador do
+    // for precisa passar de TAREFAS - 1 sem dar a volta
+    private static String tipoTarefa(int quantidade) {
+        if (quantidade <= 255) {
+            return "byte";
+        }
+        return quantidade <= 65535 ? "unsigned int" : "unsigned long";
+    }
+
+    private void transicao(MaquinaEstados.Transicao t, String estado, String inicio, String espera) {
+        if (t instanceof MaquinaEstados.Ir) {
+            linha(estado + " = " + ((MaquinaEstados.Ir) t).destino + ";");
+            linha("break;");
+        } else if (t instanceof MaquinaEstados.Esperar) {
+            MaquinaEstados.Esperar e = (MaquinaEstados.Esperar) t;
+            linha(inicio + " = millis();");
+            linha(espera + " = " + e.ms + ";");
+            linha(estado + " = " + e.destino + ";");
+            linha("return;");
+        } else if (t instanceof MaquinaEstados.Desviar) {
+            MaquinaEstados.Desviar d = (MaquinaEstados.Desviar) t;
+            inicio("if (");
+            expressao(d.condicao, 0);
+            fim(") {");
+            indentLevel++;
+            linha(estado + " = " + d.seVerdade + ";");
+            indentLevel--;
+            linha("}");
+            linha("else {");
+            indentLevel++;
+            linha(estado + " = " + d.seFalso + ";");
+            indentLevel--;
+            linha("}");
+            linha("break;");
+        } else {
+            linha(estado + " = 0;");
+            linha("return;");
+        }
+    }
+
+    private void inicio(String texto) {
+        descarregar();
+        saida.append(getIndent()).append(texto);
+    }
+
+    private void fim(String texto) {
+        saida.append(texto).append(NOVA_LINHA);
+    }
+
+    private void funcao(IR.Funcao f) {
+        saida.append(f.retorno.arduino).append(' ').append(f.nome).append('(');
+        for (int i = 0; i < f.parametros.size(); i++) {
+            if (i > 0) {
+                saida.append(", ");
+            }
+            IR.Parametro p = f.parametros.get(i);
+            saida.append(p.tipo.arduino).append(' ').append(p.nome);
+        }
+        fim(") {");
+        bloco(f.corpo);
+        linha("}");
+        saida.append(NOVA_LINHA);
+    }
+
+    // ------------------------------------------------------------------
+    // Registradores das portas
+    // ------------------------------------------------------------------
+
+    // Número digital de um pino constante que pode ir direto à porta, ou -1
+    private int porta(IR.Expr pino) {
+        if (!portas || !(pino instanceof IR.Pino)) {
+            return -1;
+        }
+        IR.Pino p = (IR.Pino) pino;
+        int numero = p.analogico ? placa.pinoDoCanal(p.numero) : p.numero;
+        return placa.temPorta(numero) && !pinosPwm.contains(numero) ? numero : -1;
+    }
+
+    // Gera pinMode/digitalWrite pelos registradores; false se o comando não se aplica
+    private boolean direto(IR.Comando c) {
+        if (c instanceof IR.ModoPino) {
+            IR.ModoPino m = (IR.ModoPino) c;
+            int pino = porta(m.pino);
+            if (pino < 0) {
+                return false;
+            }
+            acumular(placa.porta(pino), placa.bitPorta(pino), true, m.saida);
+            return true;
+        }
+        if (!(c instanceof IR.EscritaDigital)) {
+            return false;
+        }
+        IR.EscritaDigital e = (IR.EscritaDigital) c;
+        int pino = porta(e.pino);
+        if (pino < 0) {
+            return false;
+        }
+        if (e.valor instanceof IR.Numero && !((IR.Numero) e.valor).real) {
+            acumular(placa.porta(pino), placa.bitPorta(pino), false, ((IR.Numero) e.valor).inteiro != 0);
+            return true;
+        }
+        // Valor calculado: escolhe entre ligar e desligar o bit
+        String mascara = mascara(1 << placa.bitPorta(pino));
+        inicio("if (");
+        expressao(e.valor, 0);
+        fim(") {");
+        indentLevel++;
+        linha("PORT" + placa.porta(pino) + " |= " + mascara + ";");
+        indentLevel--;
+        linha("}");
+        linha("else {");
+        indentLevel++;
+        linha("PORT" + placa.porta(pino) + " &= ~" + mascara + ";");
+        indentLevel--;
+        linha("}");
+        return true;
+    }
+
+    // Junta o bit à sequência pendente, ou começa outra se o registrador mudar ou o pino se repetir
+    private void acumular(char porta, int bit, boolean modo, boolean ligar) {
+        int mascara = 1 << bit;
+        if (portaPendente != 0 && (portaPendente != porta || pendenteModo != modo || ((liga | desliga) & mascara) != 0)) {
+            descarregar();
+        }
+        if (portaPendente == 0) {
+            portaPendente = porta;
+            pendenteModo = modo;
+            indentPendente = indentLevel;
+        }
+        if (ligar) {
+            liga |= mascara;
+        } else {
+            desliga |= mascara;
+        }
+    }
+
+    // Escreve a sequência pendente como uma única atualização do registrador
+    private void descarregar() {
+        if (portaPendente == 0) {
+            return;
+        }
+        String registro = (pendenteModo ? "DDR" : "PORT") + portaPendente;
+        String pullUp = "PORT" + portaPendente;
+        int bitsLiga = liga;
+        int bitsDesliga = desliga;
+        boolean modo = pendenteModo;
+        int nivel = indentLevel;
+        portaPendente = 0;
+        liga = 0;
+        desliga = 0;
+
+        indentLevel = indentPendente;
+        if (bitsLiga != 0 && bitsDesliga != 0) {
+            linha(registro + " = (" + registro + " & ~" + mascara(bitsDesliga) + ") | " + mascara(bitsLiga) + ";");
+        } else if (bitsLiga != 0) {
+            linha(registro + " |= " + mascara(bitsLiga) + ";");
+        } else {
+            linha(registro + " &= ~" + mascara(bitsDesliga) + ";");
+        }
+        // pinMode(INPUT) também desliga o pull-up
+        if (modo && bitsDesliga != 0) {
+            linha(pullUp + " &= ~" + mascara(bitsDesliga) + ";");
+        }
+        indentLevel = nivel;
+    }
+
+    private static String mascara(int bits) {
+        String binario = Integer.toBinaryString(bits);
+        return "0b" + "00000000".substring(binario.length()) + binario;
+    }
+
+    // Pinos usados com analogWrite, que continuam com digitalWrite mesmo com -portas
+    static void pinosPwm(List<IR.Comando> corpo, PerfilPlaca placa, Set<Integer> pinosPwm) {
+        for (IR.Comando c : corpo) {
+            if (c instanceof IR.EscritaAnalogica && ((IR.EscritaAnalogica) c).pino instanceof IR.Pino) {
+                IR.Pino p = (IR.Pino) ((IR.EscritaAnalogica) c).pino;
+                pinosPwm.add(p.analogico ? placa.pinoDoCanal(p.numero) : p.numero);
+            } else if (c instanceof IR.Setup) {
+                pinosPwm(((IR.Setup) c).corpo, placa, pinosPwm);
+            } else if (c instanceof IR.Loop) {
+                pinosPwm(((IR.Loop) c).corpo, placa, pinosPwm);
+            } else if (c instanceof IR.Funcao) {
+                pinosPwm(((IR.Funcao) c).corpo, placa, pinosPwm);
+            } else if (c instanceof IR.Se) {
+                pinosPwm(((IR.Se) c).entao, placa, pinosPwm);
+                if (((IR.Se) c).senao != null) {
+                    pinosPwm(((IR.Se) c).senao, placa, pinosPwm);
+                }
+            } else if (c instanceof IR.Repita) {
+                pinosPwm(((IR.Repita) c).corpo, placa, pinosPwm);
+            } else if (c instanceof IR.Bloco) {
+                pinosPwm(((IR.Bloco) c).corpo, placa, pinosPwm);
+            }
+        }
+    }
+
+    // pinMode aceita o nome An diretamente
+    private static String nomePino(IR.Pino pino) {
+        return pino.analogico ? "A" + pino.numero : String.valueOf(pino.numero);
+    }
+
+    // Pinos analógicos usados como digitais seguem a numeração da placa (A0 = 14 no Uno)
+    private String pinoDigital(IR.Pino pino) {
+        return String.valueOf(pino.analogico ? placa.pinoDoCanal(pino.numero) : pino.numero);
+    }
+
+    private static int precedencia(IR.Expr e) {
+        if (e instanceof IR.Binaria) {
+            return ((IR.Binaria) e).operador.precedencia;
+        }
+        return PRECEDENCIA_UNARIA;
+    }
+
+    // Escreve a expressão, entre parênteses se ela ligar mais fraco que o contexto
+    private void expressao(IR.Expr e, int contexto) {
+        boolean parenteses = precedencia(e) < contexto;
+        if (parenteses) {
+            saida.append('(');
+        }
+
+        if (e instanceof IR.Binaria) {
+            IR.Binaria b = (IR.Binaria) e;
+            int p = b.operador.precedencia;
+            expressao(b.esquerda, p);
+            saida.append(' ').append(b.operador.simbolo).append(' ');
+            // Os operadores são associativos à esquerda: a - (b - c) precisa dos parênteses
+            expressao(b.direita, p + 1);
+        } else if (e instanceof IR.Unaria) {
+            IR.Unaria u = (IR.Unaria) e;
+            saida.append(u.operador.simbolo);
+            // Evita que - -x ou - -5 virem o decremento --x
+            if (sinal(u.operador) && comecaComSinal(u.operando)) {
+                saida.append('(');
+                expressao(u.operando, 0);
+                saida.append(')');
+            } else {
+                expressao(u.operando, PRECEDENCIA_UNARIA);
+            }
+        } else if (e instanceof IR.Numero) {
+            saida.append(((IR.Numero) e).texto);
+        } else if (e instanceof IR.Texto) {
+            saida.append(ArduinoVisitor.processarString(((IR.Texto) e).literal));
+        } else if (e instanceof IR.Variavel) {
+            saida.append(((IR.Variavel) e).nome);
+        } else if (e instanceof IR.Pino) {
+            saida.append(pinoDigital((IR.Pino) e));
+        } else if (e instanceof IR.Leitura) {
+            IR.Leitura l = (IR.Leitura) e;
+            if (l.analogica) {
+                saida.append("analogRead(A").append(((IR.Pino) l.pino).numero).append(')');
+            } else if (porta(l.pino) >= 0) {
+                int pino = porta(l.pino);
+                saida.append("((PIN").append(placa.porta(pino)).append(" >> ").append(placa.bitPorta(pino)).append(") & 1)");
+            } else {
+                saida.append("digitalRead(");
+                expressao(l.pino, 0);
+                saida.append(')');
+            }
+        } else if (e instanceof IR.Chamada) {
+            IR.Chamada ch = (IR.Chamada) e;
+            saida.append(ch.nome).append('(');
+            for (int i = 0; i < ch.argumentos.size(); i++) {
+                if (i > 0) {
+                    saida.append(", ");
+                }
+                expressao(ch.argumentos.get(i), 0);
+            }
+            saida.append(')');
+        } else {
+            throw new IllegalArgumentException("Expressão sem tradução: " + e.getClass().getSimpleName());
+        }
+
+        if (parenteses) {
+            saida.append(')');
+        }
+    }
+
+    private static boolean sinal(IR.OperadorUnario op) {
+        return op == IR.OperadorUnario.MAIS || op == IR.OperadorUnario.MENOS;
+    }
+
+    private static boolean comecaComSinal(IR.Expr e) {
+        if (e instanceof IR.Unaria) {
+            return sinal(((IR.Unaria) e).operador);
+        }
+        return e instanceof IR.Numero && ((IR.Numero) e).texto.startsWith("-");
+    }
+}
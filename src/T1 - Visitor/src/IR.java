@@ -0,0 +1,422 @@
+import java.util.List;
+
+/**
+ * Representação intermediária tipada de um programa ADSL.
+ *
+ * O ConstrutorIR percorre a AST do JJTree uma única vez e produz esta árvore
+ * compacta, em que os operadores já estão resolvidos, os pinos já são
+ * números e os tempos de espera já estão em milissegundos. Geração de código
+ * e passes de otimização trabalham sobre ela sem voltar à cadeia de tokens.
+ */
+public final class IR {
+    private IR() {
+    }
+
+    // Tipos de variável da ADSL e o nome correspondente no Arduino
+    public enum Tipo {
+        BYTE("byte"),
+        INT("int"),
+        UNSIGNED_INT("unsigned int"),
+        LONG("long"),
+        UNSIGNED_LONG("unsigned long"),
+        REAL("float"),
+        CHAR("char"),
+        STRING("String"),
+        BOOLEAN("boolean"),
+        VOID("void");
+
+        public final String arduino;
+
+        Tipo(String arduino) {
+            this.arduino = arduino;
+        }
+
+        public static Tipo deAdsl(String imagem) {
+            switch (imagem) {
+                case "byte": return BYTE;
+                case "int": return INT;
+                case "unsigned int": return UNSIGNED_INT;
+                case "long": return LONG;
+                case "unsigned long": return UNSIGNED_LONG;
+                case "real": return REAL;
+                case "char": return CHAR;
+                case "String": return STRING;
+                case "Boolean": return BOOLEAN;
+                case "void": return VOID;
+                default: return INT;
+            }
+        }
+    }
+
+    // Operadores binários com a precedência do C (maior valor liga mais forte)
+    public enum Operador {
+        OU("||", 1),
+        E("&&", 2),
+        IGUAL("==", 3),
+        DIFERENTE("!=", 3),
+        MENOR("<", 4),
+        MAIOR(">", 4),
+        MENOR_IGUAL("<=", 4),
+        MAIOR_IGUAL(">=", 4),
+        SOMA("+", 5),
+        SUBTRACAO("-", 5),
+        MULTIPLICACAO("*", 6),
+        DIVISAO("/", 6),
+        RESTO("%", 6);
+
+        public final String simbolo;
+        public final int precedencia;
+
+        Operador(String simbolo, int precedencia) {
+            this.simbolo = simbolo;
+            this.precedencia = precedencia;
+        }
+
+        public static Operador doToken(int kind) {
+            switch (kind) {
+                case ADSLConstants.SC_OR: return OU;
+                case ADSLConstants.SC_AND: return E;
+                case ADSLConstants.EQ: return IGUAL;
+                case ADSLConstants.NE: return DIFERENTE;
+                case ADSLConstants.LT: return MENOR;
+                case ADSLConstants.GT: return MAIOR;
+                case ADSLConstants.LE: return MENOR_IGUAL;
+                case ADSLConstants.GE: return MAIOR_IGUAL;
+                case ADSLConstants.PLUS: return SOMA;
+                case ADSLConstants.MINUS: return SUBTRACAO;
+                case ADSLConstants.STAR: return MULTIPLICACAO;
+                case ADSLConstants.SLASH: return DIVISAO;
+                case ADSLConstants.REM: return RESTO;
+                default: throw new IllegalArgumentException("Operador binário desconhecido: " + ADSLConstants.tokenImage[kind]);
+            }
+        }
+    }
+
+    public enum OperadorUnario {
+        MAIS("+"),
+        MENOS("-"),
+        NAO("!"),
+        COMPLEMENTO("~");
+
+        public final String simbolo;
+
+        OperadorUnario(String simbolo) {
+            this.simbolo = simbolo;
+        }
+
+        public static OperadorUnario doToken(int kind) {
+            switch (kind) {
+                case ADSLConstants.PLUS: return MAIS;
+                case ADSLConstants.MINUS: return MENOS;
+                case ADSLConstants.BANG: return NAO;
+                case ADSLConstants.TILDE: return COMPLEMENTO;
+                default: throw new IllegalArgumentException("Operador unário desconhecido: " + ADSLConstants.tokenImage[kind]);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Programa e declarações de nível superior
+    // ------------------------------------------------------------------
+
+    public static final class Programa {
+        // Setup, Loop, Funcao, DeclaraVariavel globais e comentários, na ordem do fonte
+        public final List<Comando> itens;
+
+        public Programa(List<Comando> itens) {
+            this.itens = itens;
+        }
+    }
+
+    public static final class Setup extends Comando {
+        public final List<Comando> corpo;
+
+        public Setup(List<Comando> corpo) {
+            this.corpo = corpo;
+        }
+    }
+
+    public static final class Loop extends Comando {
+        public final List<Comando> corpo;
+
+        public Loop(List<Comando> corpo) {
+            this.corpo = corpo;
+        }
+    }
+
+    public static final class Funcao extends Comando {
+        public final String nome;
+        public final Tipo retorno;
+        public final List<Parametro> parametros;
+        public final List<Comando> corpo;
+
+        public Funcao(String nome, Tipo retorno, List<Parametro> parametros, List<Comando> corpo) {
+            this.nome = nome;
+            this.retorno = retorno;
+            this.parametros = parametros;
+            this.corpo = corpo;
+        }
+    }
+
+    public static final class Parametro {
+        public final Tipo tipo;
+        public final String nome;
+
+        public Parametro(Tipo tipo, String nome) {
+            this.tipo = tipo;
+            this.nome = nome;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Comandos
+    // ------------------------------------------------------------------
+
+    public abstract static class Comando {
+    }
+
+    public static final class ModoPino extends Comando {
+        public final Pino pino;
+        public final boolean saida;
+
+        public ModoPino(Pino pino, boolean saida) {
+            this.pino = pino;
+            this.saida = saida;
+        }
+    }
+
+    public static final class IniciaSerial extends Comando {
+        public final int baud;
+
+        public IniciaSerial(int baud) {
+            this.baud = baud;
+        }
+    }
+
+    public static final class Espera extends Comando {
+        public final long ms;
+
+        public Espera(long ms) {
+            this.ms = ms;
+        }
+    }
+
+    public static final class EscritaDigital extends Comando {
+        public final Expr pino;
+        public final Expr valor;
+
+        public EscritaDigital(Expr pino, Expr valor) {
+            this.pino = pino;
+            this.valor = valor;
+        }
+    }
+
+    public static final class EscritaAnalogica extends Comando {
+        public final Expr pino;
+        public final Expr valor;
+
+        public EscritaAnalogica(Expr pino, Expr valor) {
+            this.pino = pino;
+            this.valor = valor;
+        }
+    }
+
+    public static final class ImprimeSerial extends Comando {
+        public final Expr valor;
+
+        public ImprimeSerial(Expr valor) {
+            this.valor = valor;
+        }
+    }
+
+    public static final class DeclaraVariavel extends Comando {
+        public final Tipo tipo;
+        public final String nome;
+        // null quando a declaração não tem inicializador
+        public final Expr inicial;
+
+        public DeclaraVariavel(Tipo tipo, String nome, Expr inicial) {
+            this.tipo = tipo;
+            this.nome = nome;
+            this.inicial = inicial;
+        }
+    }
+
+    public static final class Atribuicao extends Comando {
+        public final String nome;
+        public final Expr valor;
+
+        public Atribuicao(String nome, Expr valor) {
+            this.nome = nome;
+            this.valor = valor;
+        }
+    }
+
+    public static final class Se extends Comando {
+        public final Expr condicao;
+        public final List<Comando> entao;
+        // null quando não há bloco senao
+        public final List<Comando> senao;
+
+        public Se(Expr condicao, List<Comando> entao, List<Comando> senao) {
+            this.condicao = condicao;
+            this.entao = entao;
+            this.senao = senao;
+        }
+    }
+
+    public static final class Repita extends Comando {
+        public final Expr vezes;
+        public final List<Comando> corpo;
+
+        public Repita(Expr vezes, List<Comando> corpo) {
+            this.vezes = vezes;
+            this.corpo = corpo;
+        }
+    }
+
+    // Bloco { ... } solto, usado quando um ramo de se é mantido sem a condição
+    public static final class Bloco extends Comando {
+        public final List<Comando> corpo;
+
+        public Bloco(List<Comando> corpo) {
+            this.corpo = corpo;
+        }
+    }
+
+    public static final class Retorne extends Comando {
+        public final Expr valor;
+
+        public Retorne(Expr valor) {
+            this.valor = valor;
+        }
+    }
+
+    // Expressão avaliada só pelos efeitos: chamadas de função e leituras soltas (Leia 2;)
+    public static final class ComandoExpressao extends Comando {
+        public final Expr expressao;
+
+        public ComandoExpressao(Expr expressao) {
+            this.expressao = expressao;
+        }
+    }
+
+    public static final class Comentario extends Comando {
+        // Texto do comentário sem a quebra de linha final
+        public final String texto;
+
+        public Comentario(String texto) {
+            this.texto = texto;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Expressões
+    // ------------------------------------------------------------------
+
+    public abstract static class Expr {
+    }
+
+    public static final class Numero extends Expr {
+        public final String texto;
+        public final boolean real;
+        public final long inteiro;
+        public final double valorReal;
+
+        public Numero(String texto, boolean real) {
+            this.texto = texto;
+            this.real = real;
+            this.inteiro = real ? 0 : Long.parseLong(texto);
+            this.valorReal = real ? Double.parseDouble(texto) : this.inteiro;
+        }
+
+        public Numero(long inteiro) {
+            this(Long.toString(inteiro), false);
+        }
+
+        // Constante calculada: 'longo' mantém o tipo long do C mesmo quando o valor cabe em um int
+        public Numero(long inteiro, boolean longo) {
+            this.texto = longo && inteiro >= Short.MIN_VALUE && inteiro <= Short.MAX_VALUE ? inteiro + "L" : Long.toString(inteiro);
+            this.real = false;
+            this.inteiro = inteiro;
+            this.valorReal = inteiro;
+        }
+    }
+
+    public static final class Texto extends Expr {
+        // Literal como escrito no fonte ADSL, com as aspas
+        public final String literal;
+
+        public Texto(String literal) {
+            this.literal = literal;
+        }
+    }
+
+    public static final class Variavel extends Expr {
+        public final String nome;
+
+        public Variavel(String nome) {
+            this.nome = nome;
+        }
+    }
+
+    // Número de pino conhecido em tempo de compilação (An é guardado como n com analogico = true)
+    public static final class Pino extends Expr {
+        public final int numero;
+        public final boolean analogico;
+
+        public Pino(int numero, boolean analogico) {
+            this.numero = numero;
+            this.analogico = analogico;
+        }
+
+        public static Pino deImagem(String imagem) {
+            if (imagem.startsWith("A")) {
+                return new Pino(Integer.parseInt(imagem.substring(1)), true);
+            }
+            return new Pino(Integer.parseInt(imagem), false);
+        }
+    }
+
+    public static final class Leitura extends Expr {
+        public final Expr pino;
+        public final boolean analogica;
+
+        public Leitura(Expr pino, boolean analogica) {
+            this.pino = pino;
+            this.analogica = analogica;
+        }
+    }
+
+    public static final class Binaria extends Expr {
+        public final Operador operador;
+        public final Expr esquerda;
+        public final Expr direita;
+
+        public Binaria(Operador operador, Expr esquerda, Expr direita) {
+            this.operador = operador;
+            this.esquerda = esquerda;
+            this.direita = direita;
+        }
+    }
+
+    public static final class Unaria extends Expr {
+        public final OperadorUnario operador;
+        public final Expr operando;
+
+        public Unaria(OperadorUnario operador, Expr operando) {
+            this.operador = operador;
+            this.operando = operando;
+        }
+    }
+
+    public static final class Chamada extends Expr {
+        public final String nome;
+        public final List<Expr> argumentos;
+
+        public Chamada(String nome, List<Expr> argumentos) {
+            this.nome = nome;
+            this.argumentos = argumentos;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converte o corpo de um Execute em uma máquina de estados retomável, usada
+ * pelo GeradorIR no modo não bloqueante.
+ *
+ * Cada Espere encerra um estado: em vez de delay(), o código gerado guarda o
+ * instante e a duração da espera e devolve o controle ao loop(); quando o
+ * tempo passa, a tarefa continua no estado seguinte. Um se ou repita que
+ * contém um Espere (ou um retorne) vira desvios entre estados, com o
+ * contador do repita guardado em uma variável da tarefa. Trechos sem espera
+ * ficam como estão, dentro de um único estado.
+ *
+ * Como a função da tarefa retorna entre dois estados, as variáveis declaradas
+ * fora desses trechos passam a ser static na função: a declaração vira uma
+ * atribuição no mesmo lugar. Espere dentro de uma funcao continua sendo
+ * delay(), porque a chamada não pode ser suspensa no meio.
+ */
+public class MaquinaEstados {
+    // Como o estado termina
+    public abstract static class Transicao {
+    }
+
+    // Continua no estado 'destino' na mesma chamada
+    public static final class Ir extends Transicao {
+        public int destino;
+
+        Ir(int destino) {
+            this.destino = destino;
+        }
+    }
+
+    // Espera 'ms' sem bloquear e depois continua em 'destino'
+    public static final class Esperar extends Transicao {
+        public final long ms;
+        public int destino;
+
+        Esperar(long ms, int destino) {
+            this.ms = ms;
+            this.destino = destino;
+        }
+    }
+
+    // Vai para 'seVerdade' ou 'seFalso' conforme a condição
+    public static final class Desviar extends Transicao {
+        public final IR.Expr condicao;
+        public int seVerdade;
+        public int seFalso;
+
+        Desviar(IR.Expr condicao, int seVerdade, int seFalso) {
+            this.condicao = condicao;
+            this.seVerdade = seVerdade;
+            this.seFalso = seFalso;
+        }
+    }
+
+    // Fim de uma iteração do Execute: volta ao estado 0 e devolve o controle
+    public static final class Fim extends Transicao {
+    }
+
+    public static final class Estado {
+        public int numero;
+        // Comandos sem espera, executados em sequência
+        public final List<IR.Comando> comandos = new ArrayList<>();
+        public Transicao saida;
+
+        Estado(int numero) {
+            this.numero = numero;
+        }
+    }
+
+    private final String nomeTarefa;
+    private final List<Estado> estados = new ArrayList<>();
+    // Variáveis que precisam sobreviver entre chamadas: nome -> tipo
+    private final Map<String, IR.Tipo> variaveis = new LinkedHashMap<>();
+    private int contadores = 0;
+
+    /**
+     * Monta a máquina do corpo de um Execute. 'nomeTarefa' dá nome aos
+     * contadores dos repita (contadorTarefa0_1, ...).
+     */
+    public MaquinaEstados(String nomeTarefa, List<IR.Comando> corpo) {
+        this.nomeTarefa = nomeTarefa;
+        Estado ultimo = compilar(corpo, novoEstado());
+        ultimo.saida = new Fim();
+        simplificar();
+    }
+
+    public List<Estado> getEstados() {
+        return estados;
+    }
+
+    public Map<String, IR.Tipo> getVariaveis() {
+        return variaveis;
+    }
+
+    // O corpo (ou o comando) tem algum Espere ou retorne fora de funções?
+    public static boolean suspende(List<IR.Comando> corpo) {
+        for (IR.Comando c : corpo) {
+            if (suspende(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean suspende(IR.Comando c) {
+        if (c instanceof IR.Espera || c instanceof IR.Retorne) {
+            return true;
+        }
+        if (c instanceof IR.Se) {
+            IR.Se se = (IR.Se) c;
+            return suspende(se.entao) || (se.senao != null && suspende(se.senao));
+        }
+        if (c instanceof IR.Repita) {
+            return suspende(((IR.Repita) c).corpo);
+        }
+        if (c instanceof IR.Bloco) {
+            return suspende(((IR.Bloco) c).corpo);
+        }
+        return false;
+    }
+
+    private Estado novoEstado() {
+        Estado e = new Estado(estados.size());
+        estados.add(e);
+        return e;
+    }
+
+    // Acrescenta os comandos a partir do estado 'atual' e devolve o estado em que a sequência termina
+    private Estado compilar(List<IR.Comando> corpo, Estado atual) {
+        for (IR.Comando c : corpo) {
+            if (c instanceof IR.DeclaraVariavel) {
+                IR.DeclaraVariavel d = (IR.DeclaraVariavel) c;
+                guardar(d.nome, d.tipo);
+                if (d.inicial != null) {
+                    atual.comandos.add(new IR.Atribuicao(d.nome, d.inicial));
+                }
+            } else if (!suspende(c)) {
+                atual.comandos.add(c);
+            } else if (c instanceof IR.Espera) {
+                Estado depois = novoEstado();
+                atual.saida = new Esperar(((IR.Espera) c).ms, depois.numero);
+                atual = depois;
+            } else if (c instanceof IR.Retorne) {
+                atual.saida = new Fim();
+                // O que vier depois do retorne é inalcançável e some em simplificar()
+                atual = novoEstado();
+            } else if (c instanceof IR.Se) {
+                IR.Se se = (IR.Se) c;
+                Estado entao = novoEstado();
+                Estado senao = se.senao != null ? novoEstado() : null;
+                Estado depois = novoEstado();
+                atual.saida = new Desviar(se.condicao, entao.numero, senao != null ? senao.numero : depois.numero);
+                compilar(se.entao, entao).saida = new Ir(depois.numero);
+                if (senao != null) {
+                    compilar(se.senao, senao).saida = new Ir(depois.numero);
+                }
+                atual = depois;
+            } else if (c instanceof IR.Repita) {
+                IR.Repita r = (IR.Repita) c;
+                String contador = "contador" + capitalizar(nomeTarefa) + "_" + (++contadores);
+                guardar(contador, IR.Tipo.INT);
+                atual.comandos.add(new IR.Atribuicao(contador, new IR.Numero(0)));
+                Estado teste = novoEstado();
+                Estado corpoRepita = novoEstado();
+                Estado depois = novoEstado();
+                atual.saida = new Ir(teste.numero);
+                teste.saida = new Desviar(new IR.Binaria(IR.Operador.MENOR, new IR.Variavel(contador), r.vezes),
+                        corpoRepita.numero, depois.numero);
+                Estado fimCorpo = compilar(r.corpo, corpoRepita);
+                fimCorpo.comandos.add(new IR.Atribuicao(contador,
+                        new IR.Binaria(IR.Operador.SOMA, new IR.Variavel(contador), new IR.Numero(1))));
+                fimCorpo.saida = new Ir(teste.numero);
+                atual = depois;
+            } else if (c instanceof IR.Bloco) {
+                atual = compilar(((IR.Bloco) c).corpo, atual);
+            } else {
+                throw new IllegalArgumentException("Comando sem tradução: " + c.getClass().getSimpleName());
+            }
+        }
+        return atual;
+    }
+
+    private void guardar(String nome, IR.Tipo tipo) {
+        IR.Tipo anterior = variaveis.putIfAbsent(nome, tipo);
+        if (anterior != null && anterior != tipo) {
+            throw new IllegalArgumentException("Execute não pode virar máquina de estados: a variável " + nome
+                    + " é declarada como " + anterior.arduino + " e como " + tipo.arduino);
+        }
+    }
+
+    private static String capitalizar(String s) {
+        return s.isEmpty() ? s : Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    // ------------------------------------------------------------------
+    // Simplificação: atalhos, junção de estados e renumeração
+    // ------------------------------------------------------------------
+
+    private void simplificar() {
+        // Estados vazios que só seguem adiante são pulados
+        for (Estado e : estados) {
+            redirecionar(e.saida);
+        }
+
+        // Um estado que só é alcançado por um Ir vindo de outro é juntado a ele.
+        // Juntar só muda a origem das arestas, então a contagem de entradas continua valendo.
+        boolean[] alcancado = new boolean[estados.size()];
+        marcar(0, alcancado);
+        int[] entradas = contarEntradas(alcancado);
+        for (Estado e : estados) {
+            while (alcancado[e.numero] && e.saida instanceof Ir) {
+                int destino = ((Ir) e.saida).destino;
+                Estado alvo = estados.get(destino);
+                if (alvo == e || destino == 0 || entradas[destino] != 1) {
+                    break;
+                }
+                e.comandos.addAll(alvo.comandos);
+                e.saida = alvo.saida;
+                alvo.comandos.clear();
+                alvo.saida = null;
+                entradas[destino] = 0;
+            }
+        }
+
+        // Remove os inalcançáveis (a partir do estado 0) e renumera na ordem de criação
+        alcancado = new boolean[estados.size()];
+        marcar(0, alcancado);
+        int[] novoNumero = new int[estados.size()];
+        List<Estado> vivos = new ArrayList<>();
+        for (Estado e : estados) {
+            if (alcancado[e.numero]) {
+                novoNumero[e.numero] = vivos.size();
+                vivos.add(e);
+            }
+        }
+        for (Estado e : vivos) {
+            e.numero = novoNumero[e.numero];
+            if (e.saida instanceof Ir) {
+                ((Ir) e.saida).destino = novoNumero[((Ir) e.saida).destino];
+            } else if (e.saida instanceof Esperar) {
+                ((Esperar) e.saida).destino = novoNumero[((Esperar) e.saida).destino];
+            } else if (e.saida instanceof Desviar) {
+                Desviar d = (Desviar) e.saida;
+                d.seVerdade = novoNumero[d.seVerdade];
+                d.seFalso = novoNumero[d.seFalso];
+            }
+        }
+        estados.clear();
+        estados.addAll(vivos);
+    }
+
+    private void redirecionar(Transicao t) {
+        if (t instanceof Ir) {
+            ((Ir) t).destino = atalho(((Ir) t).destino);
+        } else if (t instanceof Esperar) {
+            Esperar e = (Esperar) t;
+            e.destino = atalho(e.destino);
+            // Espere no fim do Execute: a espera já devolve o controle, então volta direto ao início
+            Estado destino = estados.get(e.destino);
+            if (destino.comandos.isEmpty() && destino.saida instanceof Fim) {
+                e.destino = 0;
+            }
+        } else if (t instanceof Desviar) {
+            Desviar d = (Desviar) t;
+            d.seVerdade = atalho(d.seVerdade);
+            d.seFalso = atalho(d.seFalso);
+        }
+    }
+
+    // Segue estados vazios terminados em Ir até um estado com conteúdo (o 0 nunca é pulado)
+    private int atalho(int numero) {
+        int passos = 0;
+        while (numero != 0 && passos++ < estados.size()) {
+            Estado e = estados.get(numero);
+            if (!e.comandos.isEmpty() || !(e.saida instanceof Ir)) {
+                break;
+            }
+            numero = ((Ir) e.saida).destino;
+        }
+        return numero;
+    }
+
+    private int[] contarEntradas(boolean[] alcancado) {
+        int[] entradas = new int[estados.size()];
+        for (Estado e : estados) {
+            if (!alcancado[e.numero]) {
+                continue;
+            }
+            if (e.saida instanceof Ir) {
+                entradas[((Ir) e.saida).destino]++;
+            } else if (e.saida instanceof Esperar) {
+                entradas[((Esperar) e.saida).destino]++;
+            } else if (e.saida instanceof Desviar) {
+                entradas[((Desviar) e.saida).seVerdade]++;
+                entradas[((Desviar) e.saida).seFalso]++;
+            }
+        }
+        return entradas;
+    }
+
+    private void marcar(int inicial, boolean[] alcancado) {
+        List<Integer> pendentes = new ArrayList<>();
+        pendentes.add(inicial);
+        while (!pendentes.isEmpty()) {
+            int n = pendentes.remove(pendentes.size() - 1);
+            if (alcancado[n]) {
+                continue;
+            }
+            alcancado[n] = true;
+            Transicao t = estados.get(n).saida;
+            if (t instanceof Ir) {
+                pendentes.add(((Ir) t).destino);
+            } else if (t instanceof Esperar) {
+                pendentes.add(((Esperar) t).destino);
+            } else if (t instanceof Desviar) {
+                pendentes.add(((Desviar) t).seVerdade);
+                pendentes.add(((Desviar) t).seFalso);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opções de linha de comando comuns aos modos lote e paralelo.
+ */
+public class OpcoesCompilacao {
+    public File pastaSaida;
+    public final List<String> padroes = new ArrayList<>();
+
+    // Modo paralelo
+    public int threads = Runtime.getRuntime().availableProcessors();
+    public boolean virtual = false;
+
+    // Cache de compilação (desligado se pastaCache for null)
+    public File pastaCache;
+    public long limiteCache = CacheCompilacao.LIMITE_PADRAO;
+
+    // Traduz passando pela IR tipada (ConstrutorIR + GeradorIR) em vez do ArduinoVisitor
+    public boolean ir = false;
+    // Dobra constantes e remove ramos mortos na IR (implica -ir)
+    public boolean otimizar = false;
+    // Execute com Espere vira máquina de estados com millis() (implica -ir)
+    public boolean naoBloqueante = false;
+    // pinMode/digitalWrite/digitalRead de pinos constantes direto nos registradores (implica -ir)
+    public boolean portas = false;
+
+    // Placa de destino (-placa uno|mega|nano|perfil.properties), lida por carregarPlaca()
+    public String nomePlaca;
+    public PerfilPlaca placa = PerfilPlaca.UNO;
+
+    // Lê as opções; argumentos que não são opções são entradas. Devolve null
+    // se -t ou -cache-max não tiverem um número positivo.
+    public static OpcoesCompilacao ler(String[] args) {
+        OpcoesCompilacao opcoes = new OpcoesCompilacao();
+        for (int i = 0; i < args.length; i++) {
+            boolean temValor = i + 1 < args.length;
+            if (args[i].equals("-d") && temValor) {
+                opcoes.pastaSaida = new File(args[++i]);
+            } else if (args[i].equals("-t") && temValor) {
+                long threads = lerNumero(args[++i]);
+                if (threads < 1 || threads > Integer.MAX_VALUE) {
+                    return null;
+                }
+                opcoes.threads = (int) threads;
+            } else if (args[i].equals("-virtual")) {
+                opcoes.virtual = true;
+            } else if (args[i].equals("-cache") && temValor) {
+                opcoes.pastaCache = new File(args[++i]);
+            } else if (args[i].equals("-cache-max") && temValor) {
+                long megabytes = lerNumero(args[++i]);
+                if (megabytes < 1 || megabytes > Long.MAX_VALUE / (1024 * 1024)) {
+                    return null;
+                }
+                opcoes.limiteCache = megabytes * 1024 * 1024;
+            } else if (args[i].equals("-ir")) {
+                opcoes.ir = true;
+            } else if (args[i].equals("-nao-bloqueante")) {
+                opcoes.ir = true;
+                opcoes.naoBloqueante = true;
+            } else if (args[i].equals("-portas")) {
+                opcoes.ir = true;
+                opcoes.portas = true;
+            } else if (args[i].equals("-placa") && temValor) {
+                opcoes.nomePlaca = args[++i];
+            } else if (args[i].equals("-O")) {
+                opcoes.ir = true;
+                opcoes.otimizar = true;
+            } else {
+                opcoes.padroes.add(args[i]);
+            }
+        }
+        return opcoes;
+    }
+
+    // Valor numérico de uma opção, ou -1 se não for um número
+    private static long lerNumero(String texto) {
+        try {
+            return Long.parseLong(texto.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Identifica as opções que mudam o código gerado; entra na chave do cache
+    public String assinatura() {
+        StringBuilder sb = new StringBuilder();
+        if (ir) {
+            sb.append("ir");
+        }
+        if (otimizar) {
+            sb.append(",O");
+        }
+        if (naoBloqueante) {
+            sb.append(",nb");
+        }
+        if (portas) {
+            sb.append(",portas");
+        }
+        // Mantém as chaves já gravadas para o Uno
+        if (placa != PerfilPlaca.UNO) {
+            sb.append(",placa=").append(placa.assinatura());
+        }
+        return sb.toString();
+    }
+
+    // Troca o nome dado em -placa pelo perfil; chamado antes de criar os compiladores
+    public void carregarPlaca() throws IOException {
+        if (nomePlaca != null) {
+            placa = PerfilPlaca.ler(nomePlaca);
+        }
+    }
+
+    public CacheCompilacao abrirCache() throws IOException {
+        if (pastaCache == null) {
+            return null;
+        }
+        if (CacheCompilacao.getVersao() == null) {
+            // Sem a versão, uma entrada antiga poderia passar por atual
+            System.err.println("Cache desligado: não foi possível ler as classes do compilador");
+            return null;
+        }
+        return new CacheCompilacao(pastaCache, limiteCache);
+    }
+}
@@ -0,0 +1,306 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passe de otimização sobre a IR: dobra subexpressões formadas só por
+ * literais inteiros e elimina ramos mortos.
+ *
+ * A aritmética segue o C do ATmega328: literais até 32767 são int (16 bits),
+ * maiores são long (32 bits), e cada operação é feita no maior dos dois
+ * tipos. Quando o resultado estouraria um tipo com sinal (comportamento
+ * indefinido em C), divide por zero ou envolve números reais, a expressão é
+ * deixada como está. O valor final de uma inicialização ou atribuição é
+ * convertido para o tipo declarado da variável (byte, unsigned e Boolean).
+ *
+ * Se com condição constante é trocado pelo ramo escolhido (ou removido), e
+ * repita com contagem constante menor ou igual a zero é removido.
+ */
+public class OtimizadorIR {
+    // Tipos inteiros do C no AVR, em ordem de conversão
+    private static final int INT = 16;
+    private static final int LONG = 32;
+
+    // Tipos das variáveis visíveis, um mapa por bloco
+    private final Deque<Map<String, IR.Tipo>> escopos = new ArrayDeque<>();
+
+    public IR.Programa otimizar(IR.Programa programa) {
+        escopos.clear();
+        escopos.push(new HashMap<>());
+        return new IR.Programa(comandos(programa.itens));
+    }
+
+    private List<IR.Comando> comandos(List<IR.Comando> lista) {
+        List<IR.Comando> resultado = new ArrayList<>(lista.size());
+        for (IR.Comando c : lista) {
+            comando(c, resultado);
+        }
+        return resultado;
+    }
+
+    private List<IR.Comando> bloco(List<IR.Comando> lista) {
+        escopos.push(new HashMap<>());
+        try {
+            return comandos(lista);
+        } finally {
+            escopos.pop();
+        }
+    }
+
+    // Adiciona a 'saida' a versão otimizada do comando (nenhum, um ou vários comandos)
+    private void comando(IR.Comando c, List<IR.Comando> saida) {
+        if (c instanceof IR.Setup) {
+            saida.add(new IR.Setup(bloco(((IR.Setup) c).corpo)));
+        } else if (c instanceof IR.Loop) {
+            saida.add(new IR.Loop(bloco(((IR.Loop) c).corpo)));
+        } else if (c instanceof IR.Funcao) {
+            IR.Funcao f = (IR.Funcao) c;
+            escopos.push(new HashMap<>());
+            for (IR.Parametro p : f.parametros) {
+                escopos.peek().put(p.nome, p.tipo);
+            }
+            saida.add(new IR.Funcao(f.nome, f.retorno, f.parametros, bloco(f.corpo)));
+            escopos.pop();
+        } else if (c instanceof IR.DeclaraVariavel) {
+            IR.DeclaraVariavel d = (IR.DeclaraVariavel) c;
+            escopos.peek().put(d.nome, d.tipo);
+            IR.Expr inicial = d.inicial != null ? converter(dobrar(d.inicial), d.tipo) : null;
+            saida.add(new IR.DeclaraVariavel(d.tipo, d.nome, inicial));
+        } else if (c instanceof IR.Atribuicao) {
+            IR.Atribuicao a = (IR.Atribuicao) c;
+            IR.Tipo tipo = tipoDe(a.nome);
+            IR.Expr valor = dobrar(a.valor);
+            saida.add(new IR.Atribuicao(a.nome, tipo != null ? converter(valor, tipo) : valor));
+        } else if (c instanceof IR.Se) {
+            se((IR.Se) c, saida);
+        } else if (c instanceof IR.Repita) {
+            IR.Repita r = (IR.Repita) c;
+            IR.Expr vezes = dobrar(r.vezes);
+            if (vezes instanceof IR.Numero && !((IR.Numero) vezes).real && ((IR.Numero) vezes).inteiro <= 0) {
+                return;
+            }
+            saida.add(new IR.Repita(vezes, bloco(r.corpo)));
+        } else if (c instanceof IR.Bloco) {
+            saida.add(new IR.Bloco(bloco(((IR.Bloco) c).corpo)));
+        } else if (c instanceof IR.EscritaDigital) {
+            IR.EscritaDigital e = (IR.EscritaDigital) c;
+            saida.add(new IR.EscritaDigital(dobrar(e.pino), dobrar(e.valor)));
+        } else if (c instanceof IR.EscritaAnalogica) {
+            IR.EscritaAnalogica e = (IR.EscritaAnalogica) c;
+            saida.add(new IR.EscritaAnalogica(dobrar(e.pino), dobrar(e.valor)));
+        } else if (c instanceof IR.ImprimeSerial) {
+            saida.add(new IR.ImprimeSerial(dobrar(((IR.ImprimeSerial) c).valor)));
+        } else if (c instanceof IR.Retorne) {
+            saida.add(new IR.Retorne(dobrar(((IR.Retorne) c).valor)));
+        } else if (c instanceof IR.ComandoExpressao) {
+            saida.add(new IR.ComandoExpressao(dobrar(((IR.ComandoExpressao) c).expressao)));
+        } else {
+            // ModoPino, IniciaSerial, Espera e Comentario não têm expressões
+            saida.add(c);
+        }
+    }
+
+    private void se(IR.Se se, List<IR.Comando> saida) {
+        IR.Expr condicao = dobrar(se.condicao);
+        if (!(condicao instanceof IR.Numero)) {
+            saida.add(new IR.Se(condicao, bloco(se.entao), se.senao != null ? bloco(se.senao) : null));
+            return;
+        }
+
+        IR.Numero n = (IR.Numero) condicao;
+        boolean verdadeira = n.real ? n.valorReal != 0 : n.inteiro != 0;
+        List<IR.Comando> ramo = verdadeira ? se.entao : se.senao;
+        if (ramo == null) {
+            return;
+        }
+        List<IR.Comando> corpo = bloco(ramo);
+        // Declarações do ramo continuam em um bloco próprio para não colidir com o escopo de fora
+        if (temDeclaracao(corpo)) {
+            saida.add(new IR.Bloco(corpo));
+        } else {
+            saida.addAll(corpo);
+        }
+    }
+
+    private static boolean temDeclaracao(List<IR.Comando> corpo) {
+        for (IR.Comando c : corpo) {
+            if (c instanceof IR.DeclaraVariavel) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private IR.Tipo tipoDe(String nome) {
+        for (Map<String, IR.Tipo> escopo : escopos) {
+            IR.Tipo tipo = escopo.get(nome);
+            if (tipo != null) {
+                return tipo;
+            }
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------
+    // Expressões
+    // ------------------------------------------------------------------
+
+    private IR.Expr dobrar(IR.Expr e) {
+        if (e instanceof IR.Binaria) {
+            IR.Binaria b = (IR.Binaria) e;
+            IR.Expr esquerda = dobrar(b.esquerda);
+            // && e || com o lado esquerdo constante não avaliam o direito
+            if (b.operador == IR.Operador.E && falso(esquerda)) {
+                return new IR.Numero(0);
+            }
+            if (b.operador == IR.Operador.OU && verdadeiro(esquerda)) {
+                return new IR.Numero(1);
+            }
+            IR.Expr direita = dobrar(b.direita);
+            IR.Expr dobrada = binaria(b.operador, esquerda, direita);
+            if (dobrada != null) {
+                return dobrada;
+            }
+            return esquerda == b.esquerda && direita == b.direita ? b : new IR.Binaria(b.operador, esquerda, direita);
+        }
+        if (e instanceof IR.Unaria) {
+            IR.Unaria u = (IR.Unaria) e;
+            IR.Expr operando = dobrar(u.operando);
+            IR.Expr dobrada = unaria(u.operador, operando);
+            if (dobrada != null) {
+                return dobrada;
+            }
+            return operando == u.operando ? u : new IR.Unaria(u.operador, operando);
+        }
+        if (e instanceof IR.Chamada) {
+            IR.Chamada ch = (IR.Chamada) e;
+            List<IR.Expr> argumentos = new ArrayList<>(ch.argumentos.size());
+            for (IR.Expr argumento : ch.argumentos) {
+                argumentos.add(dobrar(argumento));
+            }
+            return new IR.Chamada(ch.nome, argumentos);
+        }
+        if (e instanceof IR.Leitura) {
+            IR.Leitura l = (IR.Leitura) e;
+            return new IR.Leitura(dobrar(l.pino), l.analogica);
+        }
+        return e;
+    }
+
+    // Tipo C de uma constante inteira (INT ou LONG), ou 0 se não for uma constante dobrável
+    private static int tipoInteiro(IR.Expr e) {
+        if (!(e instanceof IR.Numero) || ((IR.Numero) e).real) {
+            return 0;
+        }
+        IR.Numero n = (IR.Numero) e;
+        if (n.texto.endsWith("L") || !cabe(n.inteiro, INT)) {
+            return cabe(n.inteiro, LONG) ? LONG : 0;
+        }
+        return INT;
+    }
+
+    private static boolean cabe(long valor, int bits) {
+        long limite = 1L << (bits - 1);
+        return valor >= -limite && valor < limite;
+    }
+
+    private static boolean falso(IR.Expr e) {
+        return tipoInteiro(e) != 0 && ((IR.Numero) e).inteiro == 0;
+    }
+
+    private static boolean verdadeiro(IR.Expr e) {
+        return tipoInteiro(e) != 0 && ((IR.Numero) e).inteiro != 0;
+    }
+
+    private static IR.Expr binaria(IR.Operador operador, IR.Expr esquerda, IR.Expr direita) {
+        int tipoEsquerda = tipoInteiro(esquerda);
+        int tipoDireita = tipoInteiro(direita);
+        if (tipoEsquerda == 0 || tipoDireita == 0) {
+            return null;
+        }
+        long a = ((IR.Numero) esquerda).inteiro;
+        long b = ((IR.Numero) direita).inteiro;
+        int tipo = Math.max(tipoEsquerda, tipoDireita);
+
+        long valor;
+        switch (operador) {
+            case SOMA: valor = a + b; break;
+            case SUBTRACAO: valor = a - b; break;
+            case MULTIPLICACAO: valor = a * b; break;
+            case DIVISAO:
+                if (b == 0) {
+                    return null;
+                }
+                valor = a / b;
+                break;
+            case RESTO:
+                if (b == 0) {
+                    return null;
+                }
+                valor = a % b;
+                break;
+            // Comparações e operadores lógicos resultam em int 0 ou 1
+            case IGUAL: return booleano(a == b);
+            case DIFERENTE: return booleano(a != b);
+            case MENOR: return booleano(a < b);
+            case MAIOR: return booleano(a > b);
+            case MENOR_IGUAL: return booleano(a <= b);
+            case MAIOR_IGUAL: return booleano(a >= b);
+            case E: return booleano(a != 0 && b != 0);
+            case OU: return booleano(a != 0 || b != 0);
+            default: return null;
+        }
+        return constante(valor, tipo);
+    }
+
+    private static IR.Expr unaria(IR.OperadorUnario operador, IR.Expr operando) {
+        int tipo = tipoInteiro(operando);
+        if (tipo == 0) {
+            return null;
+        }
+        long a = ((IR.Numero) operando).inteiro;
+        switch (operador) {
+            case MAIS: return constante(a, tipo);
+            case MENOS: return constante(-a, tipo);
+            case NAO: return booleano(a == 0);
+            case COMPLEMENTO: return constante(~a, tipo);
+            default: return null;
+        }
+    }
+
+    private static IR.Numero booleano(boolean valor) {
+        return new IR.Numero(valor ? 1 : 0);
+    }
+
+    // Constante do tipo dado, ou null se estourar o tipo (deixa a expressão original)
+    private static IR.Numero constante(long valor, int tipo) {
+        if (!cabe(valor, tipo)) {
+            return null;
+        }
+        // -32768 escrito como literal seria -(32768), que já é long
+        if (tipo == INT && valor == Short.MIN_VALUE) {
+            return null;
+        }
+        return new IR.Numero(valor, tipo == LONG);
+    }
+
+    // Converte uma constante inteira para o tipo declarado da variável que a recebe
+    private static IR.Expr converter(IR.Expr valor, IR.Tipo destino) {
+        if (tipoInteiro(valor) == 0) {
+            return valor;
+        }
+        long v = ((IR.Numero) valor).inteiro;
+        switch (destino) {
+            case BYTE: return new IR.Numero(v & 0xFFL);
+            case UNSIGNED_INT: return new IR.Numero(v & 0xFFFFL);
+            case UNSIGNED_LONG: return new IR.Numero(v & 0xFFFFFFFFL);
+            case BOOLEAN: return booleano(v != 0);
+            default:
+                // Nos tipos com sinal o compilador faz a mesma conversão a partir do literal
+                return valor;
+        }
+    }
+}
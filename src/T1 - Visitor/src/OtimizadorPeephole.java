@@ -0,0 +1,554 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Passe de janela (peephole) sobre a IR, aplicado com -O depois do
+ * OtimizadorIR e antes da geração.
+ *
+ * - Um pinMode no nível de cima de um Execute sobe para o setup() quando não
+ *   depende da iteração: nenhum outro pinMode (ou analogWrite) fora do Config
+ *   muda o modo desse pino, nenhum outro Execute nem funcao usa o pino e o
+ *   próprio Execute não o usa antes do pinMode. Um pinMode INPUT não sobe se
+ *   o programa escreve no pino: o digitalWrite liga o pull-up, e é o pinMode
+ *   de cada volta que o desliga antes da leitura.
+ * - Um digitalWrite de constante em um pino que já tem esse valor, e um
+ *   pinMode que repete o modo atual, são removidos; um pinMode INPUT depois
+ *   de um digitalWrite no pino não conta como repetido. O estado dos pinos segue
+ *   o fluxo do programa: depois de um se fica o que os dois ramos garantem,
+ *   e um repita (ou o loop()) só conserva o que o próprio corpo não altera.
+ * - Espere seguidos viram um só.
+ *
+ * Chamadas de função, pinos calculados e Serial.begin() fazem o passe
+ * esquecer o que sabia dos pinos. Com vários Execute, cada Espere também
+ * esquece os pinos que as outras tarefas alteram, porque elas rodam durante
+ * a espera.
+ */
+public class OtimizadorPeephole {
+    // Bits devolvidos por usos(): o que impede de saber todos os pinos usados
+    private static final int CHAMADA = 1;
+    private static final int PINO_CALCULADO = 2;
+
+    // Placa de destino: An e o pino digital correspondente são o mesmo pino
+    private PerfilPlaca placa = PerfilPlaca.UNO;
+    // Pinos alterados pelas tarefas (só com vários Execute); null com um só
+    private Alteracoes tarefas;
+
+    public void setPlaca(PerfilPlaca placa) {
+        this.placa = placa;
+    }
+
+    // O que se sabe dos pinos em um ponto do programa
+    private static final class Pinos {
+        // Último valor escrito com digitalWrite (true = HIGH)
+        final Map<Integer, Boolean> nivel = new HashMap<>();
+        // Último pinMode (true = OUTPUT)
+        final Map<Integer, Boolean> modo = new HashMap<>();
+
+        Pinos copia() {
+            Pinos p = new Pinos();
+            p.nivel.putAll(nivel);
+            p.modo.putAll(modo);
+            return p;
+        }
+
+        void esquecer(int pino) {
+            nivel.remove(pino);
+            modo.remove(pino);
+        }
+
+        void esquecer(Alteracoes a) {
+            if (a.tudo) {
+                nivel.clear();
+                modo.clear();
+            } else {
+                for (int pino : a.pinos) {
+                    esquecer(pino);
+                }
+            }
+        }
+
+        void esquecerTudo() {
+            nivel.clear();
+            modo.clear();
+        }
+
+        // Fica só o que vale também em 'outro' (junção de dois caminhos)
+        void manterIguais(Pinos outro) {
+            nivel.entrySet().removeIf(e -> !e.getValue().equals(outro.nivel.get(e.getKey())));
+            modo.entrySet().removeIf(e -> !e.getValue().equals(outro.modo.get(e.getKey())));
+        }
+
+        void trocarPor(Pinos outro) {
+            nivel.clear();
+            nivel.putAll(outro.nivel);
+            modo.clear();
+            modo.putAll(outro.modo);
+        }
+    }
+
+    // Pinos que um trecho pode alterar; 'tudo' quando não dá para saber
+    private static final class Alteracoes {
+        final Set<Integer> pinos = new HashSet<>();
+        boolean tudo;
+
+        void juntar(Alteracoes outra) {
+            pinos.addAll(outra.pinos);
+            tudo |= outra.tudo;
+        }
+    }
+
+    public IR.Programa otimizar(IR.Programa programa) {
+        List<IR.Comando> itens = subirPinMode(programa.itens);
+
+        List<IR.Loop> loops = new ArrayList<>();
+        for (IR.Comando item : itens) {
+            if (item instanceof IR.Loop) {
+                loops.add((IR.Loop) item);
+            }
+        }
+        // Alterações de todas as tarefas juntas: valem no início de cada passada do loop()
+        tarefas = null;
+        Alteracoes dosLoops = new Alteracoes();
+        for (IR.Loop l : loops) {
+            alteracoes(l.corpo, dosLoops);
+        }
+        if (loops.size() > 1) {
+            tarefas = dosLoops;
+        }
+
+        // O setup() roda antes de qualquer loop(), seja qual for a ordem no fonte
+        List<IR.Comando> resultado = new ArrayList<>(itens);
+        Pinos pinos = new Pinos();
+        for (int i = 0; i < resultado.size(); i++) {
+            if (resultado.get(i) instanceof IR.Setup) {
+                resultado.set(i, new IR.Setup(juntarEsperas(fluxo(((IR.Setup) resultado.get(i)).corpo, pinos))));
+            }
+        }
+        pinos.esquecer(dosLoops);
+        for (int i = 0; i < resultado.size(); i++) {
+            IR.Comando item = resultado.get(i);
+            if (item instanceof IR.Loop) {
+                resultado.set(i, new IR.Loop(juntarEsperas(fluxo(((IR.Loop) item).corpo, pinos.copia()))));
+            } else if (item instanceof IR.Funcao) {
+                IR.Funcao f = (IR.Funcao) item;
+                resultado.set(i, new IR.Funcao(f.nome, f.retorno, f.parametros, juntarEsperas(fluxo(f.corpo, new Pinos()))));
+            }
+        }
+        return new IR.Programa(resultado);
+    }
+
+    // ------------------------------------------------------------------
+    // pinMode do loop() para o setup()
+    // ------------------------------------------------------------------
+
+    private List<IR.Comando> subirPinMode(List<IR.Comando> itens) {
+        // Modo de cada pino fora do Config; pinos com dois modos diferentes não sobem
+        Map<Integer, Boolean> modos = new HashMap<>();
+        Set<Integer> conflitos = new HashSet<>();
+        // Pinos que recebem digitalWrite fora do Config (null: algum pino calculado)
+        Set<Integer> escritos = new HashSet<>();
+        List<IR.Loop> loops = new ArrayList<>();
+        List<Set<Integer>> usosLoops = new ArrayList<>();
+        List<Integer> flagsLoops = new ArrayList<>();
+        Set<Integer> usosFuncoes = new HashSet<>();
+        int flagsFuncoes = 0;
+        for (IR.Comando item : itens) {
+            if (item instanceof IR.Loop) {
+                loops.add((IR.Loop) item);
+                Set<Integer> usos = new HashSet<>();
+                flagsLoops.add(usos(((IR.Loop) item).corpo, usos));
+                usosLoops.add(usos);
+                escritos = modos(((IR.Loop) item).corpo, modos, conflitos, escritos);
+            } else if (item instanceof IR.Funcao) {
+                flagsFuncoes |= usos(((IR.Funcao) item).corpo, usosFuncoes);
+                escritos = modos(((IR.Funcao) item).corpo, modos, conflitos, escritos);
+            }
+        }
+        for (Map.Entry<Integer, Boolean> m : modos.entrySet()) {
+            if (!m.getValue() && (escritos == null || escritos.contains(m.getKey()))) {
+                conflitos.add(m.getKey());
+            }
+        }
+        if (loops.isEmpty()) {
+            return itens;
+        }
+
+        List<IR.Comando> subidos = new ArrayList<>();
+        Map<IR.Loop, IR.Loop> novos = new HashMap<>();
+        for (int l = 0; l < loops.size(); l++) {
+            // Pinos usados pelo resto do programa, fora do Config e deste Execute
+            Set<Integer> fora = new HashSet<>(usosFuncoes);
+            boolean foraCalculado = (flagsFuncoes & PINO_CALCULADO) != 0;
+            for (int o = 0; o < loops.size(); o++) {
+                if (o != l) {
+                    fora.addAll(usosLoops.get(o));
+                    foraCalculado |= (flagsLoops.get(o) & PINO_CALCULADO) != 0;
+                }
+            }
+            if (foraCalculado) {
+                continue;
+            }
+
+            List<IR.Comando> corpo = new ArrayList<>();
+            Set<Integer> usados = new HashSet<>();
+            boolean opaco = false;
+            for (IR.Comando c : loops.get(l).corpo) {
+                if (c instanceof IR.ModoPino && !opaco) {
+                    int pino = pino(((IR.ModoPino) c).pino);
+                    if (!usados.contains(pino) && !conflitos.contains(pino) && !fora.contains(pino)) {
+                        subidos.add(c);
+                        usados.add(pino);
+                        continue;
+                    }
+                }
+                opaco |= usos(c, usados) != 0;
+                corpo.add(c);
+            }
+            if (corpo.size() != loops.get(l).corpo.size()) {
+                novos.put(loops.get(l), new IR.Loop(corpo));
+            }
+        }
+        if (subidos.isEmpty()) {
+            return itens;
+        }
+
+        List<IR.Comando> resultado = new ArrayList<>(itens.size() + 1);
+        boolean noSetup = false;
+        for (IR.Comando item : itens) {
+            if (item instanceof IR.Setup && !noSetup) {
+                List<IR.Comando> corpo = new ArrayList<>(((IR.Setup) item).corpo);
+                corpo.addAll(subidos);
+                item = new IR.Setup(corpo);
+                noSetup = true;
+            } else if (item instanceof IR.Loop) {
+                if (!noSetup) {
+                    // Programa sem Config: o setup() passa a existir só com os pinMode
+                    resultado.add(new IR.Setup(subidos));
+                    noSetup = true;
+                }
+                item = novos.getOrDefault(item, (IR.Loop) item);
+            }
+            resultado.add(item);
+        }
+        return resultado;
+    }
+
+    // Registra o modo que cada pinMode (ou analogWrite, que põe o pino em OUTPUT) define
+    // e os pinos de cada digitalWrite; devolve 'escritos', ou null se um pino for calculado
+    private Set<Integer> modos(List<IR.Comando> corpo, Map<Integer, Boolean> modos, Set<Integer> conflitos,
+            Set<Integer> escritos) {
+        for (IR.Comando c : corpo) {
+            if (c instanceof IR.EscritaDigital) {
+                IR.Expr pino = ((IR.EscritaDigital) c).pino;
+                if (!(pino instanceof IR.Pino)) {
+                    escritos = null;
+                } else if (escritos != null) {
+                    escritos.add(pino((IR.Pino) pino));
+                }
+            } else if (c instanceof IR.ModoPino) {
+                IR.ModoPino m = (IR.ModoPino) c;
+                modo(pino(m.pino), m.saida, modos, conflitos);
+            } else if (c instanceof IR.EscritaAnalogica && ((IR.EscritaAnalogica) c).pino instanceof IR.Pino) {
+                modo(pino((IR.Pino) ((IR.EscritaAnalogica) c).pino), true, modos, conflitos);
+            } else if (c instanceof IR.Se) {
+                IR.Se se = (IR.Se) c;
+                escritos = modos(se.entao, modos, conflitos, escritos);
+                if (se.senao != null) {
+                    escritos = modos(se.senao, modos, conflitos, escritos);
+                }
+            } else if (c instanceof IR.Repita) {
+                escritos = modos(((IR.Repita) c).corpo, modos, conflitos, escritos);
+            } else if (c instanceof IR.Bloco) {
+                escritos = modos(((IR.Bloco) c).corpo, modos, conflitos, escritos);
+            }
+        }
+        return escritos;
+    }
+
+    private static void modo(int pino, boolean saida, Map<Integer, Boolean> modos, Set<Integer> conflitos) {
+        Boolean anterior = modos.putIfAbsent(pino, saida);
+        if (anterior != null && anterior != saida) {
+            conflitos.add(pino);
+        }
+    }
+
+    // Acrescenta a 'usados' os pinos citados; devolve CHAMADA e PINO_CALCULADO conforme o que encontrar
+    private int usos(List<IR.Comando> corpo, Set<Integer> usados) {
+        int flags = 0;
+        for (IR.Comando c : corpo) {
+            flags |= usos(c, usados);
+        }
+        return flags;
+    }
+
+    private int usos(IR.Comando c, Set<Integer> usados) {
+        if (c instanceof IR.ModoPino) {
+            usados.add(pino(((IR.ModoPino) c).pino));
+            return 0;
+        }
+        if (c instanceof IR.EscritaDigital) {
+            IR.EscritaDigital e = (IR.EscritaDigital) c;
+            return usosPino(e.pino, usados) | usos(e.valor, usados);
+        }
+        if (c instanceof IR.EscritaAnalogica) {
+            IR.EscritaAnalogica e = (IR.EscritaAnalogica) c;
+            return usosPino(e.pino, usados) | usos(e.valor, usados);
+        }
+        if (c instanceof IR.Se) {
+            IR.Se se = (IR.Se) c;
+            int flags = usos(se.condicao, usados) | usos(se.entao, usados);
+            return se.senao != null ? flags | usos(se.senao, usados) : flags;
+        }
+        if (c instanceof IR.Repita) {
+            return usos(((IR.Repita) c).vezes, usados) | usos(((IR.Repita) c).corpo, usados);
+        }
+        if (c instanceof IR.Bloco) {
+            return usos(((IR.Bloco) c).corpo, usados);
+        }
+        IR.Expr e = expressao(c);
+        return e != null ? usos(e, usados) : 0;
+    }
+
+    private int usos(IR.Expr e, Set<Integer> usados) {
+        if (e instanceof IR.Pino) {
+            usados.add(pino((IR.Pino) e));
+            return 0;
+        }
+        if (e instanceof IR.Leitura) {
+            return usosPino(((IR.Leitura) e).pino, usados);
+        }
+        if (e instanceof IR.Binaria) {
+            return usos(((IR.Binaria) e).esquerda, usados) | usos(((IR.Binaria) e).direita, usados);
+        }
+        if (e instanceof IR.Unaria) {
+            return usos(((IR.Unaria) e).operando, usados);
+        }
+        if (e instanceof IR.Chamada) {
+            int flags = CHAMADA;
+            for (IR.Expr argumento : ((IR.Chamada) e).argumentos) {
+                flags |= usos(argumento, usados);
+            }
+            return flags;
+        }
+        return 0;
+    }
+
+    private int usosPino(IR.Expr pino, Set<Integer> usados) {
+        if (pino instanceof IR.Pino) {
+            usados.add(pino((IR.Pino) pino));
+            return 0;
+        }
+        return PINO_CALCULADO | usos(pino, usados);
+    }
+
+    // ------------------------------------------------------------------
+    // Escritas e pinMode redundantes
+    // ------------------------------------------------------------------
+
+    // Pinos que o trecho pode alterar (usado em repita e no início do loop())
+    private void alteracoes(List<IR.Comando> corpo, Alteracoes a) {
+        for (IR.Comando c : corpo) {
+            if (c instanceof IR.ModoPino) {
+                a.pinos.add(pino(((IR.ModoPino) c).pino));
+            } else if (c instanceof IR.EscritaDigital || c instanceof IR.EscritaAnalogica) {
+                IR.Expr pino = c instanceof IR.EscritaDigital ? ((IR.EscritaDigital) c).pino : ((IR.EscritaAnalogica) c).pino;
+                IR.Expr valor = c instanceof IR.EscritaDigital ? ((IR.EscritaDigital) c).valor : ((IR.EscritaAnalogica) c).valor;
+                if (pino instanceof IR.Pino) {
+                    a.pinos.add(pino((IR.Pino) pino));
+                } else {
+                    a.tudo = true;
+                }
+                a.tudo |= temChamada(valor);
+            } else if (c instanceof IR.IniciaSerial) {
+                a.tudo = true;
+            } else if (c instanceof IR.Espera) {
+                if (tarefas != null) {
+                    a.juntar(tarefas);
+                }
+            } else if (c instanceof IR.Se) {
+                IR.Se se = (IR.Se) c;
+                a.tudo |= temChamada(se.condicao);
+                alteracoes(se.entao, a);
+                if (se.senao != null) {
+                    alteracoes(se.senao, a);
+                }
+            } else if (c instanceof IR.Repita) {
+                a.tudo |= temChamada(((IR.Repita) c).vezes);
+                alteracoes(((IR.Repita) c).corpo, a);
+            } else if (c instanceof IR.Bloco) {
+                alteracoes(((IR.Bloco) c).corpo, a);
+            } else {
+                a.tudo |= temChamada(expressao(c));
+            }
+        }
+    }
+
+    // Nova lista sem os comandos redundantes; 'pinos' sai com o estado no fim do trecho
+    private List<IR.Comando> fluxo(List<IR.Comando> corpo, Pinos pinos) {
+        List<IR.Comando> saida = new ArrayList<>(corpo.size());
+        for (IR.Comando c : corpo) {
+            if (c instanceof IR.ModoPino) {
+                IR.ModoPino m = (IR.ModoPino) c;
+                int pino = pino(m.pino);
+                if (Boolean.valueOf(m.saida).equals(pinos.modo.get(pino))) {
+                    continue;
+                }
+                pinos.esquecer(pino);
+                pinos.modo.put(pino, m.saida);
+                saida.add(c);
+            } else if (c instanceof IR.EscritaDigital) {
+                IR.EscritaDigital e = (IR.EscritaDigital) c;
+                if (!(e.pino instanceof IR.Pino) || temChamada(e.valor)) {
+                    pinos.esquecerTudo();
+                    saida.add(c);
+                    continue;
+                }
+                int pino = pino((IR.Pino) e.pino);
+                Boolean nivel = constante(e.valor);
+                if (nivel != null && nivel.equals(pinos.nivel.get(pino))) {
+                    continue;
+                }
+                // Em um pino de entrada o digitalWrite mexe no pull-up, que só
+                // um novo pinMode INPUT desliga: esse pinMode deixa de ser repetido
+                if (!Boolean.TRUE.equals(pinos.modo.get(pino))) {
+                    pinos.modo.remove(pino);
+                }
+                if (nivel != null) {
+                    pinos.nivel.put(pino, nivel);
+                } else {
+                    pinos.nivel.remove(pino);
+                }
+                saida.add(c);
+            } else if (c instanceof IR.EscritaAnalogica) {
+                IR.EscritaAnalogica e = (IR.EscritaAnalogica) c;
+                if (!(e.pino instanceof IR.Pino) || temChamada(e.valor)) {
+                    pinos.esquecerTudo();
+                } else {
+                    pinos.esquecer(pino((IR.Pino) e.pino));
+                }
+                saida.add(c);
+            } else if (c instanceof IR.IniciaSerial) {
+                pinos.esquecerTudo();
+                saida.add(c);
+            } else if (c instanceof IR.Espera) {
+                if (tarefas != null) {
+                    pinos.esquecer(tarefas);
+                }
+                saida.add(c);
+            } else if (c instanceof IR.Se) {
+                IR.Se se = (IR.Se) c;
+                if (temChamada(se.condicao)) {
+                    pinos.esquecerTudo();
+                }
+                Pinos entao = pinos.copia();
+                Pinos senao = pinos.copia();
+                List<IR.Comando> corpoEntao = fluxo(se.entao, entao);
+                List<IR.Comando> corpoSenao = se.senao != null ? fluxo(se.senao, senao) : null;
+                pinos.trocarPor(entao);
+                pinos.manterIguais(senao);
+                saida.add(new IR.Se(se.condicao, corpoEntao, corpoSenao));
+            } else if (c instanceof IR.Repita) {
+                IR.Repita r = (IR.Repita) c;
+                if (temChamada(r.vezes)) {
+                    pinos.esquecerTudo();
+                }
+                // No início de cada volta só vale o que o corpo não altera
+                Alteracoes a = new Alteracoes();
+                alteracoes(r.corpo, a);
+                pinos.esquecer(a);
+                Pinos depois = pinos.copia();
+                saida.add(new IR.Repita(r.vezes, fluxo(r.corpo, depois)));
+                pinos.manterIguais(depois);
+            } else if (c instanceof IR.Bloco) {
+                saida.add(new IR.Bloco(fluxo(((IR.Bloco) c).corpo, pinos)));
+            } else {
+                if (temChamada(expressao(c))) {
+                    pinos.esquecerTudo();
+                }
+                saida.add(c);
+            }
+        }
+        return saida;
+    }
+
+    // Valor de uma escrita constante (true = HIGH), ou null se não for constante
+    private static Boolean constante(IR.Expr valor) {
+        if (valor instanceof IR.Numero && !((IR.Numero) valor).real) {
+            return ((IR.Numero) valor).inteiro != 0;
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------
+    // Espere seguidos
+    // ------------------------------------------------------------------
+
+    private static List<IR.Comando> juntarEsperas(List<IR.Comando> corpo) {
+        List<IR.Comando> saida = new ArrayList<>(corpo.size());
+        for (IR.Comando c : corpo) {
+            if (c instanceof IR.Espera && !saida.isEmpty() && saida.get(saida.size() - 1) instanceof IR.Espera) {
+                IR.Espera anterior = (IR.Espera) saida.remove(saida.size() - 1);
+                saida.add(new IR.Espera(anterior.ms + ((IR.Espera) c).ms));
+            } else if (c instanceof IR.Se) {
+                IR.Se se = (IR.Se) c;
+                saida.add(new IR.Se(se.condicao, juntarEsperas(se.entao), se.senao != null ? juntarEsperas(se.senao) : null));
+            } else if (c instanceof IR.Repita) {
+                saida.add(new IR.Repita(((IR.Repita) c).vezes, juntarEsperas(((IR.Repita) c).corpo)));
+            } else if (c instanceof IR.Bloco) {
+                saida.add(new IR.Bloco(juntarEsperas(((IR.Bloco) c).corpo)));
+            } else {
+                saida.add(c);
+            }
+        }
+        return saida;
+    }
+
+    // ------------------------------------------------------------------
+    // Auxiliares
+    // ------------------------------------------------------------------
+
+    // Número digital do pino na placa (A0 e 14 são o mesmo pino no Uno)
+    private int pino(IR.Pino p) {
+        return p.analogico ? placa.pinoDoCanal(p.numero) : p.numero;
+    }
+
+    // Expressão de um comando simples (null se não tiver)
+    private static IR.Expr expressao(IR.Comando c) {
+        if (c instanceof IR.DeclaraVariavel) {
+            return ((IR.DeclaraVariavel) c).inicial;
+        }
+        if (c instanceof IR.Atribuicao) {
+            return ((IR.Atribuicao) c).valor;
+        }
+        if (c instanceof IR.ImprimeSerial) {
+            return ((IR.ImprimeSerial) c).valor;
+        }
+        if (c instanceof IR.Retorne) {
+            return ((IR.Retorne) c).valor;
+        }
+        if (c instanceof IR.ComandoExpressao) {
+            return ((IR.ComandoExpressao) c).expressao;
+        }
+        return null;
+    }
+
+    private static boolean temChamada(IR.Expr e) {
+        if (e instanceof IR.Chamada) {
+            return true;
+        }
+        if (e instanceof IR.Binaria) {
+            return temChamada(((IR.Binaria) e).esquerda) || temChamada(((IR.Binaria) e).direita);
+        }
+        if (e instanceof IR.Unaria) {
+            return temChamada(((IR.Unaria) e).operando);
+        }
+        if (e instanceof IR.Leitura) {
+            return temChamada(((IR.Leitura) e).pino);
+        }
+        return false;
+    }
+}
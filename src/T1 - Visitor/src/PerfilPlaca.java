@@ -0,0 +1,242 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Perfil da placa de destino: quais pinos existem e o que cada um sabe fazer.
+ *
+ * As capacidades ficam em uma tabela indexada pelo número do pino (bits
+ * DIGITAL, PWM e ANALOGICO), montada uma vez quando o perfil é criado, então
+ * o parser valida um pino e o gerador converte An no número digital com um
+ * acesso a vetor. Os perfis UNO, MEGA e NANO vêm prontos; outros podem ser
+ * lidos de um arquivo .properties com as chaves
+ *
+ *   nome=...
+ *   digitais=14             pinos numerados 0..digitais-1
+ *   analogicos=6            canais A0..A(analogicos-1)
+ *   primeiroAnalogico=14    número digital de A0
+ *   pwm=3,5,6,9,10,11
+ *   soAnalogicos=6,7        canais que não servem como pino digital (opcional)
+ *   portas=D0,D1,...,B5,C0  porta e bit de cada pino, na ordem dos números (opcional;
+ *                           "-" para um pino sem porta). Sem essa chave, -portas
+ *                           continua usando digitalWrite/digitalRead
+ *   custo.analogRead=112    custos usados por -estimar (opcional; veja CustosPlaca)
+ *
+ * O mesmo formato é aceito pelo utils.BoardProfile do T3.
+ */
+public final class PerfilPlaca {
+    public static final int DIGITAL = 1;
+    public static final int PWM = 2;
+    public static final int ANALOGICO = 4;
+    // Canal analógico que também pode ser lido/escrito como digital
+    public static final int ANALOGICO_DIGITAL = 8;
+
+    // Porta e bit de cada pino no ATmega328P (Uno e Nano) e no ATmega2560 (Mega)
+    private static final String PORTAS_328P = "D0,D1,D2,D3,D4,D5,D6,D7,B0,B1,B2,B3,B4,B5,C0,C1,C2,C3,C4,C5";
+    private static final String PORTAS_2560 = "E0,E1,E4,E5,G5,E3,H3,H4,H5,H6,B4,B5,B6,B7,J1,J0,H1,H0,D3,D2,"
+            + "D1,D0,A0,A1,A2,A3,A4,A5,A6,A7,C7,C6,C5,C4,C3,C2,C1,C0,D7,G2,G1,G0,L7,L6,L5,L4,L3,L2,L1,L0,"
+            + "B3,B2,B1,B0,F0,F1,F2,F3,F4,F5,F6,F7,K0,K1,K2,K3,K4,K5,K6,K7";
+
+    public static final PerfilPlaca UNO = new PerfilPlaca("uno", 14, 6, 14,
+            new int[] {3, 5, 6, 9, 10, 11}, new int[0], PORTAS_328P);
+    public static final PerfilPlaca NANO = new PerfilPlaca("nano", 14, 8, 14,
+            new int[] {3, 5, 6, 9, 10, 11}, new int[] {6, 7}, PORTAS_328P);
+    public static final PerfilPlaca MEGA = new PerfilPlaca("mega", 54, 16, 54,
+            new int[] {2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 44, 45, 46}, new int[0], PORTAS_2560);
+
+    private final String nome;
+    private final int digitais;
+    private final int analogicos;
+    private final int primeiroAnalogico;
+    // Bits de capacidade por número de pino
+    private final byte[] capacidades;
+    // Lista dos pinos PWM para as mensagens de erro ("3,5,6,9,10 ou 11")
+    private final String descricaoPwm;
+    // Porta de cada pino ('B' para PORTB) e o bit dentro dela; 0 sem porta conhecida
+    private final char[] portas;
+    private final byte[] bits;
+    // Custos das operações para o EstimadorTempo; só um perfil lido de arquivo troca os padrões
+    private CustosPlaca custos = CustosPlaca.AVR_16MHZ;
+
+    public PerfilPlaca(String nome, int digitais, int analogicos, int primeiroAnalogico, int[] pwm, int[] soAnalogicos) {
+        this(nome, digitais, analogicos, primeiroAnalogico, pwm, soAnalogicos, null);
+    }
+
+    public PerfilPlaca(String nome, int digitais, int analogicos, int primeiroAnalogico, int[] pwm, int[] soAnalogicos,
+            String portas) {
+        if (digitais < 1 || analogicos < 0 || primeiroAnalogico < 0) {
+            throw new IllegalArgumentException("Perfil de placa inválido: " + nome);
+        }
+        this.nome = nome;
+        this.digitais = digitais;
+        this.analogicos = analogicos;
+        this.primeiroAnalogico = primeiroAnalogico;
+        capacidades = new byte[Math.max(digitais, primeiroAnalogico + analogicos)];
+
+        for (int p = 0; p < digitais; p++) {
+            capacidades[p] |= DIGITAL;
+        }
+        for (int c = 0; c < analogicos; c++) {
+            capacidades[primeiroAnalogico + c] |= ANALOGICO | ANALOGICO_DIGITAL;
+        }
+        for (int c : soAnalogicos) {
+            if (c < 0 || c >= analogicos) {
+                throw new IllegalArgumentException("Canal analógico inexistente no perfil " + nome + ": A" + c);
+            }
+            capacidades[primeiroAnalogico + c] &= ~ANALOGICO_DIGITAL;
+        }
+        StringBuilder descricao = new StringBuilder();
+        for (int i = 0; i < pwm.length; i++) {
+            int p = pwm[i];
+            if (p < 0 || p >= digitais) {
+                throw new IllegalArgumentException("Pino PWM inexistente no perfil " + nome + ": " + p);
+            }
+            capacidades[p] |= PWM;
+            if (i > 0) {
+                descricao.append(i == pwm.length - 1 ? " ou " : ",");
+            }
+            descricao.append(p);
+        }
+        descricaoPwm = descricao.toString();
+
+        this.portas = new char[capacidades.length];
+        this.bits = new byte[capacidades.length];
+        if (portas != null && !portas.trim().isEmpty()) {
+            String[] partes = portas.split(",");
+            if (partes.length > capacidades.length) {
+                throw new IllegalArgumentException("Perfil " + nome + " tem mais portas do que pinos");
+            }
+            for (int p = 0; p < partes.length; p++) {
+                String parte = partes[p].trim();
+                if (parte.equals("-")) {
+                    continue;
+                }
+                if (parte.length() != 2 || parte.charAt(0) < 'A' || parte.charAt(0) > 'L'
+                        || parte.charAt(1) < '0' || parte.charAt(1) > '7') {
+                    throw new IllegalArgumentException("Porta inválida no perfil " + nome + " para o pino " + p + ": " + parte);
+                }
+                this.portas[p] = parte.charAt(0);
+                this.bits[p] = (byte) (parte.charAt(1) - '0');
+            }
+        }
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public int getDigitais() {
+        return digitais;
+    }
+
+    public int getAnalogicos() {
+        return analogicos;
+    }
+
+    public String getDescricaoPwm() {
+        return descricaoPwm;
+    }
+
+    private boolean tem(int pino, int capacidade) {
+        return pino >= 0 && pino < capacidades.length && (capacidades[pino] & capacidade) != 0;
+    }
+
+    // Pino numerado aceito em Entrada/Saida, Leia e Escreva
+    public boolean ehDigital(int pino) {
+        return tem(pino, DIGITAL);
+    }
+
+    public boolean ehPwm(int pino) {
+        return tem(pino, PWM);
+    }
+
+    public boolean ehCanalAnalogico(int canal) {
+        return canal >= 0 && canal < analogicos;
+    }
+
+    // O canal An também pode ser usado com pinMode/digitalWrite
+    public boolean canalAceitaDigital(int canal) {
+        return ehCanalAnalogico(canal) && tem(primeiroAnalogico + canal, ANALOGICO_DIGITAL);
+    }
+
+    // O pino tem porta conhecida e pode ser lido e escrito direto nos registradores
+    public boolean temPorta(int pino) {
+        return pino >= 0 && pino < portas.length && portas[pino] != 0;
+    }
+
+    // Letra da porta do pino (PORTB, PINB e DDRB para 'B')
+    public char porta(int pino) {
+        return portas[pino];
+    }
+
+    // Bit do pino dentro da porta
+    public int bitPorta(int pino) {
+        return bits[pino];
+    }
+
+    public CustosPlaca getCustos() {
+        return custos;
+    }
+
+    // Número digital do canal An (A0 = 14 no Uno, 54 no Mega)
+    public int pinoDoCanal(int canal) {
+        return primeiroAnalogico + canal;
+    }
+
+    /**
+     * Perfil pelo nome (uno, mega, nano, sem diferenciar maiúsculas) ou pelo
+     * caminho de um arquivo .properties.
+     */
+    public static PerfilPlaca ler(String nomeOuArquivo) throws IOException {
+        switch (nomeOuArquivo.toLowerCase()) {
+            case "uno": return UNO;
+            case "mega": case "mega2560": return MEGA;
+            case "nano": return NANO;
+            default: break;
+        }
+        File arquivo = new File(nomeOuArquivo);
+        if (!arquivo.isFile()) {
+            throw new IllegalArgumentException("Placa desconhecida: " + nomeOuArquivo + " (use uno, mega, nano ou um arquivo .properties)");
+        }
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(arquivo)) {
+            p.load(in);
+        }
+        try {
+            PerfilPlaca perfil = new PerfilPlaca(p.getProperty("nome", arquivo.getName()),
+                    Integer.parseInt(p.getProperty("digitais", "").trim()),
+                    Integer.parseInt(p.getProperty("analogicos", "0").trim()),
+                    Integer.parseInt(p.getProperty("primeiroAnalogico", p.getProperty("digitais", "")).trim()),
+                    lista(p.getProperty("pwm", "")),
+                    lista(p.getProperty("soAnalogicos", "")),
+                    p.getProperty("portas"));
+            perfil.custos = CustosPlaca.ler(p, CustosPlaca.AVR_16MHZ);
+            return perfil;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Perfil de placa inválido em " + arquivo + ": " + e.getMessage());
+        }
+    }
+
+    private static int[] lista(String texto) {
+        String[] partes = texto.trim().isEmpty() ? new String[0] : texto.split(",");
+        int[] valores = new int[partes.length];
+        for (int i = 0; i < partes.length; i++) {
+            valores[i] = Integer.parseInt(partes[i].trim());
+        }
+        return valores;
+    }
+
+    // Identifica o conteúdo das tabelas; entra na chave do cache de compilação
+    public String assinatura() {
+        return nome + ":" + primeiroAnalogico + ":" + Arrays.toString(capacidades) + ":" + new String(portas).replace((char) 0, '-')
+                + Arrays.toString(bits);
+    }
+
+    @Override
+    public String toString() {
+        return nome;
+    }
+}
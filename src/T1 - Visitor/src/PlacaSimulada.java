@@ -0,0 +1,209 @@
+import java.util.Arrays;
+
+/**
+ * Placa Arduino Uno simulada no host, usada pelo SimuladorIR.
+ *
+ * Guarda o modo e o nível de cada um dos 20 pinos (0 a 13 e A0 a A5 como 14
+ * a 19), o último valor de PWM escrito, as leituras analógicas injetadas, a
+ * saída serial e um relógio virtual em microssegundos. Nada aqui dorme:
+ * esperar() só avança o relógio, então um loop() com Espere 1 s custa o
+ * mesmo que um sem espera.
+ *
+ * Como no Arduino, escritas em pinos inexistentes são ignoradas e leituras
+ * deles devolvem 0. Entradas são injetadas com definirEntrada e
+ * definirEntradaAnalogica, por exemplo entre duas iterações do loop().
+ */
+public class PlacaSimulada {
+    public static final int NUM_PINOS = 20;
+    public static final int PRIMEIRO_ANALOGICO = 14;
+    public static final int NUM_ANALOGICOS = NUM_PINOS - PRIMEIRO_ANALOGICO;
+
+    public static final byte NAO_CONFIGURADO = 0;
+    public static final byte ENTRADA = 1;
+    public static final byte SAIDA = 2;
+
+    // Limite padrão do texto serial guardado; o que passar disso só é contado
+    public static final int LIMITE_SERIAL_PADRAO = 1 << 20;
+
+    // Recebe cada mudança de nível de um pino, com o instante virtual em que ela ocorreu
+    public interface Observador {
+        void mudou(int pino, int nivel, long micros);
+    }
+
+    private final byte[] modos = new byte[NUM_PINOS];
+    private final int[] niveis = new int[NUM_PINOS];
+    private final int[] pwm = new int[NUM_PINOS];
+    private final int[] analogicos = new int[NUM_ANALOGICOS];
+
+    private final StringBuilder serial = new StringBuilder();
+    private final int limiteSerial;
+    private long bytesSerial = 0;
+    private int baud = 0;
+
+    private long micros = 0;
+    private long escritas = 0;
+    private Observador observador;
+
+    public PlacaSimulada() {
+        this(LIMITE_SERIAL_PADRAO);
+    }
+
+    public PlacaSimulada(int limiteSerial) {
+        this.limiteSerial = limiteSerial;
+    }
+
+    public void setObservador(Observador observador) {
+        this.observador = observador;
+    }
+
+    // Volta ao estado de uma placa recém-ligada
+    public void reiniciar() {
+        Arrays.fill(modos, NAO_CONFIGURADO);
+        Arrays.fill(niveis, 0);
+        Arrays.fill(pwm, 0);
+        Arrays.fill(analogicos, 0);
+        serial.setLength(0);
+        bytesSerial = 0;
+        baud = 0;
+        micros = 0;
+        escritas = 0;
+    }
+
+    private static boolean valido(int pino) {
+        return pino >= 0 && pino < NUM_PINOS;
+    }
+
+    // ------------------------------------------------------------------
+    // Funções do Arduino chamadas pelo programa simulado
+    // ------------------------------------------------------------------
+
+    public void pinMode(int pino, boolean saida) {
+        if (valido(pino)) {
+            modos[pino] = saida ? SAIDA : ENTRADA;
+        }
+    }
+
+    public void digitalWrite(int pino, int valor) {
+        if (valido(pino)) {
+            escritas++;
+            mudarNivel(pino, valor != 0 ? 1 : 0);
+        }
+    }
+
+    // Como no Arduino, 0 e 255 viram LOW e HIGH; os demais valores só mudam o PWM
+    public void analogWrite(int pino, int valor) {
+        if (valido(pino)) {
+            escritas++;
+            int v = Math.max(0, Math.min(255, valor));
+            pwm[pino] = v;
+            if (v == 0) {
+                mudarNivel(pino, 0);
+            } else if (v == 255) {
+                mudarNivel(pino, 1);
+            }
+        }
+    }
+
+    private void mudarNivel(int pino, int nivel) {
+        if (niveis[pino] != nivel) {
+            niveis[pino] = nivel;
+            if (observador != null) {
+                observador.mudou(pino, nivel, micros);
+            }
+        }
+    }
+
+    // Pinos de saída devolvem o último nível escrito; pinos de entrada, o nível injetado
+    public int digitalRead(int pino) {
+        return valido(pino) ? niveis[pino] : 0;
+    }
+
+    // Aceita tanto o canal (0 para A0) quanto o número digital do pino (14 para A0)
+    public int analogRead(int canal) {
+        if (canal >= PRIMEIRO_ANALOGICO) {
+            canal -= PRIMEIRO_ANALOGICO;
+        }
+        return canal >= 0 && canal < NUM_ANALOGICOS ? analogicos[canal] : 0;
+    }
+
+    public void iniciarSerial(int baud) {
+        this.baud = baud;
+    }
+
+    // Serial.println: guarda o texto (até o limite) seguido de \r\n
+    public void println(String texto) {
+        bytesSerial += texto.length() + 2;
+        if (serial.length() < limiteSerial) {
+            serial.append(texto).append("\r\n");
+        }
+    }
+
+    public void esperar(long ms) {
+        micros += ms * 1000;
+    }
+
+    public long millis() {
+        return micros / 1000;
+    }
+
+    public long micros() {
+        return micros;
+    }
+
+    // ------------------------------------------------------------------
+    // Estímulos e inspeção a partir do host
+    // ------------------------------------------------------------------
+
+    public void definirEntrada(int pino, int nivel) {
+        if (valido(pino)) {
+            mudarNivel(pino, nivel != 0 ? 1 : 0);
+        }
+    }
+
+    // Valor de 0 a 1023 lido por analogRead no canal (0 para A0)
+    public void definirEntradaAnalogica(int canal, int valor) {
+        if (canal >= PRIMEIRO_ANALOGICO) {
+            canal -= PRIMEIRO_ANALOGICO;
+        }
+        if (canal >= 0 && canal < NUM_ANALOGICOS) {
+            analogicos[canal] = Math.max(0, Math.min(1023, valor));
+        }
+    }
+
+    public void avancar(long micros) {
+        this.micros += micros;
+    }
+
+    public byte getModo(int pino) {
+        return valido(pino) ? modos[pino] : NAO_CONFIGURADO;
+    }
+
+    public int getNivel(int pino) {
+        return digitalRead(pino);
+    }
+
+    public int getPwm(int pino) {
+        return valido(pino) ? pwm[pino] : 0;
+    }
+
+    public CharSequence getSerial() {
+        return serial;
+    }
+
+    // Total escrito na serial, incluindo o que passou do limite guardado
+    public long getBytesSerial() {
+        return bytesSerial;
+    }
+
+    public int getBaud() {
+        return baud;
+    }
+
+    public long getEscritas() {
+        return escritas;
+    }
+
+    public static String nomePino(int pino) {
+        return pino >= PRIMEIRO_ANALOGICO ? "A" + (pino - PRIMEIRO_ANALOGICO) : String.valueOf(pino);
+    }
+}
@@ -0,0 +1,30 @@
+import java.util.Set;
+
+/**
+ * Programa ADSL pronto para rodar sobre uma PlacaSimulada. Há duas
+ * implementações com a mesma semântica: o SimuladorIR, que percorre uma
+ * árvore de instruções, e a classe gerada pelo CompiladorSimulacao, que o
+ * JIT otimiza como qualquer outro código Java.
+ */
+public interface Simulacao {
+    PlacaSimulada getPlaca();
+
+    // Avisos da preparação: variáveis não declaradas e funções desconhecidas
+    Set<String> getAvisos();
+
+    long getIteracoes();
+
+    // Inicializa as variáveis globais e roda o Config uma vez
+    void iniciar();
+
+    void executarLoop();
+
+    void executar(long n);
+
+    /**
+     * Roda o loop() até o relógio virtual chegar a 'ms' ou até 'maxIteracoes'
+     * (um loop() sem Espere nunca faria o relógio andar). Devolve o número de
+     * iterações feitas.
+     */
+    long executarAte(long ms, long maxIteracoes);
+}
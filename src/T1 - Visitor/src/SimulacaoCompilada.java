@@ -0,0 +1,124 @@
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Base das classes geradas pelo CompiladorSimulacao. A subclasse gerada
+ * implementa inicializarGlobais(), setup() e loop(); aqui ficam o laço de
+ * execução e as funções auxiliares chamadas pelo código gerado, que
+ * reproduzem a semântica do SimuladorIR (divisão por zero do AVR, float com
+ * duas casas na serial, conversões para texto).
+ *
+ * A classe gerada é carregada por outro class loader, portanto tudo o que
+ * ela usa daqui precisa ser público ou protegido.
+ */
+public abstract class SimulacaoCompilada implements Simulacao {
+    protected final PlacaSimulada placa;
+    private final Set<String> avisos = new LinkedHashSet<>();
+    private long iteracoes = 0;
+
+    protected SimulacaoCompilada(PlacaSimulada placa) {
+        this.placa = placa;
+    }
+
+    protected abstract void inicializarGlobais();
+
+    protected abstract void setup();
+
+    protected abstract void loop();
+
+    void adicionarAvisos(Set<String> novos) {
+        avisos.addAll(novos);
+    }
+
+    @Override
+    public PlacaSimulada getPlaca() {
+        return placa;
+    }
+
+    @Override
+    public Set<String> getAvisos() {
+        return avisos;
+    }
+
+    @Override
+    public long getIteracoes() {
+        return iteracoes;
+    }
+
+    @Override
+    public void iniciar() {
+        inicializarGlobais();
+        setup();
+    }
+
+    @Override
+    public void executarLoop() {
+        loop();
+        iteracoes++;
+    }
+
+    @Override
+    public void executar(long n) {
+        for (long i = 0; i < n; i++) {
+            loop();
+        }
+        iteracoes += n;
+    }
+
+    @Override
+    public long executarAte(long ms, long maxIteracoes) {
+        long limite = ms * 1000;
+        long feitas = 0;
+        while (placa.micros() < limite && feitas < maxIteracoes) {
+            loop();
+            feitas++;
+        }
+        iteracoes += feitas;
+        return feitas;
+    }
+
+    // ------------------------------------------------------------------
+    // Auxiliares do código gerado
+    // ------------------------------------------------------------------
+
+    public static long div(long x, long y) {
+        return y != 0 ? x / y : -1;
+    }
+
+    public static long resto(long x, long y) {
+        return y != 0 ? x % y : x;
+    }
+
+    public static String texto(long v) {
+        return Long.toString(v);
+    }
+
+    public static String texto(float v) {
+        return SimuladorIR.formatarReal(v);
+    }
+
+    public static String texto(String v) {
+        return v;
+    }
+
+    public static String caractere(long v) {
+        return String.valueOf((char) (v & 0xFF));
+    }
+
+    public static int comparar(String a, String b) {
+        return a.compareTo(b);
+    }
+
+    // Valor 0 usado por expressões avaliadas só pelos efeitos e por chamadas desconhecidas
+    public static long nada(long v) {
+        return 0;
+    }
+
+    public static long nada(float v) {
+        return 0;
+    }
+
+    public static long nada(String v) {
+        return 0;
+    }
+}
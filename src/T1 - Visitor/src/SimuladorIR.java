@@ -0,0 +1,1140 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Executa um programa ADSL no host, sobre uma PlacaSimulada, sem gerar nem
+ * compilar o sketch.
+ *
+ * A IR é convertida uma única vez em uma árvore de instruções e expressões
+ * já resolvidas: cada variável vira uma posição fixa em um vetor do quadro
+ * (inteiros, reais ou textos), cada chamada aponta direto para a função
+ * chamada e cada operador já sabe se trabalha com inteiros, reais ou texto.
+ * Assim uma iteração do loop() não consulta mapas nem aloca nada (a não ser
+ * textos e quadros de funções chamadas), e programas pequenos rodam milhões
+ * de iterações por segundo. Espere só avança o relógio virtual da placa.
+ *
+ * Semântica: variáveis inteiras são truncadas para o tamanho do tipo no AVR
+ * (byte 8 bits, int 16, long 32, com ou sem sinal) ao serem gravadas, mas as
+ * contas intermediárias são feitas em 64 bits; real é float. Declarações do
+ * nível de cima do Config são globais, como as de fora dos blocos, para que
+ * o Execute as enxergue; as do Execute são refeitas a cada iteração. Vários
+ * blocos Execute rodam em sequência a cada iteração. Variáveis não
+ * declaradas (fora true, false, HIGH e LOW) viram globais int e chamadas a
+ * funções desconhecidas devolvem 0; as duas situações ficam em getAvisos().
+ *
+ * Com -compilado o programa é executado pelo CompiladorSimulacao, que gera
+ * e compila uma classe Java em vez de percorrer a árvore.
+ *
+ * Uso: java ADSL -simular [-n iteracoes] [-tempo ms] [-O] [-compilado] [-entrada pino=valor]... <arquivo.txt>
+ */
+public class SimuladorIR implements Simulacao {
+    // Onde cada valor fica guardado no quadro
+    private static final int INTEIRO = 0;
+    private static final int REAL = 1;
+    private static final int TEXTO = 2;
+
+    private static final long ITERACOES_PADRAO = 1000;
+
+    private final PlacaSimulada placa;
+    private final Quadro globais;
+    private final Instrucao inicializacao;
+    private final Instrucao setup;
+    private final Instrucao loop;
+    private final Quadro quadroSetup;
+    private final Quadro quadroLoop;
+    private final Set<String> avisos = new LinkedHashSet<>();
+    private long iteracoes = 0;
+
+    public SimuladorIR(IR.Programa programa, PlacaSimulada placa) {
+        this.placa = placa;
+        Compilador c = new Compilador();
+        c.compilar(programa);
+        globais = new Quadro(c.globais);
+        inicializacao = c.inicializacao;
+        setup = c.setup;
+        loop = c.loop;
+        quadroSetup = new Quadro(c.tamanhoSetup);
+        quadroLoop = new Quadro(c.tamanhoLoop);
+        c.ligarGlobais(globais);
+    }
+
+    @Override
+    public PlacaSimulada getPlaca() {
+        return placa;
+    }
+
+    @Override
+    public Set<String> getAvisos() {
+        return avisos;
+    }
+
+    @Override
+    public long getIteracoes() {
+        return iteracoes;
+    }
+
+    @Override
+    public void iniciar() {
+        inicializacao.executar(globais);
+        setup.executar(quadroSetup);
+    }
+
+    @Override
+    public void executarLoop() {
+        loop.executar(quadroLoop);
+        iteracoes++;
+    }
+
+    @Override
+    public void executar(long n) {
+        for (long i = 0; i < n; i++) {
+            loop.executar(quadroLoop);
+        }
+        iteracoes += n;
+    }
+
+    @Override
+    public long executarAte(long ms, long maxIteracoes) {
+        long limite = ms * 1000;
+        long feitas = 0;
+        while (placa.micros() < limite && feitas < maxIteracoes) {
+            loop.executar(quadroLoop);
+            feitas++;
+        }
+        iteracoes += feitas;
+        return feitas;
+    }
+
+    // ------------------------------------------------------------------
+    // Estruturas de execução
+    // ------------------------------------------------------------------
+
+    // Variáveis de uma função (ou das globais), uma posição por variável
+    static final class Quadro {
+        final long[] inteiros;
+        final double[] reais;
+        final String[] textos;
+        // Valor do último retorne executado
+        long retornoInteiro;
+        double retornoReal;
+        String retornoTexto;
+
+        Quadro(int[] tamanhos) {
+            inteiros = new long[tamanhos[INTEIRO]];
+            reais = new double[tamanhos[REAL]];
+            textos = new String[tamanhos[TEXTO]];
+            java.util.Arrays.fill(textos, "");
+        }
+    }
+
+    abstract static class Instrucao {
+        // Devolve true quando um retorne foi executado e o restante deve ser pulado
+        abstract boolean executar(Quadro q);
+    }
+
+    abstract static class Expressao {
+        final int tipo;
+
+        Expressao(int tipo) {
+            this.tipo = tipo;
+        }
+
+        // Cada expressão implementa o método do seu tipo; os demais convertem
+        long inteiro(Quadro q) {
+            return tipo == REAL ? (long) real(q) : 0;
+        }
+
+        double real(Quadro q) {
+            return inteiro(q);
+        }
+
+        String texto(Quadro q) {
+            return tipo == REAL ? formatarReal(real(q)) : Long.toString(inteiro(q));
+        }
+
+        boolean verdadeiro(Quadro q) {
+            if (tipo == TEXTO) {
+                texto(q);
+                return true;
+            }
+            return tipo == REAL ? real(q) != 0 : inteiro(q) != 0;
+        }
+
+        // Avalia só pelos efeitos (chamadas e leituras soltas)
+        void descartar(Quadro q) {
+            if (tipo == TEXTO) {
+                texto(q);
+            } else if (tipo == REAL) {
+                real(q);
+            } else {
+                inteiro(q);
+            }
+        }
+    }
+
+    // Serial.print de float mostra duas casas decimais
+    static String formatarReal(double valor) {
+        return String.format(Locale.ROOT, "%.2f", valor);
+    }
+
+    // Converte um inteiro para o tamanho do tipo C da variável que o recebe
+    static long ajustar(long valor, IR.Tipo tipo) {
+        switch (tipo) {
+            case BYTE: return valor & 0xFFL;
+            case INT: return (short) valor;
+            case UNSIGNED_INT: return valor & 0xFFFFL;
+            case LONG: return (int) valor;
+            case UNSIGNED_LONG: return valor & 0xFFFFFFFFL;
+            case CHAR: return (byte) valor;
+            case BOOLEAN: return valor != 0 ? 1 : 0;
+            default: return valor;
+        }
+    }
+
+    private static int armazenamento(IR.Tipo tipo) {
+        switch (tipo) {
+            case REAL: return REAL;
+            case STRING: return TEXTO;
+            default: return INTEIRO;
+        }
+    }
+
+    // Valor de um literal "..." do fonte ADSL
+    private static String valorTexto(String literal) {
+        return literal.substring(1, literal.length() - 1)
+                .replace("\\n", "\n").replace("\\t", "\t").replace("\\\\", "\\");
+    }
+
+    // Variável resolvida: posição no quadro local ou no global
+    private static final class Referencia {
+        final IR.Tipo tipo;
+        final int armazenamento;
+        final int posicao;
+        final boolean global;
+
+        Referencia(IR.Tipo tipo, int posicao, boolean global) {
+            this.tipo = tipo;
+            this.armazenamento = armazenamento(tipo);
+            this.posicao = posicao;
+            this.global = global;
+        }
+    }
+
+    private static final class Funcao {
+        final IR.Funcao origem;
+        final List<Referencia> parametros = new ArrayList<>();
+        int[] tamanhos;
+        Instrucao corpo;
+
+        Funcao(IR.Funcao origem) {
+            this.origem = origem;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Conversão da IR em instruções
+    // ------------------------------------------------------------------
+
+    private final class Compilador {
+        final int[] globais = new int[3];
+        Instrucao inicializacao;
+        Instrucao setup;
+        Instrucao loop;
+        int[] tamanhoSetup = new int[3];
+        int[] tamanhoLoop = new int[3];
+
+        private final Map<String, Funcao> funcoes = new HashMap<>();
+        private final Map<String, Referencia> escopoGlobal = new HashMap<>();
+        private final Deque<Map<String, Referencia>> escopos = new ArrayDeque<>();
+        // Tamanhos do quadro e tipo de retorno da função sendo compilada
+        private int[] local;
+        private IR.Tipo retorno = IR.Tipo.VOID;
+        // Acessos a globais, ligados ao quadro global depois que ele existe
+        private final List<AcessoGlobal> acessosGlobais = new ArrayList<>();
+
+        void compilar(IR.Programa programa) {
+            for (IR.Comando item : programa.itens) {
+                if (item instanceof IR.Funcao) {
+                    IR.Funcao f = (IR.Funcao) item;
+                    funcoes.put(f.nome, new Funcao(f));
+                }
+            }
+
+            List<Instrucao> iniciais = new ArrayList<>();
+            List<Instrucao> setups = new ArrayList<>();
+            List<Instrucao> loops = new ArrayList<>();
+            for (IR.Comando item : programa.itens) {
+                if (item instanceof IR.DeclaraVariavel) {
+                    local = globais;
+                    iniciais.add(declarar((IR.DeclaraVariavel) item, true));
+                } else if (item instanceof IR.Setup) {
+                    local = tamanhoSetup;
+                    setups.add(corpoSetup(((IR.Setup) item).corpo));
+                } else if (item instanceof IR.Loop) {
+                    local = tamanhoLoop;
+                    loops.add(bloco(((IR.Loop) item).corpo));
+                }
+            }
+            for (Funcao f : funcoes.values()) {
+                funcao(f);
+            }
+            inicializacao = sequencia(iniciais);
+            setup = sequencia(setups);
+            loop = sequencia(loops);
+        }
+
+        void ligarGlobais(Quadro quadro) {
+            for (AcessoGlobal a : acessosGlobais) {
+                a.ligar(quadro);
+            }
+        }
+
+        private void funcao(Funcao f) {
+            local = new int[3];
+            escopos.push(new HashMap<>());
+            for (IR.Parametro p : f.origem.parametros) {
+                Referencia r = nova(p.tipo, false);
+                escopos.peek().put(p.nome, r);
+                f.parametros.add(r);
+            }
+            retorno = f.origem.retorno;
+            f.corpo = bloco(f.origem.corpo);
+            retorno = IR.Tipo.VOID;
+            escopos.pop();
+            f.tamanhos = local;
+        }
+
+        // No nível de cima do Config as declarações vão para as globais
+        private Instrucao corpoSetup(List<IR.Comando> corpo) {
+            List<Instrucao> lista = new ArrayList<>(corpo.size());
+            escopos.push(new HashMap<>());
+            for (IR.Comando c : corpo) {
+                Instrucao i = c instanceof IR.DeclaraVariavel
+                        ? declarar((IR.DeclaraVariavel) c, true) : comando(c);
+                if (i != null) {
+                    lista.add(i);
+                }
+            }
+            escopos.pop();
+            return sequencia(lista);
+        }
+
+        private Instrucao bloco(List<IR.Comando> corpo) {
+            List<Instrucao> lista = new ArrayList<>(corpo.size());
+            escopos.push(new HashMap<>());
+            for (IR.Comando c : corpo) {
+                Instrucao i = comando(c);
+                if (i != null) {
+                    lista.add(i);
+                }
+            }
+            escopos.pop();
+            return sequencia(lista);
+        }
+
+        private Referencia nova(IR.Tipo tipo, boolean global) {
+            int[] tamanhos = global ? globais : local;
+            int armazenamento = armazenamento(tipo);
+            return new Referencia(tipo, tamanhos[armazenamento]++, global);
+        }
+
+        private boolean declarada(String nome) {
+            for (Map<String, Referencia> escopo : escopos) {
+                if (escopo.containsKey(nome)) {
+                    return true;
+                }
+            }
+            return escopoGlobal.containsKey(nome);
+        }
+
+        private Referencia resolver(String nome) {
+            for (Map<String, Referencia> escopo : escopos) {
+                Referencia r = escopo.get(nome);
+                if (r != null) {
+                    return r;
+                }
+            }
+            Referencia r = escopoGlobal.get(nome);
+            if (r == null) {
+                avisos.add("Variável não declarada tratada como int global: " + nome);
+                r = nova(IR.Tipo.INT, true);
+                escopoGlobal.put(nome, r);
+            }
+            return r;
+        }
+
+        private Instrucao declarar(IR.DeclaraVariavel d, boolean global) {
+            // O inicializador ainda enxerga uma variável de fora com o mesmo nome
+            Expressao valor = d.inicial != null ? expressao(d.inicial) : null;
+            Referencia r = nova(d.tipo, global);
+            if (global) {
+                escopoGlobal.put(d.nome, r);
+            } else {
+                escopos.peek().put(d.nome, r);
+            }
+            if (valor == null) {
+                valor = new Constante(r.armazenamento, 0, 0, r.armazenamento == TEXTO ? "" : null);
+            }
+            return gravar(r, valor);
+        }
+
+        private Instrucao comando(IR.Comando c) {
+            if (c instanceof IR.DeclaraVariavel) {
+                return declarar((IR.DeclaraVariavel) c, false);
+            }
+            if (c instanceof IR.Atribuicao) {
+                IR.Atribuicao a = (IR.Atribuicao) c;
+                Expressao valor = expressao(a.valor);
+                return gravar(resolver(a.nome), valor);
+            }
+            if (c instanceof IR.ModoPino) {
+                IR.ModoPino m = (IR.ModoPino) c;
+                int pino = numeroPino(m.pino);
+                boolean saida = m.saida;
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        placa.pinMode(pino, saida);
+                        return false;
+                    }
+                };
+            }
+            if (c instanceof IR.IniciaSerial) {
+                int baud = ((IR.IniciaSerial) c).baud;
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        placa.iniciarSerial(baud);
+                        return false;
+                    }
+                };
+            }
+            if (c instanceof IR.Espera) {
+                long ms = ((IR.Espera) c).ms;
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        placa.esperar(ms);
+                        return false;
+                    }
+                };
+            }
+            if (c instanceof IR.EscritaDigital) {
+                IR.EscritaDigital e = (IR.EscritaDigital) c;
+                Expressao pino = expressao(e.pino);
+                Expressao valor = expressao(e.valor);
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        placa.digitalWrite((int) pino.inteiro(q), (int) valor.inteiro(q));
+                        return false;
+                    }
+                };
+            }
+            if (c instanceof IR.EscritaAnalogica) {
+                IR.EscritaAnalogica e = (IR.EscritaAnalogica) c;
+                Expressao pino = expressao(e.pino);
+                Expressao valor = expressao(e.valor);
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        placa.analogWrite((int) pino.inteiro(q), (int) valor.inteiro(q));
+                        return false;
+                    }
+                };
+            }
+            if (c instanceof IR.ImprimeSerial) {
+                Expressao valor = expressao(((IR.ImprimeSerial) c).valor);
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        placa.println(valor.texto(q));
+                        return false;
+                    }
+                };
+            }
+            if (c instanceof IR.Se) {
+                IR.Se se = (IR.Se) c;
+                Expressao condicao = expressao(se.condicao);
+                Instrucao entao = bloco(se.entao);
+                Instrucao senao = se.senao != null ? bloco(se.senao) : null;
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        if (condicao.verdadeiro(q)) {
+                            return entao.executar(q);
+                        }
+                        return senao != null && senao.executar(q);
+                    }
+                };
+            }
+            if (c instanceof IR.Repita) {
+                IR.Repita r = (IR.Repita) c;
+                Expressao vezes = expressao(r.vezes);
+                Instrucao corpo = bloco(r.corpo);
+                // Como o for gerado, o limite é reavaliado a cada volta
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        for (long i = 0; i < vezes.inteiro(q); i++) {
+                            if (corpo.executar(q)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                };
+            }
+            if (c instanceof IR.Bloco) {
+                return bloco(((IR.Bloco) c).corpo);
+            }
+            if (c instanceof IR.Retorne) {
+                IR.Expr origem = ((IR.Retorne) c).valor;
+                Expressao valor = origem != null ? expressao(origem) : null;
+                // O valor é guardado já no tipo de retorno da função
+                int destino = valor != null && retorno != IR.Tipo.VOID ? armazenamento(retorno) : -1;
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        switch (destino) {
+                            case TEXTO: q.retornoTexto = valor.texto(q); break;
+                            case REAL: q.retornoReal = (float) valor.real(q); break;
+                            case INTEIRO: q.retornoInteiro = valor.inteiro(q); break;
+                            default: break;
+                        }
+                        return true;
+                    }
+                };
+            }
+            if (c instanceof IR.ComandoExpressao) {
+                Expressao e = expressao(((IR.ComandoExpressao) c).expressao);
+                return new Instrucao() {
+                    boolean executar(Quadro q) {
+                        e.descartar(q);
+                        return false;
+                    }
+                };
+            }
+            // Comentários não executam nada
+            return null;
+        }
+
+        private Instrucao gravar(Referencia r, Expressao valor) {
+            IR.Tipo tipo = r.tipo;
+            int posicao = r.posicao;
+            switch (r.armazenamento) {
+                case REAL:
+                    if (r.global) {
+                        return registrar(new GravaGlobal() {
+                            boolean executar(Quadro q) {
+                                quadro.reais[posicao] = (float) valor.real(q);
+                                return false;
+                            }
+                        });
+                    }
+                    return new Instrucao() {
+                        boolean executar(Quadro q) {
+                            q.reais[posicao] = (float) valor.real(q);
+                            return false;
+                        }
+                    };
+                case TEXTO:
+                    if (r.global) {
+                        return registrar(new GravaGlobal() {
+                            boolean executar(Quadro q) {
+                                quadro.textos[posicao] = valor.texto(q);
+                                return false;
+                            }
+                        });
+                    }
+                    return new Instrucao() {
+                        boolean executar(Quadro q) {
+                            q.textos[posicao] = valor.texto(q);
+                            return false;
+                        }
+                    };
+                default:
+                    if (r.global) {
+                        return registrar(new GravaGlobal() {
+                            boolean executar(Quadro q) {
+                                quadro.inteiros[posicao] = ajustar(valor.inteiro(q), tipo);
+                                return false;
+                            }
+                        });
+                    }
+                    return new Instrucao() {
+                        boolean executar(Quadro q) {
+                            q.inteiros[posicao] = ajustar(valor.inteiro(q), tipo);
+                            return false;
+                        }
+                    };
+            }
+        }
+
+        private <T extends AcessoGlobal> T registrar(T acesso) {
+            acessosGlobais.add(acesso);
+            return acesso;
+        }
+
+        // ------------------------------------------------------------------
+        // Expressões
+        // ------------------------------------------------------------------
+
+        private Expressao expressao(IR.Expr e) {
+            if (e instanceof IR.Numero) {
+                IR.Numero n = (IR.Numero) e;
+                return n.real
+                        ? new Constante(REAL, 0, (float) n.valorReal, null)
+                        : new Constante(INTEIRO, n.inteiro, 0, null);
+            }
+            if (e instanceof IR.Texto) {
+                return new Constante(TEXTO, 0, 0, valorTexto(((IR.Texto) e).literal));
+            }
+            if (e instanceof IR.Pino) {
+                return new Constante(INTEIRO, numeroPino((IR.Pino) e), 0, null);
+            }
+            if (e instanceof IR.Variavel) {
+                return variavel(((IR.Variavel) e).nome);
+            }
+            if (e instanceof IR.Leitura) {
+                return leitura((IR.Leitura) e);
+            }
+            if (e instanceof IR.Binaria) {
+                IR.Binaria b = (IR.Binaria) e;
+                return binaria(b.operador, expressao(b.esquerda), expressao(b.direita));
+            }
+            if (e instanceof IR.Unaria) {
+                IR.Unaria u = (IR.Unaria) e;
+                return unaria(u.operador, expressao(u.operando));
+            }
+            if (e instanceof IR.Chamada) {
+                return chamada((IR.Chamada) e);
+            }
+            throw new IllegalArgumentException("Expressão sem simulação: " + e.getClass().getSimpleName());
+        }
+
+        private Expressao variavel(String nome) {
+            switch (nome) {
+                case "true":
+                case "HIGH":
+                    return new Constante(INTEIRO, 1, 0, null);
+                case "false":
+                case "LOW":
+                    return new Constante(INTEIRO, 0, 0, null);
+                default:
+                    break;
+            }
+            // A0, A1... são constantes do Arduino com o número digital do pino
+            if (nome.matches("A\\d+") && !declarada(nome)) {
+                return new Constante(INTEIRO, Integer.parseInt(nome.substring(1)) + PlacaSimulada.PRIMEIRO_ANALOGICO, 0, null);
+            }
+            Referencia r = resolver(nome);
+            int posicao = r.posicao;
+            switch (r.armazenamento) {
+                case REAL:
+                    if (r.global) {
+                        return registrar(new LeGlobal(REAL) {
+                            double real(Quadro q) {
+                                return quadro.reais[posicao];
+                            }
+                        });
+                    }
+                    return new Expressao(REAL) {
+                        double real(Quadro q) {
+                            return q.reais[posicao];
+                        }
+                    };
+                case TEXTO:
+                    if (r.global) {
+                        return registrar(new LeGlobal(TEXTO) {
+                            String texto(Quadro q) {
+                                return quadro.textos[posicao];
+                            }
+                        });
+                    }
+                    return new Expressao(TEXTO) {
+                        String texto(Quadro q) {
+                            return q.textos[posicao];
+                        }
+                    };
+                default:
+                    boolean caractere = r.tipo == IR.Tipo.CHAR;
+                    if (r.global) {
+                        return registrar(new LeGlobal(INTEIRO) {
+                            long inteiro(Quadro q) {
+                                return quadro.inteiros[posicao];
+                            }
+
+                            String texto(Quadro q) {
+                                long v = quadro.inteiros[posicao];
+                                return caractere ? String.valueOf((char) (v & 0xFF)) : Long.toString(v);
+                            }
+                        });
+                    }
+                    return new Expressao(INTEIRO) {
+                        long inteiro(Quadro q) {
+                            return q.inteiros[posicao];
+                        }
+
+                        String texto(Quadro q) {
+                            long v = q.inteiros[posicao];
+                            return caractere ? String.valueOf((char) (v & 0xFF)) : Long.toString(v);
+                        }
+                    };
+            }
+        }
+
+        private Expressao leitura(IR.Leitura l) {
+            if (l.analogica) {
+                int canal = ((IR.Pino) l.pino).numero;
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return placa.analogRead(canal);
+                    }
+                };
+            }
+            Expressao pino = expressao(l.pino);
+            return new Expressao(INTEIRO) {
+                long inteiro(Quadro q) {
+                    return placa.digitalRead((int) pino.inteiro(q));
+                }
+            };
+        }
+
+        private Expressao chamada(IR.Chamada ch) {
+            List<Expressao> argumentos = new ArrayList<>(ch.argumentos.size());
+            for (IR.Expr a : ch.argumentos) {
+                argumentos.add(expressao(a));
+            }
+            Funcao f = funcoes.get(ch.nome);
+            if (f != null) {
+                if (f.origem.parametros.size() != argumentos.size()) {
+                    throw new IllegalArgumentException("Chamada de " + ch.nome + " com " + argumentos.size()
+                            + " argumento(s), esperado(s) " + f.origem.parametros.size());
+                }
+                return new ChamadaFuncao(f, argumentos.toArray(new Expressao[0]));
+            }
+            if (ch.nome.equals("millis") && argumentos.isEmpty()) {
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return placa.millis() & 0xFFFFFFFFL;
+                    }
+                };
+            }
+            if (ch.nome.equals("micros") && argumentos.isEmpty()) {
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return placa.micros() & 0xFFFFFFFFL;
+                    }
+                };
+            }
+            avisos.add("Função desconhecida, chamada devolve 0: " + ch.nome);
+            Expressao[] args = argumentos.toArray(new Expressao[0]);
+            return new Expressao(INTEIRO) {
+                long inteiro(Quadro q) {
+                    for (Expressao a : args) {
+                        a.descartar(q);
+                    }
+                    return 0;
+                }
+            };
+        }
+    }
+
+    // Número do pino na placa: A0 a A5 ficam depois dos digitais (A0 = 14)
+    private static int numeroPino(IR.Pino pino) {
+        return pino.analogico ? pino.numero + PlacaSimulada.PRIMEIRO_ANALOGICO : pino.numero;
+    }
+
+    // ------------------------------------------------------------------
+    // Nós de expressão
+    // ------------------------------------------------------------------
+
+    // Instruções e expressões que usam o quadro global, preenchido depois da compilação
+    private interface AcessoGlobal {
+        void ligar(Quadro quadro);
+    }
+
+    private abstract static class GravaGlobal extends Instrucao implements AcessoGlobal {
+        Quadro quadro;
+
+        public void ligar(Quadro quadro) {
+            this.quadro = quadro;
+        }
+    }
+
+    private abstract static class LeGlobal extends Expressao implements AcessoGlobal {
+        Quadro quadro;
+
+        LeGlobal(int tipo) {
+            super(tipo);
+        }
+
+        public void ligar(Quadro quadro) {
+            this.quadro = quadro;
+        }
+    }
+
+    private static final class Constante extends Expressao {
+        private final long inteiro;
+        private final double real;
+        private final String texto;
+
+        Constante(int tipo, long inteiro, double real, String texto) {
+            super(tipo);
+            this.inteiro = inteiro;
+            this.real = real;
+            this.texto = texto;
+        }
+
+        long inteiro(Quadro q) {
+            return tipo == REAL ? (long) real : inteiro;
+        }
+
+        double real(Quadro q) {
+            return tipo == REAL ? real : inteiro;
+        }
+
+        String texto(Quadro q) {
+            if (tipo == TEXTO) {
+                return texto;
+            }
+            return tipo == REAL ? formatarReal(real) : Long.toString(inteiro);
+        }
+    }
+
+    private static final class ChamadaFuncao extends Expressao {
+        private final Funcao funcao;
+        private final Expressao[] argumentos;
+
+        ChamadaFuncao(Funcao funcao, Expressao[] argumentos) {
+            super(funcao.origem.retorno == IR.Tipo.VOID ? INTEIRO : armazenamento(funcao.origem.retorno));
+            this.funcao = funcao;
+            this.argumentos = argumentos;
+        }
+
+        private Quadro chamar(Quadro q) {
+            Quadro novo = new Quadro(funcao.tamanhos);
+            for (int i = 0; i < argumentos.length; i++) {
+                Referencia p = funcao.parametros.get(i);
+                switch (p.armazenamento) {
+                    case REAL: novo.reais[p.posicao] = (float) argumentos[i].real(q); break;
+                    case TEXTO: novo.textos[p.posicao] = argumentos[i].texto(q); break;
+                    default: novo.inteiros[p.posicao] = ajustar(argumentos[i].inteiro(q), p.tipo); break;
+                }
+            }
+            funcao.corpo.executar(novo);
+            return novo;
+        }
+
+        long inteiro(Quadro q) {
+            Quadro fim = chamar(q);
+            return tipo == REAL ? (long) fim.retornoReal : ajustar(fim.retornoInteiro, funcao.origem.retorno);
+        }
+
+        double real(Quadro q) {
+            Quadro fim = chamar(q);
+            return tipo == REAL ? fim.retornoReal : ajustar(fim.retornoInteiro, funcao.origem.retorno);
+        }
+
+        String texto(Quadro q) {
+            Quadro fim = chamar(q);
+            if (tipo == TEXTO) {
+                return fim.retornoTexto != null ? fim.retornoTexto : "";
+            }
+            return tipo == REAL ? formatarReal(fim.retornoReal)
+                    : Long.toString(ajustar(fim.retornoInteiro, funcao.origem.retorno));
+        }
+    }
+
+    private static Expressao binaria(IR.Operador operador, Expressao a, Expressao b) {
+        switch (operador) {
+            case E:
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return a.verdadeiro(q) && b.verdadeiro(q) ? 1 : 0;
+                    }
+                };
+            case OU:
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return a.verdadeiro(q) || b.verdadeiro(q) ? 1 : 0;
+                    }
+                };
+            case IGUAL:
+            case DIFERENTE:
+            case MENOR:
+            case MAIOR:
+            case MENOR_IGUAL:
+            case MAIOR_IGUAL:
+                return new Comparacao(operador, a, b);
+            default:
+                break;
+        }
+        if (operador == IR.Operador.SOMA && (a.tipo == TEXTO || b.tipo == TEXTO)) {
+            return new Expressao(TEXTO) {
+                String texto(Quadro q) {
+                    return a.texto(q).concat(b.texto(q));
+                }
+            };
+        }
+        if (a.tipo == REAL || b.tipo == REAL) {
+            return new AritmeticaReal(operador, a, b);
+        }
+        return new AritmeticaInteira(operador, a, b);
+    }
+
+    private static final class AritmeticaInteira extends Expressao {
+        private final IR.Operador operador;
+        private final Expressao a;
+        private final Expressao b;
+
+        AritmeticaInteira(IR.Operador operador, Expressao a, Expressao b) {
+            super(INTEIRO);
+            this.operador = operador;
+            this.a = a;
+            this.b = b;
+        }
+
+        // O AVR não gera exceção na divisão por zero: como na rotina da libgcc,
+        // o quociente sai com todos os bits em 1 e o resto igual ao dividendo
+        long inteiro(Quadro q) {
+            long x = a.inteiro(q);
+            long y = b.inteiro(q);
+            switch (operador) {
+                case SOMA: return x + y;
+                case SUBTRACAO: return x - y;
+                case MULTIPLICACAO: return x * y;
+                case DIVISAO: return y != 0 ? x / y : -1;
+                default: return y != 0 ? x % y : x;
+            }
+        }
+    }
+
+    private static final class AritmeticaReal extends Expressao {
+        private final IR.Operador operador;
+        private final Expressao a;
+        private final Expressao b;
+
+        AritmeticaReal(IR.Operador operador, Expressao a, Expressao b) {
+            super(REAL);
+            this.operador = operador;
+            this.a = a;
+            this.b = b;
+        }
+
+        double real(Quadro q) {
+            float x = (float) a.real(q);
+            float y = (float) b.real(q);
+            switch (operador) {
+                case SOMA: return x + y;
+                case SUBTRACAO: return x - y;
+                case MULTIPLICACAO: return x * y;
+                case DIVISAO: return x / y;
+                default: return x % y;
+            }
+        }
+    }
+
+    private static final class Comparacao extends Expressao {
+        private final IR.Operador operador;
+        private final Expressao a;
+        private final Expressao b;
+        // Tipo em que os dois lados são comparados
+        private final int comum;
+
+        Comparacao(IR.Operador operador, Expressao a, Expressao b) {
+            super(INTEIRO);
+            this.operador = operador;
+            this.a = a;
+            this.b = b;
+            this.comum = Math.max(a.tipo, b.tipo);
+        }
+
+        long inteiro(Quadro q) {
+            int c;
+            if (comum == INTEIRO) {
+                c = Long.compare(a.inteiro(q), b.inteiro(q));
+            } else if (comum == REAL) {
+                c = Double.compare(a.real(q), b.real(q));
+            } else {
+                c = a.texto(q).compareTo(b.texto(q));
+            }
+            switch (operador) {
+                case IGUAL: return c == 0 ? 1 : 0;
+                case DIFERENTE: return c != 0 ? 1 : 0;
+                case MENOR: return c < 0 ? 1 : 0;
+                case MAIOR: return c > 0 ? 1 : 0;
+                case MENOR_IGUAL: return c <= 0 ? 1 : 0;
+                default: return c >= 0 ? 1 : 0;
+            }
+        }
+    }
+
+    private static Expressao unaria(IR.OperadorUnario operador, Expressao a) {
+        switch (operador) {
+            case NAO:
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return a.verdadeiro(q) ? 0 : 1;
+                    }
+                };
+            case COMPLEMENTO:
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return ~a.inteiro(q);
+                    }
+                };
+            case MENOS:
+                if (a.tipo == REAL) {
+                    return new Expressao(REAL) {
+                        double real(Quadro q) {
+                            return -a.real(q);
+                        }
+                    };
+                }
+                return new Expressao(INTEIRO) {
+                    long inteiro(Quadro q) {
+                        return -a.inteiro(q);
+                    }
+                };
+            default:
+                return a;
+        }
+    }
+
+    // Uma sequência vazia ou de um só comando não precisa do laço
+    private static Instrucao sequencia(List<Instrucao> lista) {
+        if (lista.isEmpty()) {
+            return new Instrucao() {
+                boolean executar(Quadro q) {
+                    return false;
+                }
+            };
+        }
+        if (lista.size() == 1) {
+            return lista.get(0);
+        }
+        Instrucao[] instrucoes = lista.toArray(new Instrucao[0]);
+        return new Instrucao() {
+            boolean executar(Quadro q) {
+                for (Instrucao i : instrucoes) {
+                    if (i.executar(q)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------
+    // Linha de comando
+    // ------------------------------------------------------------------
+
+    public static void main(String[] args) throws ParseException {
+        long maxIteracoes = -1;
+        long tempo = -1;
+        boolean otimizar = false;
+        boolean compilado = false;
+        List<int[]> entradas = new ArrayList<>();
+        String arquivo = null;
+        for (int i = 0; i < args.length; i++) {
+            boolean temValor = i + 1 < args.length;
+            if (args[i].equals("-n") && temValor) {
+                maxIteracoes = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-tempo") && temValor) {
+                tempo = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-O")) {
+                otimizar = true;
+            } else if (args[i].equals("-compilado")) {
+                compilado = true;
+            } else if (args[i].equals("-entrada") && temValor) {
+                entradas.add(lerEntrada(args[++i]));
+            } else {
+                arquivo = args[i];
+            }
+        }
+        if (arquivo == null) {
+            System.err.println("Uso: java ADSL -simular [-n iteracoes] [-tempo ms] [-O] [-compilado] [-entrada pino=valor]... <arquivo.txt>");
+            return;
+        }
+
+        IR.Programa programa;
+        try (InputStream entrada = new FileInputStream(new File(arquivo))) {
+            programa = new ConstrutorIR().construir(new ADSL(entrada).Start());
+        } catch (FileNotFoundException e) {
+            System.err.println("Arquivo não encontrado: " + arquivo);
+            return;
+        } catch (IOException e) {
+            System.err.println("Erro ao ler " + arquivo + ": " + e.getMessage());
+            return;
+        }
+        if (otimizar) {
+            programa = new OtimizadorIR().otimizar(programa);
+        }
+
+        PlacaSimulada placa = new PlacaSimulada();
+        for (int[] e : entradas) {
+            if (e[0] >= PlacaSimulada.PRIMEIRO_ANALOGICO) {
+                placa.definirEntradaAnalogica(e[0], e[1]);
+            } else {
+                placa.definirEntrada(e[0], e[1]);
+            }
+        }
+        Simulacao simulador;
+        if (compilado) {
+            try {
+                simulador = CompiladorSimulacao.compilar(programa, placa);
+            } catch (IllegalStateException e) {
+                System.err.println(e.getMessage());
+                System.err.println("Usando o simulador interpretado.");
+                simulador = new SimuladorIR(programa, placa);
+            }
+        } else {
+            simulador = new SimuladorIR(programa, placa);
+        }
+        for (String aviso : simulador.getAvisos()) {
+            System.err.println("Aviso: " + aviso);
+        }
+
+        long inicio = System.nanoTime();
+        simulador.iniciar();
+        if (tempo >= 0) {
+            simulador.executarAte(tempo, maxIteracoes >= 0 ? maxIteracoes : Long.MAX_VALUE);
+        } else {
+            simulador.executar(maxIteracoes >= 0 ? maxIteracoes : ITERACOES_PADRAO);
+        }
+        long decorrido = System.nanoTime() - inicio;
+
+        System.out.print(placa.getSerial());
+        System.out.flush();
+        System.err.printf("%d iterações do loop() em %.1f ms (%.0f iterações/s), tempo virtual %d ms%n",
+                simulador.getIteracoes(), decorrido / 1e6,
+                simulador.getIteracoes() / Math.max(decorrido / 1e9, 1e-9), placa.millis());
+        if (placa.getBytesSerial() > placa.getSerial().length()) {
+            System.err.printf("Serial: %d bytes escritos, %d guardados%n", placa.getBytesSerial(), placa.getSerial().length());
+        }
+        for (int p = 0; p < PlacaSimulada.NUM_PINOS; p++) {
+            if (placa.getModo(p) == PlacaSimulada.SAIDA) {
+                System.err.printf("Pino %s: nível %d, PWM %d%n", PlacaSimulada.nomePino(p), placa.getNivel(p), placa.getPwm(p));
+            }
+        }
+    }
+
+    // pino=valor, com o pino em número ou An
+    private static int[] lerEntrada(String texto) {
+        int igual = texto.indexOf('=');
+        if (igual < 0) {
+            throw new IllegalArgumentException("Entrada inválida (use pino=valor): " + texto);
+        }
+        String pino = texto.substring(0, igual);
+        int numero = pino.startsWith("A")
+                ? Integer.parseInt(pino.substring(1)) + PlacaSimulada.PRIMEIRO_ANALOGICO
+                : Integer.parseInt(pino);
+        return new int[] {numero, Integer.parseInt(texto.substring(igual + 1))};
+    }
+}
@@ -6,58 +6,78 @@ import java.io.*;
 /**
  * Utility class that writes an Arduino .ino sketch from collected data.
  * Expected inputs:
- *  - outputPins: a Set containing Integer (or parsable) pin numbers for OUTPUT pins (digital)
- *  - inputPins: a Set containing Integer (or parsable) pin numbers for INPUT_PULLUP pins (digital)
- *  - analogOutputPins: a Set containing Integer (or parsable) pin numbers for OUTPUT pins (PWM)
- *  - analogInputPins: a Set containing Integer (or parsable) pin numbers for INPUT pins (analog A0-A5)
+ *  - pins: the BoardResources filled by the parser (roles of every pin used)
  *  - loopBody: the body of the loop() as a String (already contains proper indentation and newlines)
  *  - outFilename: the path to the .ino output file
+ * The older overload that takes one Set per kind of pin is kept for callers
+ * that still collect pins that way; it converts them to a BoardResources.
  */
 public class ArduinoSketchEmitter {
 
     public static void writeSketch(Set<?> outputPins, Set<?> inputPins, Set<?> analogOutputPins, Set<?> analogInputPins, String loopBody, String outFilename) {
+        BoardResources pins = new BoardResources();
+        // same order as the setup() lines, so the pins keep their order of first use
+        for (Object pObj : analogInputPins) pins.addAnalogInput(toPin(pObj));
+        for (Object pObj : analogOutputPins) pins.add(toPin(pObj), BoardResources.PWM_OUTPUT);
+        for (Object pObj : outputPins) pins.add(toPin(pObj), BoardResources.DIGITAL_OUTPUT);
+        for (Object pObj : inputPins) pins.add(toPin(pObj), BoardResources.DIGITAL_INPUT);
+        writeSketch(pins, loopBody, outFilename);
+    }
+
+    public static void writeSketch(BoardResources pins, String loopBody, String outFilename) {
         if (outFilename == null || outFilename.trim().isEmpty()) {
             outFilename = "generated_sketch.ino";
         }
 
-        StringBuilder sb = new StringBuilder();
+        String sketch = buildSketch(pins, loopBody);
+
+        // attempt to write the file
+        try (FileWriter fw = new FileWriter(outFilename)) {
+            fw.write(sketch);
+            System.out.println("Sketch escrito em: " + outFilename);
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever sketch: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Builds the sketch text. The pinMode() lines are appended straight from
+     * the pin tables, without boxing or temporary strings.
+     */
+    public static String buildSketch(BoardResources pins, String loopBody) {
+        StringBuilder sb = new StringBuilder(256 + loopBody.length());
         sb.append("// Código gerado pela DSL Arduino (português)\n");
         sb.append("#include <Arduino.h>\n\n");
         sb.append("void setup() {\n");
 
         // write pinMode lines for analog input pins (A0-A5) as INPUT
-        for (Object pObj : analogInputPins) {
-            int p;
-            if (pObj instanceof Integer) p = ((Integer)pObj).intValue();
-            else p = Integer.parseInt(pObj.toString());
-            sb.append("  pinMode(A" + p + ", INPUT);\n");
+        int n = pins.count(BoardResources.ANALOG_INPUT);
+        for (int i = 0; i < n; i++) {
+            int p = pins.pinAt(BoardResources.ANALOG_INPUT, i);
+            sb.append("  pinMode(A").append(pins.analogChannel(p)).append(", INPUT);\n");
         }
 
         // write pinMode lines for analog output pins (PWM: 3,5,6,9,10,11) as OUTPUT
-        for (Object pObj : analogOutputPins) {
-            int p;
-            if (pObj instanceof Integer) p = ((Integer)pObj).intValue();
-            else p = Integer.parseInt(pObj.toString());
-            sb.append("  pinMode(" + p + ", OUTPUT);\n");
+        n = pins.count(BoardResources.PWM_OUTPUT);
+        for (int i = 0; i < n; i++) {
+            sb.append("  pinMode(").append(pins.pinAt(BoardResources.PWM_OUTPUT, i)).append(", OUTPUT);\n");
         }
 
         // write pinMode lines for digital output pins (LEDs) as OUTPUT
-        for (Object pObj : outputPins) {
-            int p;
-            if (pObj instanceof Integer) p = ((Integer)pObj).intValue();
-            else p = Integer.parseInt(pObj.toString());
+        n = pins.count(BoardResources.DIGITAL_OUTPUT);
+        for (int i = 0; i < n; i++) {
+            int p = pins.pinAt(BoardResources.DIGITAL_OUTPUT, i);
             // Skip if already added as analog output
-            if (!analogOutputPins.contains(p)) {
-                sb.append("  pinMode(" + p + ", OUTPUT);\n");
+            if (!pins.has(p, BoardResources.PWM_OUTPUT)) {
+                sb.append("  pinMode(").append(p).append(", OUTPUT);\n");
             }
         }
 
         // write pinMode lines for digital input pins (botões) as INPUT_PULLUP
-        for (Object pObj : inputPins) {
-            int p;
-            if (pObj instanceof Integer) p = ((Integer)pObj).intValue();
-            else p = Integer.parseInt(pObj.toString());
-            sb.append("  pinMode(" + p + ", INPUT_PULLUP);\n");
+        n = pins.count(BoardResources.DIGITAL_INPUT);
+        for (int i = 0; i < n; i++) {
+            sb.append("  pinMode(").append(pins.pinAt(BoardResources.DIGITAL_INPUT, i)).append(", INPUT_PULLUP);\n");
         }
 
         sb.append("  Serial.begin(9600);\n");
@@ -65,14 +85,11 @@ public class ArduinoSketchEmitter {
         sb.append("void loop() {\n");
         sb.append(loopBody);
         sb.append("}\n");
+        return sb.toString();
+    }
 
-        // attempt to write the file
-        try (FileWriter fw = new FileWriter(outFilename)) {
-            fw.write(sb.toString());
-            System.out.println("Sketch escrito em: " + outFilename);
-        } catch (IOException e) {
-            System.err.println("Erro ao escrever sketch: " + e.getMessage());
-            e.printStackTrace();
-        }
+    private static int toPin(Object pObj) {
+        if (pObj instanceof Integer) return ((Integer)pObj).intValue();
+        return Integer.parseInt(pObj.toString());
     }
 }
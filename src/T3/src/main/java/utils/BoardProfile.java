@@ -0,0 +1,204 @@
+package utils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Target board: which pins exist and what each one can do.
+ *
+ * Capabilities are kept in a table indexed by pin number (DIGITAL, PWM and
+ * ANALOG bits) that is built once per profile, so validating a pin or mapping
+ * an analog channel to its pin number is a single array access. UNO, MEGA and
+ * NANO are built in; other boards can be loaded from a .properties file with
+ * the same keys as the T1 compiler's PerfilPlaca:
+ *
+ *   nome=...
+ *   digitais=14             numbered pins 0..digitais-1
+ *   analogicos=6            channels A0..A(analogicos-1)
+ *   primeiroAnalogico=14    pin number of A0
+ *   pwm=3,5,6,9,10,11
+ *   soAnalogicos=6,7        channels that cannot be used as digital pins (optional)
+ *   portas=D0,D1,...,C5     port letter and bit of each pin, in pin order ("-" for
+ *                           none; optional, without it -portas keeps digitalWrite)
+ */
+public final class BoardProfile {
+    public static final int DIGITAL = 1;
+    public static final int PWM = 2;
+    public static final int ANALOG = 4;
+
+    // port and bit of each pin on the ATmega328P (Uno, Nano) and ATmega2560 (Mega)
+    private static final String PORTS_328P = "D0,D1,D2,D3,D4,D5,D6,D7,B0,B1,B2,B3,B4,B5,C0,C1,C2,C3,C4,C5";
+    private static final String PORTS_2560 = "E0,E1,E4,E5,G5,E3,H3,H4,H5,H6,B4,B5,B6,B7,J1,J0,H1,H0,D3,D2,"
+            + "D1,D0,A0,A1,A2,A3,A4,A5,A6,A7,C7,C6,C5,C4,C3,C2,C1,C0,D7,G2,G1,G0,L7,L6,L5,L4,L3,L2,L1,L0,"
+            + "B3,B2,B1,B0,F0,F1,F2,F3,F4,F5,F6,F7,K0,K1,K2,K3,K4,K5,K6,K7";
+
+    public static final BoardProfile UNO = new BoardProfile("uno", 14, 6, 14,
+            new int[] {3, 5, 6, 9, 10, 11}, new int[0], PORTS_328P);
+    public static final BoardProfile NANO = new BoardProfile("nano", 14, 8, 14,
+            new int[] {3, 5, 6, 9, 10, 11}, new int[] {6, 7}, PORTS_328P);
+    public static final BoardProfile MEGA = new BoardProfile("mega", 54, 16, 54,
+            new int[] {2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 44, 45, 46}, new int[0], PORTS_2560);
+
+    private final String name;
+    private final int analogCount;
+    private final int firstAnalogPin;
+    // capability bits per pin number
+    private final byte[] capabilities;
+    // port letter of each pin ('B' for PORTB) and its bit; 0 when unknown
+    private final char[] ports;
+    private final byte[] portBits;
+
+    public BoardProfile(String name, int digitalCount, int analogCount, int firstAnalogPin, int[] pwmPins, int[] analogOnly) {
+        this(name, digitalCount, analogCount, firstAnalogPin, pwmPins, analogOnly, null);
+    }
+
+    public BoardProfile(String name, int digitalCount, int analogCount, int firstAnalogPin, int[] pwmPins, int[] analogOnly,
+            String portList) {
+        if (digitalCount < 1 || analogCount < 0 || firstAnalogPin < 0) {
+            throw new IllegalArgumentException("Perfil de placa inválido: " + name);
+        }
+        this.name = name;
+        this.analogCount = analogCount;
+        this.firstAnalogPin = firstAnalogPin;
+        capabilities = new byte[Math.max(digitalCount, firstAnalogPin + analogCount)];
+
+        for (int p = 0; p < digitalCount; p++) {
+            capabilities[p] |= DIGITAL;
+        }
+        for (int c = 0; c < analogCount; c++) {
+            capabilities[firstAnalogPin + c] |= ANALOG;
+        }
+        for (int p : pwmPins) {
+            if (p < 0 || p >= digitalCount) {
+                throw new IllegalArgumentException("Pino PWM inexistente no perfil " + name + ": " + p);
+            }
+            capabilities[p] |= PWM;
+        }
+        // the DSL only reads channels with analogRead(), so analog-only
+        // channels are checked here but need no bit of their own
+        for (int c : analogOnly) {
+            if (c < 0 || c >= analogCount) {
+                throw new IllegalArgumentException("Canal analógico inexistente no perfil " + name + ": A" + c);
+            }
+        }
+
+        ports = new char[capabilities.length];
+        portBits = new byte[capabilities.length];
+        if (portList != null && !portList.trim().isEmpty()) {
+            String[] parts = portList.split(",");
+            if (parts.length > capabilities.length) {
+                throw new IllegalArgumentException("Perfil " + name + " tem mais portas do que pinos");
+            }
+            for (int p = 0; p < parts.length; p++) {
+                String part = parts[p].trim();
+                if (part.equals("-")) {
+                    continue;
+                }
+                if (part.length() != 2 || part.charAt(0) < 'A' || part.charAt(0) > 'L'
+                        || part.charAt(1) < '0' || part.charAt(1) > '7') {
+                    throw new IllegalArgumentException("Porta inválida no perfil " + name + " para o pino " + p + ": " + part);
+                }
+                ports[p] = part.charAt(0);
+                portBits[p] = (byte) (part.charAt(1) - '0');
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Size of a table indexed by pin number that covers every pin of the board. */
+    public int getPinCount() {
+        return capabilities.length;
+    }
+
+    private boolean has(int pin, int capability) {
+        return pin >= 0 && pin < capabilities.length && (capabilities[pin] & capability) != 0;
+    }
+
+    /** Numbered pin usable with digitalRead/digitalWrite (0-13 on the Uno). */
+    public boolean isDigital(int pin) {
+        return has(pin, DIGITAL);
+    }
+
+    public boolean isPwm(int pin) {
+        return has(pin, PWM);
+    }
+
+    /** Analog input channel (0-5 on the Uno). */
+    public boolean isAnalogChannel(int channel) {
+        return channel >= 0 && channel < analogCount;
+    }
+
+    /** True when the pin's port is known, so it can be driven through PORTx/PINx/DDRx. */
+    public boolean hasPort(int pin) {
+        return pin >= 0 && pin < ports.length && ports[pin] != 0;
+    }
+
+    /** Port letter of the pin ('B' for PORTB, PINB and DDRB). */
+    public char port(int pin) {
+        return ports[pin];
+    }
+
+    /** Bit of the pin within its port. */
+    public int portBit(int pin) {
+        return portBits[pin];
+    }
+
+    /** Pin number of channel An (A0 = 14 on the Uno, 54 on the Mega). */
+    public int analogPin(int channel) {
+        return firstAnalogPin + channel;
+    }
+
+    /** Channel of a pin returned by analogPin(). */
+    public int analogChannel(int pin) {
+        return pin - firstAnalogPin;
+    }
+
+    /**
+     * Profile by name (uno, mega, nano, case-insensitive) or by the path of a
+     * .properties file.
+     */
+    public static BoardProfile load(String nameOrFile) throws IOException {
+        switch (nameOrFile.toLowerCase()) {
+            case "uno": return UNO;
+            case "mega": case "mega2560": return MEGA;
+            case "nano": return NANO;
+            default: break;
+        }
+        File file = new File(nameOrFile);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("Placa desconhecida: " + nameOrFile + " (use uno, mega, nano ou um arquivo .properties)");
+        }
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            p.load(in);
+        }
+        try {
+            return new BoardProfile(p.getProperty("nome", file.getName()),
+                    Integer.parseInt(p.getProperty("digitais", "").trim()),
+                    Integer.parseInt(p.getProperty("analogicos", "0").trim()),
+                    Integer.parseInt(p.getProperty("primeiroAnalogico", p.getProperty("digitais", "")).trim()),
+                    parseList(p.getProperty("pwm", "")),
+                    parseList(p.getProperty("soAnalogicos", "")),
+                    p.getProperty("portas"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Perfil de placa inválido em " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static int[] parseList(String text) {
+        String[] parts = text.trim().isEmpty() ? new String[0] : text.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
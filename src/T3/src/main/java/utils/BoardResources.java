@@ -0,0 +1,119 @@
+package utils;
+
+/**
+ * Pins used by a sketch, indexed by Arduino pin number.
+ *
+ * Each pin has a small bit set of roles (digital output, PWM output, digital
+ * input, analog input). Analog inputs are stored at the pin number of their
+ * channel on the target board (A0 = 14 on the Uno, 54 on the Mega), so a
+ * channel that is also driven as a digital pin shows up as the same pin. For
+ * every role the pins are also kept in the order they first appeared, which is
+ * the order of the pinMode() lines in setup().
+ *
+ * The table has one entry per pin of the board, so only pins the board has
+ * can be added. Adding a pin, testing a role and detecting a conflict (the
+ * same pin used as input and as output) are all O(1), and walking the pins of
+ * a role needs no boxing or iterator.
+ */
+public class BoardResources {
+    public static final int DIGITAL_OUTPUT = 0;
+    public static final int PWM_OUTPUT = 1;
+    public static final int DIGITAL_INPUT = 2;
+    public static final int ANALOG_INPUT = 3;
+    private static final int ROLES = 4;
+
+    private static final int OUTPUT_MASK = (1 << DIGITAL_OUTPUT) | (1 << PWM_OUTPUT);
+    private static final int INPUT_MASK = (1 << DIGITAL_INPUT) | (1 << ANALOG_INPUT);
+
+    private final BoardProfile board;
+    // bits de papel por pino
+    private final byte[] roles;
+    // pinos de cada papel na ordem em que apareceram
+    private final int[][] order = new int[ROLES][];
+    private final int[] counts = new int[ROLES];
+    private int conflicts;
+
+    public BoardResources() {
+        this(BoardProfile.UNO);
+    }
+
+    public BoardResources(BoardProfile board) {
+        this.board = board;
+        roles = new byte[board.getPinCount()];
+        for (int r = 0; r < ROLES; r++) {
+            order[r] = new int[8];
+        }
+    }
+
+    /**
+     * Marks the pin with the role. Returns true when this call makes the pin
+     * both an input and an output, so each conflict is reported only once.
+     */
+    public boolean add(int pin, int role) {
+        if (pin < 0 || pin >= roles.length) {
+            throw new IllegalArgumentException("Pino inexistente na placa " + board.getName() + ": " + pin);
+        }
+        int before = roles[pin];
+        int bit = 1 << role;
+        if ((before & bit) != 0) {
+            return false;
+        }
+        int after = before | bit;
+        roles[pin] = (byte) after;
+
+        int[] pins = order[role];
+        if (counts[role] == pins.length) {
+            int[] larger = new int[pins.length * 2];
+            System.arraycopy(pins, 0, larger, 0, pins.length);
+            order[role] = pins = larger;
+        }
+        pins[counts[role]++] = pin;
+
+        boolean conflict = isConflict(after) && !isConflict(before);
+        if (conflict) {
+            conflicts++;
+        }
+        return conflict;
+    }
+
+    /** Marks analog input channel (0 = A0) with the ANALOG_INPUT role. */
+    public boolean addAnalogInput(int channel) {
+        return add(board.analogPin(channel), ANALOG_INPUT);
+    }
+
+    public boolean has(int pin, int role) {
+        return pin >= 0 && pin < roles.length && (roles[pin] & (1 << role)) != 0;
+    }
+
+    /** True when the pin is used both as input and as output. */
+    public boolean hasConflict(int pin) {
+        return pin >= 0 && pin < roles.length && isConflict(roles[pin]);
+    }
+
+    public int getConflictCount() {
+        return conflicts;
+    }
+
+    /** Number of pins with the role. */
+    public int count(int role) {
+        return counts[role];
+    }
+
+    /** The i-th pin (in order of first use) with the role. */
+    public int pinAt(int role, int i) {
+        return order[role][i];
+    }
+
+    /** Analog channel of a pin with the ANALOG_INPUT role (14 -> 0 for A0 on the Uno). */
+    public int analogChannel(int pin) {
+        return board.analogChannel(pin);
+    }
+
+    public BoardProfile getBoard() {
+        return board;
+    }
+
+    private static boolean isConflict(int bits) {
+        return (bits & OUTPUT_MASK) != 0 && (bits & INPUT_MASK) != 0;
+    }
+}
@@ -0,0 +1,245 @@
+package utils;
+
+/**
+ * Block-structured builder for the body of loop().
+ *
+ * Commands are appended as lines at the current nesting level; openBlock()
+ * writes a block header (e.g. an if) and moves one level in, closeBlock()
+ * moves back out and writes the closing brace. Block bodies are written in
+ * place as they are parsed, so nothing is copied or spliced afterwards and the
+ * total work is linear in the size of the generated code, however deep the
+ * nesting. Indentation strings are built once per level and cached.
+ *
+ * writePort() queues a single-bit write to a PORTx register instead of a
+ * line. Consecutive writes to the same port are merged into one register
+ * update when the next line, block or port is written. A pin written twice
+ * starts a new update, so pulses are kept.
+ *
+ * pause() is delay() by default. In non-blocking mode loop() becomes a state
+ * machine driven by millis(): the body sits inside a switch on a static state
+ * variable, and each pause() stores the start time and length of the wait,
+ * moves to a new state and returns. The next state's case label is written
+ * right where the code resumes, even inside an if block, so the body is still
+ * written in place; loop() returns early until the wait is over. A body with
+ * no pause() is written as plain code.
+ */
+public class LoopCodeEmitter {
+    // 2 espaços por nível
+    private static final String INDENT = "  ";
+
+    private final StringBuilder code = new StringBuilder();
+    private final int baseLevel;
+    // nível dos comandos de primeiro nível (dentro do case no modo não bloqueante)
+    private final int bodyLevel;
+    private final boolean nonBlocking;
+    private int level;
+    private String[] indents = new String[8];
+    // escritas pendentes em uma porta (0 = nenhuma)
+    private char pendingPort;
+    private int setBits;
+    private int clearBits;
+    // estados criados por pause() no modo não bloqueante (o estado 0 é o início)
+    private int states;
+    // pause() já guardou o tempo, mas a troca de estado ainda não foi escrita
+    private boolean pendingWait;
+    // rótulo "case N:" a escrever antes do próximo comando
+    private boolean pendingCase;
+
+    /**
+     * @param baseLevel indentation level of top-level commands (1 inside loop())
+     */
+    public LoopCodeEmitter(int baseLevel) {
+        this(baseLevel, false);
+    }
+
+    /**
+     * @param baseLevel indentation level of top-level commands (1 inside loop())
+     * @param nonBlocking write pause() as a millis() state machine instead of delay()
+     */
+    public LoopCodeEmitter(int baseLevel, boolean nonBlocking) {
+        this.baseLevel = baseLevel;
+        this.nonBlocking = nonBlocking;
+        // switch (estado) { case 0: ... }: dois níveis a mais
+        this.bodyLevel = nonBlocking ? baseLevel + 2 : baseLevel;
+        this.level = bodyLevel;
+    }
+
+    /** Appends one statement at the current level; text has no indentation or newline. */
+    public void line(String text) {
+        resume();
+        flushPort();
+        code.append(indent()).append(text).append('\n');
+    }
+
+    /** Waits ms milliseconds: delay(ms), or a new state of the state machine in non-blocking mode. */
+    public void pause(long ms) {
+        if (!nonBlocking) {
+            line("delay(" + ms + ");");
+            return;
+        }
+        line("inicioEspera = millis();");
+        line("tempoEspera = " + ms + ";");
+        // estado = N e o return só saem com o próximo comando: uma espera no
+        // fim do loop() volta direto ao estado 0
+        pendingWait = true;
+    }
+
+    /** Queues PORTx bit 'bit' set (high) or cleared, merged with the writes that follow on the same port. */
+    public void writePort(char port, int bit, boolean high) {
+        resume();
+        int mask = 1 << bit;
+        if (pendingPort != 0 && (pendingPort != port || ((setBits | clearBits) & mask) != 0)) {
+            flushPort();
+        }
+        pendingPort = port;
+        if (high) {
+            setBits |= mask;
+        } else {
+            clearBits |= mask;
+        }
+    }
+
+    /** Appends "header {" and moves one level in. */
+    public void openBlock(String header) {
+        resume();
+        flushPort();
+        code.append(indent()).append(header).append(" {\n");
+        level++;
+    }
+
+    /** Moves one level out and appends the closing brace. */
+    public void closeBlock() {
+        if (level <= bodyLevel) {
+            throw new IllegalStateException("closeBlock() sem openBlock() correspondente");
+        }
+        // retomar no fim do bloco é o mesmo que retomar logo depois dele,
+        // então o rótulo do estado fica para depois da chave
+        nextState();
+        flushPort();
+        level--;
+        code.append(indent()).append("}\n");
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /** The generated code, with indentation and newlines. */
+    @Override
+    public String toString() {
+        flushPort();
+        if (!nonBlocking) {
+            return code.toString();
+        }
+        if (states == 0 && !pendingWait) {
+            return unindent(code, 2);
+        }
+        // estados 0..states; uma espera pendente no fim volta ao estado 0
+        int total = states + 1;
+        StringBuilder sb = new StringBuilder(code.length() + 512);
+        String base = indent(baseLevel);
+        String inner = indent(baseLevel + 1);
+        sb.append(base).append("// esperar sem delay(): cada espera guarda o instante e devolve o controle ao loop()\n");
+        sb.append(base).append(total <= 256 ? "static byte" : "static unsigned int").append(" estado = 0;\n");
+        sb.append(base).append("static unsigned long inicioEspera = 0;\n");
+        sb.append(base).append("static unsigned long tempoEspera = 0;\n");
+        sb.append(base).append("if (millis() - inicioEspera < tempoEspera) {\n");
+        sb.append(inner).append("return;\n");
+        sb.append(base).append("}\n");
+        sb.append(base).append("tempoEspera = 0;\n");
+        sb.append(base).append("switch (estado) {\n");
+        sb.append(inner).append("case 0:\n");
+        sb.append(code);
+        // a passada que chega ao fim do corpo recomeça do estado 0
+        if (pendingCase) {
+            sb.append(inner).append("case ").append(states).append(":\n");
+        }
+        sb.append(indent(bodyLevel)).append("estado = 0;\n");
+        sb.append(base).append("}\n");
+        return sb.toString();
+    }
+
+    /** Binary literal of a port mask, e.g. 0b00100000 for bit 5. */
+    public static String mask(int bits) {
+        String binary = Integer.toBinaryString(bits);
+        return "0b" + "00000000".substring(binary.length()) + binary;
+    }
+
+    // Antes de um comando: escreve a troca de estado pendente e o rótulo do novo estado
+    private void resume() {
+        nextState();
+        if (pendingCase) {
+            // o rótulo fica um nível para fora, como os demais case do switch
+            code.append(indent(level - 1)).append("case ").append(states).append(":\n");
+            pendingCase = false;
+        }
+    }
+
+    private void nextState() {
+        if (!pendingWait) {
+            return;
+        }
+        pendingWait = false;
+        states++;
+        flushPort();
+        code.append(indent()).append("estado = ").append(states).append(";\n");
+        code.append(indent()).append("return;\n");
+        pendingCase = true;
+    }
+
+    // Remove 'levels' níveis de indentação de todas as linhas
+    private static String unindent(CharSequence text, int levels) {
+        int remove = levels * INDENT.length();
+        StringBuilder sb = new StringBuilder(text.length());
+        int start = 0;
+        while (start < text.length()) {
+            int end = start;
+            while (text.charAt(end) != '\n') {
+                end++;
+            }
+            sb.append(text, Math.min(start + remove, end), end + 1);
+            start = end + 1;
+        }
+        return sb.toString();
+    }
+
+    private void flushPort() {
+        if (pendingPort == 0) {
+            return;
+        }
+        String register = "PORT" + pendingPort;
+        if (setBits != 0 && clearBits != 0) {
+            code.append(indent()).append(register).append(" = (").append(register).append(" & ~").append(mask(clearBits))
+                    .append(") | ").append(mask(setBits)).append(";\n");
+        } else if (setBits != 0) {
+            code.append(indent()).append(register).append(" |= ").append(mask(setBits)).append(";\n");
+        } else {
+            code.append(indent()).append(register).append(" &= ~").append(mask(clearBits)).append(";\n");
+        }
+        pendingPort = 0;
+        setBits = 0;
+        clearBits = 0;
+    }
+
+    private String indent() {
+        return indent(level);
+    }
+
+    private String indent(int level) {
+        if (level >= indents.length) {
+            String[] maior = new String[Math.max(indents.length * 2, level + 1)];
+            System.arraycopy(indents, 0, maior, 0, indents.length);
+            indents = maior;
+        }
+        String s = indents[level];
+        if (s == null) {
+            StringBuilder sb = new StringBuilder(level * INDENT.length());
+            for (int i = 0; i < level; i++) {
+                sb.append(INDENT);
+            }
+            s = sb.toString();
+            indents[level] = s;
+        }
+        return s;
+    }
+}